@@ -0,0 +1,213 @@
+package com.example.hajimi24;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按内容寻址的本地题库存储 (filesDir/blobs)。
+ * 每个文件以其 git blob SHA-1 命名 (blobs/ab/abcdef...)，内容相同的文件只存一份；
+ * 路径到 SHA 的对应关系记录在紧凑的二进制 manifest 文件中，代替 FileMeta SharedPreferences。
+ * SHA 在下载时计算并校验过，所以 manifest 中的记录即代表磁盘上的内容完整。
+ * blob 以 BlockCompressedFile 格式压缩保存 (SHA 与大小仍针对原文)；旧版本留下的未压缩 blob 照常可读。
+ */
+public class BlobStore {
+
+    private static final int MANIFEST_VERSION = 1;
+
+    public static class Entry {
+        public final String sha;
+        public final long size;
+
+        Entry(String sha, long size) {
+            this.sha = sha;
+            this.size = size;
+        }
+    }
+
+    private final File root;
+    private final File manifestFile;
+    private Map<String, Entry> manifest = null; // 首次使用时加载
+
+    public BlobStore(File root) {
+        this.root = root;
+        this.manifestFile = new File(root, "manifest");
+    }
+
+    public synchronized Entry get(String path) {
+        return load().get(path);
+    }
+
+    // 该路径是否已存有指定 SHA 的内容
+    public synchronized boolean contains(String path, String sha) {
+        Entry e = load().get(path);
+        return e != null && e.sha.equalsIgnoreCase(sha) && blobFile(e.sha).exists();
+    }
+
+    // 路径对应的 blob 文件，不存在时返回 null
+    public synchronized File getFile(String path) {
+        Entry e = load().get(path);
+        if (e == null) return null;
+        File blob = blobFile(e.sha);
+        return blob.exists() ? blob : null;
+    }
+
+    // 读取路径对应的原文 (压缩的 blob 逐块解压)，不存在时返回 null
+    public InputStream openStream(String path) throws IOException {
+        File blob = getFile(path);
+        if (blob == null) return null;
+        if (BlockCompressedFile.isBlockCompressed(blob)) return BlockCompressedFile.open(blob).openStream(true);
+        return new FileInputStream(blob);
+    }
+
+    // 以分块方式打开 (用于并行解析或随机读取)；不存在或是未压缩的旧 blob 时返回 null
+    public BlockCompressedFile openBlocks(String path) throws IOException {
+        File blob = getFile(path);
+        if (blob == null || !BlockCompressedFile.isBlockCompressed(blob)) return null;
+        return BlockCompressedFile.open(blob);
+    }
+
+    // 列出以 prefix 开头的所有路径
+    public synchronized List<String> listPaths(String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String path : load().keySet()) {
+            if (path.startsWith(prefix)) result.add(path);
+        }
+        return result;
+    }
+
+    // 下载用的临时文件 (同一路径固定不变，以便中断后续传)
+    public File partFileFor(String path) {
+        return new File(new File(root, "tmp"), sha1Hex(path) + ".part");
+    }
+
+    /**
+     * 把已校验的文件 (内容 SHA 为 sha) 登记到 path 下。
+     * 新文件压缩后存入，原文件随即删除；相同内容的 blob 已存在时直接丢弃新文件；
+     * path 原先指向的 blob 不再被引用时删除。
+     * 压缩在锁外写入临时文件，锁内只做改名与 manifest 更新，多个下载线程可以同时压缩。
+     */
+    public void commit(String path, String sha, File verifiedFile) throws IOException {
+        sha = sha.toLowerCase();
+        File blob = blobFile(sha);
+        long size = verifiedFile.length();
+        File compressed = null;
+        if (!blob.exists()) {
+            compressed = new File(verifiedFile.getPath() + ".blob");
+            BlockCompressedFile.compress(verifiedFile, compressed);
+        }
+
+        synchronized (this) {
+            if (!blob.exists()) {
+                File dir = blob.getParentFile();
+                if (dir != null && !dir.exists()) dir.mkdirs();
+                // 压缩前 blob 还在、随后被 remove 删掉时 (很少见) 只能在锁内补压
+                if (compressed == null) BlockCompressedFile.compress(verifiedFile, blob);
+                else if (!compressed.renameTo(blob)) {
+                    compressed.delete();
+                    throw new IOException("无法写入 blob: " + sha);
+                }
+            } else if (compressed != null) {
+                compressed.delete(); // 其它线程已存入相同内容
+            }
+            verifiedFile.delete(); // 已压缩存入，或内容相同的 blob 已存在 (去重)
+
+            Entry old = load().put(path, new Entry(sha, size));
+            saveManifest();
+            if (old != null && !old.sha.equals(sha)) releaseIfUnused(old.sha);
+        }
+    }
+
+    public synchronized void remove(String path) {
+        Entry old = load().remove(path);
+        if (old == null) return;
+        try {
+            saveManifest();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        releaseIfUnused(old.sha);
+    }
+
+    private void releaseIfUnused(String sha) {
+        for (Entry e : manifest.values()) {
+            if (e.sha.equals(sha)) return;
+        }
+        blobFile(sha).delete();
+    }
+
+    private File blobFile(String sha) {
+        return new File(new File(root, sha.substring(0, 2)), sha);
+    }
+
+    // manifest 格式：版本号、条目数，随后每条为 路径(UTF)、SHA(20 字节)、大小(long)
+    private Map<String, Entry> load() {
+        if (manifest != null) return manifest;
+        manifest = new HashMap<>();
+        if (!manifestFile.exists()) return manifest;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifestFile)))) {
+            if (in.readInt() != MANIFEST_VERSION) return manifest;
+            int count = in.readInt();
+            byte[] sha = new byte[20];
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                in.readFully(sha);
+                long size = in.readLong();
+                manifest.put(path, new Entry(ResumableDownloader.toHex(sha), size));
+            }
+        } catch (IOException e) {
+            // manifest 损坏时视为空：文件会在下次同步时重新下载
+            e.printStackTrace();
+            manifest.clear();
+        }
+        return manifest;
+    }
+
+    private void saveManifest() throws IOException {
+        if (!root.exists()) root.mkdirs();
+        File tmp = new File(root, "manifest.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MANIFEST_VERSION);
+            out.writeInt(manifest.size());
+            for (Map.Entry<String, Entry> e : manifest.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.write(fromHex(e.getValue().sha));
+                out.writeLong(e.getValue().size);
+            }
+        }
+        if (!tmp.renameTo(manifestFile)) {
+            tmp.delete();
+            throw new IOException("无法写入 manifest");
+        }
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static String sha1Hex(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return ResumableDownloader.toHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.hajimi24;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 分块压缩的题库文件。
+ * 文本按换行对齐切成约 64KB 的块，每块单独用 Deflate 压缩，可以独立解压；
+ * 文件末尾的块索引记录每块的压缩长度、原始长度和行数，
+ * 顺序读取时逐块解压，随机读取某一行时只需解压它所在的那一块。
+ *
+ * 格式：MAGIC、版本号，随后是各压缩块，最后是块索引
+ * (块数，每块 压缩长度/原始长度/换行数)、索引起始位置和 MAGIC。
+ */
+public class BlockCompressedFile implements Closeable {
+
+    private static final int MAGIC = 0x484A425A; // "HJBZ"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int FOOTER_BYTES = 12;
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private final RandomAccessFile raf;
+    private final long[] offsets;     // 各块在文件中的起始位置
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final long[] lineStarts;  // 各块第一行的行号 (前缀和)，多一项为总换行数
+    private final long rawLength;
+    private final boolean endsWithNewline;
+    // readLine 最近解压的一块 (连续读取同一块中的多行时不必重复解压)
+    private int cachedBlock = -1;
+    private byte[] cachedData = null;
+
+    private BlockCompressedFile(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < HEADER_BYTES + FOOTER_BYTES || raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                throw new IOException("不是分块压缩文件: " + file.getName());
+            }
+            raf.seek(length - FOOTER_BYTES);
+            long indexOffset = raf.readLong();
+            if (raf.readInt() != MAGIC) throw new IOException("块索引损坏: " + file.getName());
+
+            raf.seek(indexOffset);
+            int count = raf.readInt();
+            offsets = new long[count];
+            compressedLengths = new int[count];
+            rawLengths = new int[count];
+            lineStarts = new long[count + 1];
+            long offset = HEADER_BYTES;
+            long raw = 0;
+            for (int i = 0; i < count; i++) {
+                offsets[i] = offset;
+                compressedLengths[i] = raf.readInt();
+                rawLengths[i] = raf.readInt();
+                lineStarts[i + 1] = lineStarts[i] + raf.readInt();
+                offset += compressedLengths[i];
+                raw += rawLengths[i];
+            }
+            if (offset != indexOffset) throw new IOException("块索引损坏: " + file.getName());
+            rawLength = raw;
+            endsWithNewline = count == 0 || lastByteIsNewline(count - 1);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public static BlockCompressedFile open(File file) throws IOException {
+        return new BlockCompressedFile(file);
+    }
+
+    // 根据文件头判断是否为分块压缩格式 (旧版本存储的是未压缩的原文)
+    public static boolean isBlockCompressed(File file) {
+        if (file.length() < HEADER_BYTES + FOOTER_BYTES) return false;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** 把 src 压缩写入 dst (先写临时文件再重命名) */
+    public static void compress(File src, File dst) throws IOException {
+        File tmp = new File(dst.getPath() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (InputStream in = new FileInputStream(src);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            IntList compressed = new IntList(), raw = new IntList(), lines = new IntList();
+            byte[] buffer = new byte[BLOCK_BYTES];
+            byte[] deflated = new byte[BLOCK_BYTES + BLOCK_BYTES / 8 + 64];
+            int filled = 0;
+            long position = HEADER_BYTES;
+            while (true) {
+                int n = in.read(buffer, filled, buffer.length - filled);
+                if (n > 0) filled += n;
+                boolean eof = n == -1;
+                if (filled < buffer.length && !eof) continue;
+                if (filled == 0) break;
+
+                // 在最后一个换行处截断；整块没有换行 (超长行) 时扩大缓冲继续读
+                int cut = filled;
+                if (!eof) {
+                    cut = lastIndexOf(buffer, filled, (byte) '\n') + 1;
+                    if (cut == 0) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        continue;
+                    }
+                }
+
+                deflater.reset();
+                deflater.setInput(buffer, 0, cut);
+                deflater.finish();
+                int size = 0;
+                while (!deflater.finished()) {
+                    if (size == deflated.length) deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                    size += deflater.deflate(deflated, size, deflated.length - size);
+                }
+                out.write(deflated, 0, size);
+                position += size;
+                compressed.add(size);
+                raw.add(cut);
+                lines.add(count(buffer, cut, (byte) '\n'));
+
+                System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                filled -= cut;
+                if (eof && filled == 0) break;
+            }
+
+            out.writeInt(compressed.size);
+            for (int i = 0; i < compressed.size; i++) {
+                out.writeInt(compressed.values[i]);
+                out.writeInt(raw.values[i]);
+                out.writeInt(lines.values[i]);
+            }
+            out.writeLong(position);
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        } finally {
+            deflater.end();
+        }
+        if (!tmp.renameTo(dst)) {
+            tmp.delete();
+            throw new IOException("无法写入文件: " + dst.getName());
+        }
+    }
+
+    public int getBlockCount() {
+        return rawLengths.length;
+    }
+
+    public long getRawLength() {
+        return rawLength;
+    }
+
+    // 第 block 块第一行的行号
+    public long getFirstLine(int block) {
+        return lineStarts[block];
+    }
+
+    // 行数 (与 BufferedReader.readLine 的计数一致)
+    public long getLineCount() {
+        long newlines = lineStarts[lineStarts.length - 1];
+        return endsWithNewline ? newlines : newlines + 1;
+    }
+
+    /** 解压第 index 块，返回其原始字节 (以换行结尾，最后一块除外)。可被多个线程同时调用 */
+    public byte[] readBlock(int index) throws IOException {
+        byte[] input = new byte[compressedLengths[index]];
+        synchronized (raf) {
+            raf.seek(offsets[index]);
+            raf.readFully(input);
+        }
+        byte[] output = new byte[rawLengths[index]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int size = 0;
+            while (size < output.length) {
+                int n = inflater.inflate(output, size, output.length - size);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                size += n;
+            }
+            if (size != output.length) throw new IOException("数据块损坏: " + index);
+        } catch (DataFormatException e) {
+            throw new IOException("数据块损坏: " + index, e);
+        } finally {
+            inflater.end();
+        }
+        return output;
+    }
+
+    /** 随机读取第 lineIndex 行 (从 0 开始)，只解压该行所在的块；越界时返回 null */
+    public String readLine(long lineIndex) throws IOException {
+        if (lineIndex < 0 || lineIndex >= getLineCount()) return null;
+        // 二分查找所在的块
+        int lo = 0, hi = rawLengths.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (lineStarts[mid] <= lineIndex) lo = mid;
+            else hi = mid - 1;
+        }
+        byte[] data;
+        synchronized (this) {
+            if (cachedBlock != lo) {
+                cachedData = readBlock(lo);
+                cachedBlock = lo;
+            }
+            data = cachedData;
+        }
+        long skip = lineIndex - lineStarts[lo];
+        int start = 0;
+        while (skip > 0) {
+            if (data[start++] == '\n') skip--;
+        }
+        int end = start;
+        while (end < data.length && data[end] != '\n') end++;
+        int trimmed = (end > start && data[end - 1] == '\r') ? end - 1 : end;
+        return new String(data, start, trimmed - start, StandardCharsets.UTF_8);
+    }
+
+    /** 按顺序逐块解压的输入流；closeFile 为 true 时关闭流的同时关闭文件 */
+    public InputStream openStream(boolean closeFile) {
+        return new InputStream() {
+            private int nextBlock = 0;
+            private byte[] current = new byte[0];
+            private int pos = 0;
+
+            private boolean fill() throws IOException {
+                while (pos >= current.length) {
+                    if (nextBlock >= rawLengths.length) return false;
+                    current = readBlock(nextBlock++);
+                    pos = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return fill() ? current[pos++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!fill()) return -1;
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(current, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closeFile) BlockCompressedFile.this.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    private boolean lastByteIsNewline(int block) throws IOException {
+        if (rawLengths[block] == 0) return true;
+        byte[] data = readBlock(block);
+        return data[data.length - 1] == '\n';
+    }
+
+    private static int lastIndexOf(byte[] data, int length, byte b) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (data[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private static int count(byte[] data, int length, byte b) {
+        int c = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] == b) c++;
+        }
+        return c;
+    }
+
+    // 简单的可增长 int 数组 (块索引在写完所有块后才写入)
+    private static class IntList {
+        int[] values = new int[64];
+        int size = 0;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+}
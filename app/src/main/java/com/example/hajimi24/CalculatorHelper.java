@@ -187,8 +187,7 @@ public class CalculatorHelper {
 
             tvResult.setText("正在计算...");
             new Thread(() -> {
-                List<String> rawSolutions = Solver.solveAll(nums, modulus, target);
-                List<String> solutions = SolutionNormalizer.distinct(rawSolutions);
+                List<String> solutions = Solver.solveAllDistinct(nums, modulus, target);
                 Collections.sort(solutions, (s1, s2) -> Integer.compare(s1.length(), s2.length()));
 
                 final List<String> displayList = (limit10 && solutions.size() > 10) ? solutions.subList(0, 10) : solutions;
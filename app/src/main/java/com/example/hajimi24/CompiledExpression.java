@@ -0,0 +1,269 @@
+package com.example.hajimi24;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 编译后的四则运算算式，是各处解析算式的唯一入口。
+ *
+ * 中缀算式只扫描一次，转成后缀 (逆波兰) 形式的指令序列，操作数的原文放在常量池里。
+ * 之后可以反复按 double、Fraction 或取模求值，也可以交给 Builder 按后缀顺序重建成任意的树
+ * (SolutionNormalizer 的规范树、ParsedExpression 的显示树)。
+ *
+ * 语法：+ - * / (× ÷ 视同 * /)、括号与空白；其余连续的字符是一个操作数，原样进入常量池，由各后端解释。
+ * 复数字面量 "a+bi" (+ - 两侧没有空白且虚部以 i 结尾) 整体是一个操作数。
+ * 乘除优先于加减，同级左结合。允许带符号的操作数时，出现在开头、左括号或运算符之后的 + - 是紧跟的操作数的符号。
+ * 算式不合法 (括号不匹配、缺少操作数或运算符) 时 compile 抛出 IllegalArgumentException。
+ *
+ * 各求值方法复用实例内的栈，同一个实例不要在多个线程里同时求值。
+ */
+public class CompiledExpression {
+
+    /** 按后缀顺序重建算式：先得到左右两个子式，再组合 */
+    public interface Builder<T> {
+        T operand(String token);
+
+        T apply(char op, T left, T right);
+    }
+
+    // 指令：>= 0 为常量池下标，负数为运算符
+    private static final int ADD = -1, SUB = -2, MUL = -3, DIV = -4;
+    // 编译时运算符栈中的左括号
+    private static final int OPEN = 0;
+
+    private final int[] code;
+    private final String[] constants;
+    // 求值时栈的最大深度
+    private final int maxDepth;
+
+    // 各后端解析后的常量与求值栈 (首次使用时建立)
+    private double[] doubleConstants;
+    private double[] doubleStack;
+    private long[] modConstants;
+    private long[] modStack;
+    private long modModulus;
+    private int modRadix;
+
+    private CompiledExpression(int[] code, String[] constants, int maxDepth) {
+        this.code = code;
+        this.constants = constants;
+        this.maxDepth = maxDepth;
+    }
+
+    public static CompiledExpression compile(String expr) {
+        return compile(expr, true);
+    }
+
+    public static CompiledExpression compile(String expr, boolean signedOperands) {
+        int n = expr.length();
+        int[] code = new int[n];
+        int length = 0;
+        List<String> constants = new ArrayList<>();
+        int[] ops = new int[n];
+        int top = 0;
+        int depth = 0, maxDepth = 0;
+        boolean expectOperand = true;
+
+        int i = 0;
+        while (i < n) {
+            char c = expr.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                if (!expectOperand) throw new IllegalArgumentException("缺少运算符: " + expr);
+                ops[top++] = OPEN;
+                i++;
+            } else if (c == ')') {
+                if (expectOperand) throw new IllegalArgumentException("缺少操作数: " + expr);
+                while (top > 0 && ops[top - 1] != OPEN) {
+                    code[length++] = ops[--top];
+                    depth--;
+                }
+                if (top == 0) throw new IllegalArgumentException("括号不匹配: " + expr);
+                top--;
+                i++;
+            } else if (opcode(c) != 0 && !(expectOperand && signedOperands && (c == '+' || c == '-'))) {
+                if (expectOperand) throw new IllegalArgumentException("缺少操作数: " + expr);
+                int op = opcode(c);
+                while (top > 0 && ops[top - 1] != OPEN && precedence(ops[top - 1]) >= precedence(op)) {
+                    code[length++] = ops[--top];
+                    depth--;
+                }
+                ops[top++] = op;
+                expectOperand = true;
+                i++;
+            } else {
+                if (!expectOperand) throw new IllegalArgumentException("缺少运算符: " + expr);
+                int start = i;
+                // 符号 (如果有) 与其后的操作数连成一个常量
+                if (opcode(c) != 0) i++;
+                int digits = i;
+                while (i < n && isOperandChar(expr.charAt(i))) i++;
+                if (i == digits) throw new IllegalArgumentException("缺少操作数: " + expr);
+                i = complexLiteralEnd(expr, i);
+                code[length++] = constants.size();
+                constants.add(expr.substring(start, i));
+                maxDepth = Math.max(maxDepth, ++depth);
+                expectOperand = false;
+            }
+        }
+        if (expectOperand) throw new IllegalArgumentException("缺少操作数: " + expr);
+        while (top > 0) {
+            if (ops[top - 1] == OPEN) throw new IllegalArgumentException("括号不匹配: " + expr);
+            code[length++] = ops[--top];
+        }
+
+        int[] trimmed = new int[length];
+        System.arraycopy(code, 0, trimmed, 0, length);
+        return new CompiledExpression(trimmed, constants.toArray(new String[0]), maxDepth);
+    }
+
+    private static int opcode(char c) {
+        switch (c) {
+            case '+': return ADD;
+            case '-': return SUB;
+            case '*': case '×': return MUL;
+            case '/': case '÷': return DIV;
+            default: return 0;
+        }
+    }
+
+    private static int precedence(int op) {
+        return (op == MUL || op == DIV) ? 2 : 1;
+    }
+
+    private static boolean isOperandChar(char c) {
+        return opcode(c) == 0 && c != '(' && c != ')' && !Character.isWhitespace(c);
+    }
+
+    // 复数字面量 (Fraction.toString 的 "2+3i"、"4-i")：实部后紧跟 + - 且其后紧接以 i 结尾的虚部时，
+    // 这个 + - 属于操作数，返回虚部之后的位置；否则原样返回 end (求解器输出的运算符两侧有空白，不会混淆)
+    private static int complexLiteralEnd(String expr, int end) {
+        if (end + 1 >= expr.length()) return end;
+        char sign = expr.charAt(end);
+        if (sign != '+' && sign != '-') return end;
+        int j = end + 1;
+        while (j < expr.length() && isOperandChar(expr.charAt(j))) j++;
+        return (j > end + 1 && expr.charAt(j - 1) == 'i') ? j : end;
+    }
+
+    private static char symbol(int op) {
+        switch (op) {
+            case ADD: return '+';
+            case SUB: return '-';
+            case MUL: return '*';
+            default: return '/';
+        }
+    }
+
+    // ==========================================
+    //  后端
+    // ==========================================
+
+    public <T> T build(Builder<T> builder) {
+        Object[] stack = new Object[maxDepth];
+        int top = 0;
+        for (int ins : code) {
+            if (ins >= 0) {
+                stack[top++] = builder.operand(constants[ins]);
+            } else {
+                @SuppressWarnings("unchecked") T right = (T) stack[--top];
+                @SuppressWarnings("unchecked") T left = (T) stack[top - 1];
+                stack[top - 1] = builder.apply(symbol(ins), left, right);
+            }
+        }
+        @SuppressWarnings("unchecked") T result = (T) stack[0];
+        return result;
+    }
+
+    // 按 double 求值 (操作数为十进制小数)，除以零得到 Infinity / NaN
+    public double evaluateDouble() {
+        if (doubleConstants == null) {
+            double[] values = new double[constants.length];
+            for (int k = 0; k < values.length; k++) values[k] = Double.parseDouble(constants[k]);
+            doubleConstants = values;
+            doubleStack = new double[maxDepth];
+        }
+        double[] stack = doubleStack;
+        int top = 0;
+        for (int ins : code) {
+            if (ins >= 0) {
+                stack[top++] = doubleConstants[ins];
+                continue;
+            }
+            double b = stack[--top], a = stack[top - 1];
+            switch (ins) {
+                case ADD: stack[top - 1] = a + b; break;
+                case SUB: stack[top - 1] = a - b; break;
+                case MUL: stack[top - 1] = a * b; break;
+                default: stack[top - 1] = a / b;
+            }
+        }
+        return stack[0];
+    }
+
+    // 在模 modulus 下求值 (操作数为 radix 进制整数)；除数没有逆元时抛出 ArithmeticException
+    public long evaluateMod(long modulus, int radix) {
+        if (modConstants == null || modModulus != modulus || modRadix != radix) {
+            long[] values = new long[constants.length];
+            for (int k = 0; k < values.length; k++) {
+                long v = Long.parseLong(constants[k], radix) % modulus;
+                values[k] = v < 0 ? v + modulus : v;
+            }
+            modConstants = values;
+            modModulus = modulus;
+            modRadix = radix;
+            if (modStack == null) modStack = new long[maxDepth];
+        }
+        long[] stack = modStack;
+        int top = 0;
+        for (int ins : code) {
+            if (ins >= 0) {
+                stack[top++] = modConstants[ins];
+                continue;
+            }
+            long b = stack[--top], a = stack[top - 1];
+            switch (ins) {
+                case ADD: stack[top - 1] = (a + b) % modulus; break;
+                case SUB: stack[top - 1] = ((a - b) % modulus + modulus) % modulus; break;
+                case MUL: stack[top - 1] = (a * b) % modulus; break;
+                default:
+                    long inv = b == 0 ? -1 : Solver.modInverse(b, modulus);
+                    if (inv == -1) throw new ArithmeticException("Modular inverse not found");
+                    stack[top - 1] = (a * inv) % modulus;
+            }
+        }
+        return stack[0];
+    }
+
+    // 按 Fraction 精确求值 (操作数按 ProblemRepository 的题目格式解析)
+    public Fraction evaluateFraction(int radix) {
+        return build(new FractionArithmetic(radix));
+    }
+
+    /** Fraction 后端，可以继承它在每步运算前后加入检查 */
+    static class FractionArithmetic implements Builder<Fraction> {
+        private final int radix;
+
+        FractionArithmetic(int radix) {
+            this.radix = radix;
+        }
+
+        @Override
+        public Fraction operand(String token) {
+            return ProblemRepository.parseTokenToFraction(token, radix);
+        }
+
+        @Override
+        public Fraction apply(char op, Fraction left, Fraction right) {
+            switch (op) {
+                case '+': return left.add(right);
+                case '-': return left.sub(right);
+                case '*': return left.multiply(right);
+                default:
+                    if (right.getRe() == 0 && right.getIm() == 0) throw new ArithmeticException("Div 0");
+                    return left.divide(right);
+            }
+        }
+    }
+}
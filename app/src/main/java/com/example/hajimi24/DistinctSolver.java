@@ -0,0 +1,191 @@
+package com.example.hajimi24;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 只生成本质不同的解 (Solver.solveAllDistinct 的实现)。
+ *
+ * 不再枚举所有写法后再去重，而是按操作数的子集自小到大动态规划：每个子集只保留它能得到的各个规范树
+ * (与 SolutionNormalizer 的归类规则相同：加减、乘除的结合律与交换律，减去/除以一组时正负互换)，
+ * 较大的子集由两个不相交子集的各类两两组合得到，因此同一类的不同写法只被组合一次。
+ *
+ * 每类记下文本字典序最小的写法。同一类的所有写法长度相同 (操作数与运算符个数都相同)，
+ * 所以它就是 SolutionNormalizer.distinct 会保留的那个，并且由两个子类各自的最小写法拼成，
+ * 输出与 SolutionNormalizer.distinct(Solver.solveAll(...)) 完全一致。
+ */
+public class DistinctSolver {
+
+    private static final char[] OPS = {'+', '-', '*', '/'};
+
+    // 某个子集上的一类算式
+    private static class Entry {
+        final SolutionNormalizer.Node tree;
+        final Fraction val;
+        final long modVal;
+        // 目前字典序最小的写法：(left op right)，叶子的 left 为 null
+        char op;
+        Entry left, right;
+        // 确定后在 ExprFactory 中的编号与文本
+        int node;
+        String text;
+
+        Entry(SolutionNormalizer.Node tree, Fraction val, long modVal) {
+            this.tree = tree;
+            this.val = val;
+            this.modVal = modVal;
+        }
+    }
+
+    /**
+     * 所有本质不同的解，不含后缀；结果的后缀由 suffixOut[0] 返回 (" base r"、" mod m" 或空)。
+     * 操作数含负分数、复数或进制不一致时返回 null，由调用方改用逐个写法枚举再去重。
+     */
+    static List<String> solve(List<Fraction> nums, Integer modulus, int targetValue, String[] suffixOut) {
+        int n = nums.size();
+        if (n == 0 || n > 16) return null;
+        int radix = nums.get(0).getRadix();
+        for (Fraction f : nums) if (f.getRadix() != radix) return null;
+
+        ExprFactory exprs = new ExprFactory();
+        int full = (1 << n) - 1;
+        // classes.get(mask)：数字子集 mask 能组成的各类算式
+        List<Map<SolutionNormalizer.Node, Entry>> classes = new ArrayList<>(full + 1);
+        for (int mask = 0; mask <= full; mask++) classes.add(null);
+
+        for (int i = 0; i < n; i++) {
+            Fraction f = nums.get(i);
+            String text;
+            Fraction val;
+            long modVal = 0;
+            if (modulus == null) {
+                text = f.toString();
+                val = f;
+            } else {
+                modVal = ((long) Solver.getDoubleValue(f)) % modulus;
+                if (modVal < 0) modVal += modulus;
+                text = Long.toString(modVal, radix).toUpperCase();
+                val = null;
+            }
+            SolutionNormalizer.Node tree = SolutionNormalizer.atomicLeaf(text);
+            if (tree == null) return null;
+            Entry leaf = new Entry(tree, val, modVal);
+            leaf.node = exprs.leaf(text);
+            leaf.text = text;
+            Map<SolutionNormalizer.Node, Entry> single = new LinkedHashMap<>();
+            single.put(tree, leaf);
+            classes.set(1 << i, single);
+        }
+
+        // 按子集大小从小到大：子集的各类确定后才会被更大的子集引用
+        for (int size = 2; size <= n; size++) {
+            for (int mask = 1; mask <= full; mask++) {
+                if (Integer.bitCount(mask) != size) continue;
+                Map<SolutionNormalizer.Node, Entry> found = new LinkedHashMap<>();
+                // sub 取遍 mask 的所有非空真子集，左右两种顺序都会出现
+                for (int sub = (mask - 1) & mask; sub > 0; sub = (sub - 1) & mask) {
+                    for (Entry a : classes.get(sub).values()) {
+                        for (Entry b : classes.get(mask ^ sub).values()) {
+                            for (char op : OPS) {
+                                combine(found, a, op, b, modulus, mask == full ? targetValue : -1);
+                            }
+                        }
+                    }
+                }
+                for (Entry e : found.values()) {
+                    e.node = exprs.node(e.op, e.left.node, e.right.node);
+                    e.text = exprs.toString(e.node);
+                }
+                classes.set(mask, found);
+            }
+        }
+
+        String suffix = modulus != null ? " mod " + modulus : "";
+        if (radix != 10) suffix = " base " + radix + suffix;
+        suffixOut[0] = suffix;
+
+        List<String> result = new ArrayList<>();
+        for (Entry e : classes.get(full).values()) {
+            if (n > 1 || isTarget(e, modulus, targetValue)) result.add(e.text);
+        }
+        return result;
+    }
+
+    // 计算 (a op b)，有效时并入其所在的类；target >= 0 时只保留等于目标值的结果
+    private static void combine(Map<SolutionNormalizer.Node, Entry> found, Entry a, char op, Entry b,
+                                Integer modulus, int target) {
+        Fraction val = null;
+        long modVal = 0;
+        if (modulus == null) {
+            Fraction res;
+            switch (op) {
+                case '+': res = a.val.add(b.val); break;
+                case '-': res = a.val.sub(b.val); break;
+                case '*': res = a.val.multiply(b.val); break;
+                default:
+                    if (b.val.isValue(0)) return;
+                    try {
+                        res = a.val.divide(b.val);
+                    } catch (Exception e) {
+                        return;
+                    }
+            }
+            val = new Fraction(res.getRe(), res.getIm(), res.getDe(), a.val.getRadix());
+            if (target >= 0 && !val.isValue(target)) return;
+        } else {
+            int mod = modulus;
+            long va = a.modVal, vb = b.modVal;
+            switch (op) {
+                case '+': modVal = (va + vb) % mod; break;
+                case '-': modVal = (va - vb) % mod; if (modVal < 0) modVal += mod; break;
+                case '*': modVal = (va * vb) % mod; break;
+                default:
+                    if (vb == 0) return;
+                    long invB = Solver.modInverse(vb, mod);
+                    if (invB == -1) return;
+                    modVal = (va * invB) % mod;
+            }
+            if (target >= 0 && modVal != target) return;
+        }
+
+        SolutionNormalizer.Node tree = SolutionNormalizer.combine(op, a.tree, b.tree);
+        Entry e = found.get(tree);
+        if (e == null) {
+            e = new Entry(tree, val, modVal);
+            found.put(tree, e);
+        } else if (compareText(a, op, b, e.left, e.op, e.right) >= 0) {
+            return;
+        }
+        e.op = op;
+        e.left = a;
+        e.right = b;
+    }
+
+    private static boolean isTarget(Entry e, Integer modulus, int target) {
+        return modulus == null ? e.val.isValue(target) : e.modVal == target;
+    }
+
+    // 逐字符比较 "(l1 op1 r1)" 与 "(l2 op2 r2)" 的文本，不拼接字符串 (两者长度相同)
+    private static int compareText(Entry l1, char op1, Entry r1, Entry l2, char op2, Entry r2) {
+        // 子类的写法已经确定，直接比较它们的文本
+        String a1 = l1.text, b1 = r1.text, a2 = l2.text, b2 = r2.text;
+        int length = a1.length() + b1.length() + 5;
+        for (int k = 1; k < length - 1; k++) {
+            char c1 = charAt(a1, op1, b1, k), c2 = charAt(a2, op2, b2, k);
+            if (c1 != c2) return c1 - c2;
+        }
+        return 0;
+    }
+
+    // "(l op r)" 的第 k 个字符 (0 < k < 长度 - 1)
+    private static char charAt(String l, char op, String r, int k) {
+        k--;
+        if (k < l.length()) return l.charAt(k);
+        k -= l.length();
+        if (k == 0 || k == 2) return ' ';
+        if (k == 1) return op;
+        return r.charAt(k - 3);
+    }
+}
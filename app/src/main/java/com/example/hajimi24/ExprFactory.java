@@ -0,0 +1,119 @@
+package com.example.hajimi24;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 哈希合并 (hash-consing) 的算式表。
+ * 每个不同的子式只登记一次并得到一个编号：叶子按文本登记，运算节点按 (运算符, 左编号, 右编号) 登记，
+ * 因此相同的子式总是同一个编号，比较两个子式是否相同只需比较编号。
+ * 求解器枚举时只产生编号，不拼接字符串；需要文本时由 toString(id) 按需生成并缓存，
+ * 形如 "(a + b)"，与原先求解器输出的格式一致。
+ *
+ * 一个表只由一个线程使用 (每次求解新建一个)。
+ */
+public class ExprFactory {
+
+    private int size = 0;
+    // 运算符，叶子为 0
+    private char[] ops = new char[256];
+    private int[] lefts = new int[256];
+    private int[] rights = new int[256];
+    private String[] texts = new String[256];
+
+    private final Map<String, Integer> leafIds = new HashMap<>();
+    // 运算节点的登记表：开放寻址，键为 (运算符, 左, 右) 压成的 long，值为编号 + 1
+    private long[] nodeKeys = new long[512];
+    private int[] nodeSlots = new int[512];
+    private int nodeCount = 0;
+
+    public int leaf(String text) {
+        Integer id = leafIds.get(text);
+        if (id != null) return id;
+        int newId = append((char) 0, -1, -1);
+        texts[newId] = text;
+        leafIds.put(text, newId);
+        return newId;
+    }
+
+    public int node(char op, int left, int right) {
+        // 编号不超过 2^28 (五个数的全部枚举也只有几十万个不同子式)
+        long key = ((long) op << 56) | ((long) left << 28) | right;
+        int mask = nodeKeys.length - 1;
+        int slot = (int) Hashing.mix(key) & mask;
+        while (nodeSlots[slot] != 0) {
+            if (nodeKeys[slot] == key) return nodeSlots[slot] - 1;
+            slot = (slot + 1) & mask;
+        }
+        int id = append(op, left, right);
+        nodeKeys[slot] = key;
+        nodeSlots[slot] = id + 1;
+        if (++nodeCount * 2 > nodeKeys.length) growNodes();
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isLeaf(int id) {
+        return ops[id] == 0;
+    }
+
+    public char getOp(int id) {
+        return ops[id];
+    }
+
+    public int getLeft(int id) {
+        return lefts[id];
+    }
+
+    public int getRight(int id) {
+        return rights[id];
+    }
+
+    /** 叶子的文本 (运算节点为 null，需要时用 toString) */
+    public String getText(int id) {
+        return ops[id] == 0 ? texts[id] : null;
+    }
+
+    /** 子式的文本，运算节点带一层括号，例如 "((1 + 2) * 8)"；生成后缓存，共享的子式只拼接一次 */
+    public String toString(int id) {
+        String s = texts[id];
+        if (s == null) {
+            s = "(" + toString(lefts[id]) + " " + ops[id] + " " + toString(rights[id]) + ")";
+            texts[id] = s;
+        }
+        return s;
+    }
+
+    private int append(char op, int left, int right) {
+        if (size == ops.length) {
+            int capacity = size * 2;
+            ops = Arrays.copyOf(ops, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        ops[size] = op;
+        lefts[size] = left;
+        rights[size] = right;
+        return size++;
+    }
+
+    private void growNodes() {
+        long[] oldKeys = nodeKeys;
+        int[] oldSlots = nodeSlots;
+        nodeKeys = new long[oldKeys.length * 2];
+        nodeSlots = new int[oldKeys.length * 2];
+        int mask = nodeKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[i] == 0) continue;
+            int slot = (int) Hashing.mix(oldKeys[i]) & mask;
+            while (nodeSlots[slot] != 0) slot = (slot + 1) & mask;
+            nodeKeys[slot] = oldKeys[i];
+            nodeSlots[slot] = oldSlots[i];
+        }
+    }
+}
@@ -11,12 +11,13 @@ import android.graphics.PixelFormat;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.widget.Button;
 import android.widget.Toast;
@@ -40,7 +41,11 @@ public class FloatingWindowService extends Service {
 
     private Button[] cardButtons = new Button[4];
     private Button btnAdd, btnSub, btnMul, btnDiv;
+    // 公式默认由 fvMath 原生绘制；超出原生排版范围时才借用 wvMath 用 MathJax 渲染
+    private FormulaView fvMath;
     private WebView wvMath;
+    // 最近一次公式渲染的序号 (只在主线程读写)：缓存查找返回时核对，已被新公式取代的结果不再显示
+    private int mathRenderSeq = 0;
 
     private int selectedFirstIndex = -1;
     private String selectedOperator = null;
@@ -56,6 +61,7 @@ public class FloatingWindowService extends Service {
         gameManager = new GameManager();
         // 【强制约束】：初始化时默认设为 4 个数
         gameManager.currentNumberCount = 4;
+        gameManager.setRequiredNumberCount(4);
         windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
 
         // 1. 获取主界面传来的状态
@@ -78,7 +84,7 @@ public class FloatingWindowService extends Service {
             gameManager.setProblemSet(single);
             gameManager.startNewGame(false); // 锁定这道题
 
-            // 如果是题库模式，同步加载题库列表（MainActivity 已经过滤过 4 数了）
+            // 如果是题库模式，同步加载题库列表 (悬浮窗只出 4 数题，出题时跳过其它题)
             if (!isRandomMode && currentProblemSet != null) {
                 gameManager.setProblemSet(currentProblemSet);
             }
@@ -130,21 +136,52 @@ public class FloatingWindowService extends Service {
         btnSub = viewOps.findViewById(R.id.btn_op_sub);
         btnMul = viewOps.findViewById(R.id.btn_op_mul);
         btnDiv = viewOps.findViewById(R.id.btn_op_div);
-        wvMath = viewActions.findViewById(R.id.wv_math_message);
-
-        if (wvMath != null) {
-            WebSettings s = wvMath.getSettings();
-            s.setJavaScriptEnabled(true);
-            wvMath.setBackgroundColor(0);
-            wvMath.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+        fvMath = viewActions.findViewById(R.id.fv_math_message);
+    }
 
-            wvMath.addJavascriptInterface(new Object() {
-                @android.webkit.JavascriptInterface
+    // 需要 MathJax 时才从 MathWebViewPool 借用 WebView，放在 fvMath 的位置之后，尺寸相同；
+    // 切换方向时只从旧布局取下 (removeOldViews)，再装进新布局，已加载的模板不受影响
+    private WebView ensureWebView() {
+        if (fvMath == null) return wvMath;
+        if (wvMath == null) {
+            wvMath = MathWebViewPool.get(this).acquire(this, new MathWebViewPool.Callback() {
+                @Override
                 public void onRenderFinished() {
-                    wvMath.post(() -> wvMath.animate().alpha(1.0f).setDuration(150).start());
+                    showWebView("mathjax");
+                }
+
+                @Override
+                public void onFormulaShown() {
+                    showWebView("svg-cache");
+                }
+
+                @Override
+                public void onSvgRendered(int id, String svg) {
+                    FormulaSvgCache.get(FloatingWindowService.this).onSvgRendered(id, svg);
                 }
-            }, "android");
+            });
+            wvMath.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+        }
+        if (wvMath.getParent() == null) {
+            wvMath.setVisibility(View.GONE);
+            ViewGroup parent = (ViewGroup) fvMath.getParent();
+            ViewGroup.LayoutParams fvLp = fvMath.getLayoutParams();
+            parent.addView(wvMath, parent.indexOfChild(fvMath) + 1, new ViewGroup.LayoutParams(fvLp.width, fvLp.height));
         }
+        return wvMath;
+    }
+
+    private void showWebView(String renderer) {
+        WebView wv = wvMath;
+        if (wv == null) return;
+        wv.post(() -> wv.animate().alpha(1.0f).setDuration(150).start());
+        MathWebViewPool.get(this).reportFormulaShown(renderer);
+    }
+
+    private void hideFormula() {
+        mathRenderSeq++; // 还没返回的缓存查找作废
+        if (fvMath != null) fvMath.setVisibility(View.GONE);
+        if (wvMath != null) wvMath.setVisibility(View.GONE);
     }
 
     private void initListeners() {
@@ -207,45 +244,81 @@ public class FloatingWindowService extends Service {
     }
 
     private void renderLatex(String latex, int depth) {
-        if (wvMath == null) return;
-        wvMath.setAlpha(0f);
+        if (fvMath == null) return;
 
-        String fontSize = (depth <= 2) ? "120%" : (depth == 3) ? "105%" : (depth == 4) ? "90%" : "75%";
+        int fontPercent = (depth <= 2) ? 120 : (depth == 3) ? 105 : (depth == 4) ? 90 : 75;
+        String fontSize = fontPercent + "%";
         float density = getResources().getDisplayMetrics().density;
         int targetDimPx = (int) ((85 + Math.max(0, depth - 2) * 32) * density);
         int fixedDimPx = (int) (330 * density);
+        int seq = ++mathRenderSeq;
+
+        // 先尝试原生绘制：按悬浮窗方向旋转内容，字号与 MathJax 页面一致 (16px 乘以百分比)
+        if (fvMath.setLatex(latex)) {
+            if (wvMath != null) wvMath.setVisibility(View.GONE);
+            fvMath.setContentRotation(currentOrientation);
+            fvMath.setTextColor(Color.WHITE);
+            fvMath.setMaxTextSize(16 * density * fontPercent / 100f);
+            resizeFormulaView(fvMath, targetDimPx, fixedDimPx);
+            fvMath.setVisibility(View.VISIBLE);
+            fvMath.post(() -> MathWebViewPool.get(this).reportFormulaShown("native"));
+            return;
+        }
+        fvMath.setVisibility(View.GONE);
+        WebView wv = ensureWebView();
+        wv.setVisibility(View.VISIBLE);
+        wv.setAlpha(0f);
+        resizeFormulaView(wv, targetDimPx, fixedDimPx);
+
+        // 先查公式缓存：排版过的公式直接插入 SVG，不再调用 MathJax；内容按悬浮窗方向旋转
+        String cacheKey = FormulaSvgCache.key(latex, fontSize, "float");
+        String frame = "setFrame('white', " + currentOrientation + "); ";
+        FormulaSvgCache cache = FormulaSvgCache.get(this);
+        cache.getSvg(cacheKey, svg -> {
+            // 读磁盘期间又换了公式
+            if (seq != mathRenderSeq) return;
+            String js = frame;
+            if (svg != null) {
+                js += "showSvg('" + FormulaSvgCache.escapeJs(svg) + "', '" + fontSize + "')";
+            } else {
+                js += "updateMath('" + FormulaSvgCache.escapeJs(latex) + "', '" + fontSize + "', " + cache.requestRender(cacheKey) + ")";
+            }
+            MathWebViewPool.get(this).run(wv, js);
+        });
+    }
 
-        wvMath.post(() -> {
-            android.view.ViewGroup.LayoutParams lp = wvMath.getLayoutParams();
+    // 公式区沿悬浮窗方向固定 330dp，另一边随公式层数变化
+    private void resizeFormulaView(View v, int targetDimPx, int fixedDimPx) {
+        v.post(() -> {
+            ViewGroup.LayoutParams lp = v.getLayoutParams();
             if (currentOrientation == 0 || currentOrientation == 180) {
                 lp.height = targetDimPx; lp.width = fixedDimPx;
             } else {
                 lp.width = targetDimPx; lp.height = fixedDimPx;
             }
-            wvMath.setLayoutParams(lp);
+            v.setLayoutParams(lp);
             if (viewActions != null) windowManager.updateViewLayout(viewActions, pActions);
         });
-
-        String cssRotation = currentOrientation + "deg";
-        String html = "<html><head><style>" +
-                "body { background: transparent !important; color: white; display: flex; justify-content: center; align-items: center; " +
-                "margin: 0; padding: 0; width: 100vw; height: 100vh; overflow: hidden; }" +
-                "#math { transform: translate(-50%, -50%) rotate(" + cssRotation + "); position: absolute; top: 50%; left: 50%; white-space: nowrap; font-size: " + fontSize + "; }" +
-                "</style>" +
-                "<script>window.MathJax = { startup: { ready: () => { " +
-                "MathJax.startup.defaultReady(); MathJax.startup.promise.then(() => { if(window.android) window.android.onRenderFinished(); }); " +
-                "} } };</script>" +
-                "<script src='file:///android_asset/mathjax/tex-svg.js'></script></head>" +
-                "<body><div id='math'>$$\\displaystyle " + latex + "$$</div></body></html>";
-
-        wvMath.loadDataWithBaseURL("file:///android_asset/mathjax/", html, "text/html", "UTF-8", null);
     }
 
     private void startNewGame() {
         // 使用成员变量决定模式，不再写死 true
         gameManager.startNewGame(isRandomMode);
         resetSelection(); refreshUI();
-        if (wvMath != null) wvMath.setVisibility(View.GONE);
+        hideFormula();
+
+        // 分片文件夹题库的下一道题还在解析：提示加载中，在后台等它读完后再出题
+        Runnable load = gameManager.getPendingLoad();
+        if (load != null) {
+            Toast.makeText(this, "题库加载中…", Toast.LENGTH_SHORT).show();
+            Handler main = new Handler(Looper.getMainLooper());
+            new Thread(() -> {
+                load.run();
+                main.post(() -> {
+                    if (viewCards != null && gameManager.isWaitingForProblems()) startNewGame();
+                });
+            }).start();
+        }
     }
 
     // ... 其他辅助方法 (onCardClicked, refreshUI, resetOpColors, etc.) 保持稳定逻辑 ...
@@ -289,6 +362,7 @@ public class FloatingWindowService extends Service {
         if (viewCards != null) { windowManager.removeView(viewCards); viewCards = null; }
         if (viewOps != null) { windowManager.removeView(viewOps); viewOps = null; }
         if (viewActions != null) { windowManager.removeView(viewActions); viewActions = null; }
+        if (wvMath != null && wvMath.getParent() != null) ((ViewGroup) wvMath.getParent()).removeView(wvMath);
     }
 
     private void selectCard(int index) { selectedFirstIndex = index; refreshUI(); }
@@ -322,19 +396,17 @@ public class FloatingWindowService extends Service {
         }
 
         // 调用求解器
-        List<String> allRawSolutions = Solver.solveAll(currentNums, modulus, targetValue);
-        if (allRawSolutions.isEmpty()) return null;
+        // 调用求解器，直接得到规范化后的解（确保和主界面显示的答案一致）
+        List<String> rawDistinct = Solver.solveAllDistinct(currentNums, modulus, targetValue);
+        if (rawDistinct.isEmpty()) return null;
 
         // 构造规范化后缀
         String suffix = "";
         if (modulus != null) suffix = " mod " + modulus;
         else if (radix != 10) suffix = " base " + radix;
 
-        List<String> candidates = new ArrayList<>();
-        for (String s : allRawSolutions) candidates.add(s + suffix);
-
-        // 调用规范化工具（确保和主界面显示的答案一致）
-        List<String> distinctSolutions = SolutionNormalizer.distinct(candidates);
+        List<String> distinctSolutions = new ArrayList<>();
+        for (String s : rawDistinct) distinctSolutions.add(s + suffix);
 
         // 排序选出最优解
         java.util.Collections.sort(distinctSolutions, (s1, s2) -> {
@@ -346,8 +418,7 @@ public class FloatingWindowService extends Service {
     }
 
     private void updateDisplay(String sol, boolean isStruct) {
-        if (sol == null || wvMath == null) { if (wvMath != null) wvMath.setVisibility(View.GONE); return; }
-        wvMath.setVisibility(View.VISIBLE);
+        if (sol == null || fvMath == null) { hideFormula(); return; }
         currentLatexCode = ExpressionHelper.getAsLatex(sol, getCurrentNumbers(), isStruct, 1, 0);
         renderLatex(currentLatexCode, ExpressionHelper.getLatexHeight(currentLatexCode));
     }
@@ -374,6 +445,10 @@ public class FloatingWindowService extends Service {
         WindowManager.LayoutParams p = new WindowManager.LayoutParams(WindowManager.LayoutParams.WRAP_CONTENT, WindowManager.LayoutParams.WRAP_CONTENT, Build.VERSION.SDK_INT >= Build.VERSION_CODES.O ? 2038 : 2002, WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL, PixelFormat.TRANSLUCENT);
         p.gravity = Gravity.TOP | Gravity.START; p.x = x; p.y = y; return p;
     }
-    @Override public void onDestroy() { super.onDestroy(); removeOldViews(); }
+    @Override public void onDestroy() {
+        super.onDestroy();
+        removeOldViews();
+        if (wvMath != null) { MathWebViewPool.get(this).release(wvMath); wvMath = null; }
+    }
     @Override public IBinder onBind(Intent intent) { return null; }
 }
@@ -0,0 +1,339 @@
+package com.example.hajimi24;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把一个文件夹中的分片题库 (例如 大文件/五个数-五个分数 下的 40 个分片) 当作一个题库。
+ * 全局下标按各分片的行数 (前缀和) 映射到 分片 + 行号，分片只在用到时才解析，
+ * 并只保留最近用到的几个；尚未下载的分片在快玩到已知部分的末尾时才在后台下载，
+ * 下载完成后追加到末尾 (size() 随之增长)。
+ *
+ * 第 i 项对应某个分片中的一行：注释、空行或不满足当前游戏设定的行为 null，调用方需跳过。
+ * get 在分片尚未解析完时会等待，主线程中应先用 isReady 判断 (见 GameManager.nextProblem)。
+ */
+public class FolderProblemSet extends AbstractList<Problem> implements RandomAccess {
+
+    // 分片的读取与下载由 ProblemRepository 提供
+    public interface PartSource {
+        // 分片已在本地时返回其行数，否则返回 -1
+        int localLineCount(String path);
+
+        // 下载尚未在本地的分片，返回其行数
+        int fetch(String path) throws Exception;
+
+        // 按行号对齐解析整个分片，不满足 settings 的行为 null
+        Problem[] load(String path, GameModeSettings settings) throws Exception;
+    }
+
+    // 同时保留在内存中的分片数 (当前分片、预读的下一个分片，以及回绕时的第一个)
+    private static final int MAX_LOADED_PARTS = 3;
+
+    // 分片的解析与下载在后台进行；解析本身还会用到 ParallelProblemLoader 的线程池
+    private static ExecutorService loader;
+
+    private static synchronized ExecutorService getLoader() {
+        if (loader == null) {
+            loader = Executors.newFixedThreadPool(2, r -> {
+                Thread t = new Thread(r, "FolderPartLoader");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return loader;
+    }
+
+    private final String folder;
+    private final PartSource source;
+    private final GameModeSettings settings;
+    private final String[] parts;
+    // offsets[k] 为第 k 个分片的起始下标；前 knownParts 个分片的行数已知
+    private final int[] offsets;
+    private volatile int knownParts;
+    private Future<?> pendingFetch = null;
+    private final Object fetchLock = new Object();
+
+    // 被挤出的分片如果还在解析就取消 (结果反正会被丢弃)
+    private final Map<Integer, Future<Problem[]>> loaded = new LinkedHashMap<Integer, Future<Problem[]>>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Future<Problem[]>> eldest) {
+            if (size() <= MAX_LOADED_PARTS) return false;
+            eldest.getValue().cancel(true);
+            return true;
+        }
+    };
+    // 最近一次读取题目 (get / isReady) 所在的分片；预读不会把它挤出去
+    private int currentPart = -1;
+
+    /**
+     * @param localParts  已在本地的分片 (将按分片编号排序)
+     * @param remoteParts 尚未下载的分片，排在本地分片之后，按需下载
+     */
+    public FolderProblemSet(String folder, List<String> localParts, List<String> remoteParts,
+                            PartSource source, GameModeSettings settings) {
+        this.folder = folder;
+        this.source = source;
+        this.settings = settings;
+        List<String> local = new ArrayList<>(localParts);
+        List<String> remote = new ArrayList<>(remoteParts);
+        Collections.sort(local, PART_ORDER);
+        Collections.sort(remote, PART_ORDER);
+
+        // 读不出行数的本地分片直接跳过：不能当作远程分片重新下载 (没有可校验的 SHA)
+        List<String> all = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (String part : local) {
+            int lines = source.localLineCount(part);
+            if (lines < 0) continue;
+            all.add(part);
+            counts.add(lines);
+        }
+        int known = all.size();
+        all.addAll(remote);
+        parts = all.toArray(new String[0]);
+        offsets = new int[parts.length + 1];
+        for (int k = 0; k < known; k++) offsets[k + 1] = offsets[k] + counts.get(k);
+        knownParts = known;
+    }
+
+    // 相同分片与已知行数，换一套游戏设定 (已解析的分片作废)
+    private FolderProblemSet(FolderProblemSet other, GameModeSettings settings) {
+        this.folder = other.folder;
+        this.source = other.source;
+        this.settings = settings;
+        this.parts = other.parts;
+        synchronized (other) {
+            this.offsets = other.offsets.clone();
+            this.knownParts = other.knownParts;
+        }
+    }
+
+    public FolderProblemSet withSettings(GameModeSettings settings) {
+        return new FolderProblemSet(this, settings);
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public int getPartCount() {
+        return parts.length;
+    }
+
+    // 尚未下载的分片数
+    public int getPendingPartCount() {
+        return parts.length - knownParts;
+    }
+
+    @Override
+    public int size() {
+        return offsets[knownParts];
+    }
+
+    @Override
+    public Problem get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index);
+        int part = partOf(index);
+        synchronized (this) {
+            currentPart = part;
+        }
+        Problem[] lines = loadPart(part);
+        int line = index - offsets[part];
+        // 行数来自目录索引，与实际文件不一致时多出的下标视为空行
+        if (lines == null || line >= lines.length) return null;
+        return lines[line];
+    }
+
+    // 第 index 项所在的分片是否已解析完；为 true 时 get 不会等待 (可在主线程调用)
+    public boolean isReady(int index) {
+        if (index < 0 || index >= size()) return false;
+        Future<Problem[]> f;
+        synchronized (this) {
+            currentPart = partOf(index);
+            f = loaded.get(currentPart);
+        }
+        return f != null && f.isDone() && !f.isCancelled();
+    }
+
+    // 已解析完的分片的总行数 (不满足设定的行也计入)
+    public synchronized int getReadySize() {
+        int n = 0;
+        for (Map.Entry<Integer, Future<Problem[]>> e : loaded.entrySet()) {
+            if (isLoaded(e.getValue())) n += offsets[e.getKey() + 1] - offsets[e.getKey()];
+        }
+        return n;
+    }
+
+    // 由 seed 在已解析完的 (非空) 分片中选一个，返回其起始下标；没有时返回 -1
+    public synchronized int readyPartStart(long seed) {
+        List<Integer> ready = new ArrayList<>();
+        for (Map.Entry<Integer, Future<Problem[]>> e : loaded.entrySet()) {
+            int part = e.getKey();
+            if (isLoaded(e.getValue()) && offsets[part + 1] > offsets[part]) ready.add(part);
+        }
+        if (ready.isEmpty()) return -1;
+        Collections.sort(ready);
+        return offsets[ready.get((int) Math.floorMod(seed, (long) ready.size()))];
+    }
+
+    /** 在后台线程调用：没有已解析的分片时，由 seed 选一个 (非空) 分片读入并等待完成，出第一题时不必在主线程等待 */
+    public void preload(long seed) {
+        if (readyPartStart(seed) >= 0) return;
+        int known = knownParts;
+        if (known == 0) return;
+        int first = (int) Math.floorMod(seed, (long) known);
+        for (int k = 0; k < known; k++) {
+            int part = (first + k) % known;
+            if (offsets[part + 1] > offsets[part]) {
+                loadPart(part);
+                return;
+            }
+        }
+    }
+
+    // 预读 [from, to) 覆盖的已知分片 (不等待)
+    public void prefetchRange(int from, int to) {
+        to = Math.min(to, size());
+        if (from < 0 || from >= to) return;
+        for (int part = partOf(from), last = partOf(to - 1); part <= last; part++) startPrefetch(part);
+    }
+
+    /**
+     * 即将访问 index 附近时调用：预读 index 所在分片的下一个分片；
+     * 已到已知部分的最后一个分片时，开始下载下一个尚未下载的分片。
+     */
+    public void prefetch(int index) {
+        if (index < 0 || index >= size()) return;
+        int part = partOf(index);
+        int next = part + 1;
+        if (next < knownParts) {
+            startPrefetch(next);
+        } else if (next < parts.length) {
+            startFetch();
+        }
+    }
+
+    private int partOf(int index) {
+        // 二分查找 offsets 中最后一个 <= index 的位置 (跳过行数为 0 的分片)
+        int lo = 0, hi = knownParts - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= index) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private Problem[] loadPart(int part) {
+        while (true) {
+            try {
+                return startLoad(part).get();
+            } catch (CancellationException e) {
+                // 等待期间被预读挤出并取消：重新提交
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    private static boolean isLoaded(Future<Problem[]> f) {
+        return f.isDone() && !f.isCancelled();
+    }
+
+    // 预读：已满且最久未用的就是正在出题的分片时不预读，免得把它挤出去
+    private synchronized void startPrefetch(int part) {
+        if (!loaded.containsKey(part) && loaded.size() >= MAX_LOADED_PARTS
+                && loaded.keySet().iterator().next() == currentPart) {
+            return;
+        }
+        startLoad(part);
+    }
+
+    private synchronized Future<Problem[]> startLoad(int part) {
+        Future<Problem[]> f = loaded.get(part);
+        if (f == null || f.isCancelled()) {
+            String path = parts[part];
+            f = getLoader().submit(() -> source.load(path, settings));
+            loaded.put(part, f);
+        }
+        return f;
+    }
+
+    // 后台下载下一个尚未下载的分片 (同一时间只有一个)
+    private synchronized void startFetch() {
+        if (pendingFetch != null && !pendingFetch.isDone()) return;
+        if (knownParts >= parts.length) return;
+        pendingFetch = getLoader().submit(() -> {
+            try {
+                fetchNextPart();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** 下载下一个尚未下载的分片并把它的行数接到末尾；没有待下载的分片时返回 false */
+    public boolean fetchNextPart() throws Exception {
+        synchronized (fetchLock) {
+            int part = knownParts;
+            if (part >= parts.length) return false;
+            int lines = source.fetch(parts[part]);
+            synchronized (this) {
+                offsets[part + 1] = offsets[part] + lines;
+                knownParts = part + 1;
+            }
+            return true;
+        }
+    }
+
+    // ==========================================
+    //  分片识别
+    // ==========================================
+
+    // 分片文件名：相同的前缀 + 编号，例如 "五个数-五个分数-大文件12.txt"
+    private static final Pattern PART_NAME = Pattern.compile("^(.*?)(\\d+)\\.txt$");
+
+    /** 这些文件是否同一个文件夹下、只有末尾编号不同的分片 (由 split.py 切分得到) */
+    public static boolean isSplitSet(List<String> paths) {
+        if (paths.size() < 2) return false;
+        String stem = null;
+        for (String path : paths) {
+            Matcher m = PART_NAME.matcher(path);
+            if (!m.matches()) return false;
+            if (stem == null) stem = m.group(1);
+            else if (!stem.equals(m.group(1))) return false;
+        }
+        return true;
+    }
+
+    // 按分片编号排序 (10 排在 9 之后)
+    private static final Comparator<String> PART_ORDER = (a, b) -> {
+        Matcher ma = PART_NAME.matcher(a), mb = PART_NAME.matcher(b);
+        if (ma.matches() && mb.matches() && ma.group(1).equals(mb.group(1))) {
+            return Long.compare(Long.parseLong(ma.group(2)), Long.parseLong(mb.group(2)));
+        }
+        return a.compareTo(b);
+    };
+
+    @Override
+    public String toString() {
+        return folder + " " + Arrays.toString(parts);
+    }
+}
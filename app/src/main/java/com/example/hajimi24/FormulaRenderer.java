@@ -0,0 +1,342 @@
+package com.example.hajimi24;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不依赖 WebView 的公式排版：把 ExpressionHelper.getAsLatex 生成的 LaTeX 解析成盒子树，直接画到 Canvas 上。
+ *
+ * 只支持 ExpressionHelper 用到的子集：\cfrac (\frac、\dfrac) 分式、\left( \right) 括号、\times \cdot \div、
+ * \mathrm、\operatorname、\text 与 \quad 等空白。遇到其他命令时 parse 抛出 IllegalArgumentException，
+ * 由调用方改用 MathJax 渲染。
+ *
+ * 盒子的尺寸只在 measure 时按画笔的字号计算，同一棵树可以用不同字号反复测量和绘制。
+ */
+public class FormulaRenderer {
+
+    // 以字号为单位的各项尺寸 (取自 TeX 的常用参数，略作简化)
+    private static final float ASCENT = 0.75f, DESCENT = 0.25f;
+    private static final float AXIS = 0.25f;               // 数学轴 (分数线、减号的高度)
+    private static final float RULE = 0.06f;               // 分数线粗细
+    private static final float FRAC_GAP = 0.15f;           // 分子分母与分数线的距离
+    private static final float FRAC_PAD = 0.12f;           // 分数线两端伸出的长度
+    private static final float BIN_SPACE = 4f / 18;        // 二元运算符两侧的空白 (4mu)
+    private static final float REL_SPACE = 5f / 18;        // 关系符号两侧的空白 (5mu)
+
+    public static Box parse(String latex) {
+        Parser parser = new Parser(latex);
+        Row row = parser.parseRow(false);
+        if (parser.pos < latex.length()) throw new IllegalArgumentException("多余的 }");
+        return row;
+    }
+
+    // ==========================================
+    //  盒子
+    // ==========================================
+
+    public abstract static class Box {
+        // 以像素为单位，measure 之后有效；ascent 为基线以上的高度，descent 为基线以下
+        public float width, ascent, descent;
+
+        public abstract void measure(Paint paint);
+
+        public abstract void draw(Canvas canvas, float x, float baseline, Paint paint);
+    }
+
+    private static class Text extends Box {
+        final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void measure(Paint paint) {
+            float size = paint.getTextSize();
+            width = paint.measureText(text);
+            ascent = ASCENT * size;
+            descent = DESCENT * size;
+        }
+
+        @Override
+        public void draw(Canvas canvas, float x, float baseline, Paint paint) {
+            canvas.drawText(text, x, baseline, paint);
+        }
+    }
+
+    private static class Space extends Box {
+        final float em;
+
+        Space(float em) {
+            this.em = em;
+        }
+
+        @Override
+        public void measure(Paint paint) {
+            width = em * paint.getTextSize();
+            ascent = 0;
+            descent = 0;
+        }
+
+        @Override
+        public void draw(Canvas canvas, float x, float baseline, Paint paint) {
+        }
+    }
+
+    private static class Row extends Box {
+        final List<Box> items = new ArrayList<>();
+
+        @Override
+        public void measure(Paint paint) {
+            width = 0;
+            // 空行 (如 "{}") 也占一行文字的高度
+            ascent = items.isEmpty() ? ASCENT * paint.getTextSize() : 0;
+            descent = items.isEmpty() ? DESCENT * paint.getTextSize() : 0;
+            for (Box b : items) {
+                b.measure(paint);
+                width += b.width;
+                ascent = Math.max(ascent, b.ascent);
+                descent = Math.max(descent, b.descent);
+            }
+        }
+
+        @Override
+        public void draw(Canvas canvas, float x, float baseline, Paint paint) {
+            for (Box b : items) {
+                b.draw(canvas, x, baseline, paint);
+                x += b.width;
+            }
+        }
+    }
+
+    private static class Frac extends Box {
+        final Box num, den;
+
+        Frac(Box num, Box den) {
+            this.num = num;
+            this.den = den;
+        }
+
+        @Override
+        public void measure(Paint paint) {
+            float size = paint.getTextSize();
+            num.measure(paint);
+            den.measure(paint);
+            width = Math.max(num.width, den.width) + 2 * FRAC_PAD * size;
+            float half = Math.max(1f, RULE * size) / 2;
+            ascent = AXIS * size + half + FRAC_GAP * size + num.descent + num.ascent;
+            descent = -AXIS * size + half + FRAC_GAP * size + den.ascent + den.descent;
+        }
+
+        @Override
+        public void draw(Canvas canvas, float x, float baseline, Paint paint) {
+            float size = paint.getTextSize();
+            float rule = Math.max(1f, RULE * size);
+            float barY = baseline - AXIS * size;
+            canvas.drawRect(x, barY - rule / 2, x + width, barY + rule / 2, paint);
+            num.draw(canvas, x + (width - num.width) / 2, barY - rule / 2 - FRAC_GAP * size - num.descent, paint);
+            den.draw(canvas, x + (width - den.width) / 2, barY + rule / 2 + FRAC_GAP * size + den.ascent, paint);
+        }
+    }
+
+    // 随内容伸缩的圆括号：内容不高于一行文字时直接用字体里的括号，否则画成弧线
+    private static class Parens extends Box {
+        final Box content;
+        private boolean stretched;
+        private float parenWidth;
+
+        Parens(Box content) {
+            this.content = content;
+        }
+
+        @Override
+        public void measure(Paint paint) {
+            float size = paint.getTextSize();
+            content.measure(paint);
+            stretched = content.ascent + content.descent > (ASCENT + DESCENT) * size * 1.05f;
+            if (stretched) {
+                // 以数学轴为中心上下对称
+                float half = Math.max(content.ascent - AXIS * size, content.descent + AXIS * size) + 0.08f * size;
+                ascent = AXIS * size + half;
+                descent = half - AXIS * size;
+                parenWidth = 0.3f * size + 0.05f * (ascent + descent);
+            } else {
+                ascent = Math.max(content.ascent, ASCENT * size);
+                descent = Math.max(content.descent, DESCENT * size);
+                parenWidth = paint.measureText("(");
+            }
+            width = content.width + 2 * parenWidth;
+        }
+
+        @Override
+        public void draw(Canvas canvas, float x, float baseline, Paint paint) {
+            content.draw(canvas, x + parenWidth, baseline, paint);
+            if (!stretched) {
+                canvas.drawText("(", x, baseline, paint);
+                canvas.drawText(")", x + parenWidth + content.width, baseline, paint);
+                return;
+            }
+            float top = baseline - ascent, bottom = baseline + descent, mid = (top + bottom) / 2;
+            float w = parenWidth;
+            Paint.Style style = paint.getStyle();
+            float stroke = paint.getStrokeWidth();
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(Math.max(1f, 0.07f * paint.getTextSize()));
+            Path path = new Path();
+            path.moveTo(x + w * 0.8f, top);
+            path.quadTo(x + w * 0.1f, mid, x + w * 0.8f, bottom);
+            float right = x + w + content.width;
+            path.moveTo(right + w * 0.2f, top);
+            path.quadTo(right + w * 0.9f, mid, right + w * 0.2f, bottom);
+            canvas.drawPath(path, paint);
+            paint.setStyle(style);
+            paint.setStrokeWidth(stroke);
+        }
+    }
+
+    // ==========================================
+    //  解析
+    // ==========================================
+
+    private static class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        // 解析到字符串末尾、"}" 或 (inLeft 时) "\right" 为止，不消耗结束标记
+        Row parseRow(boolean inLeft) {
+            Row row = new Row();
+            StringBuilder text = new StringBuilder();
+            // 上一个元素是否为运算符或行首 (此时的 + - 是正负号，两侧不加空白)
+            boolean afterOperator = true;
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c == '}') break;
+                if (Character.isWhitespace(c)) {
+                    pos++;
+                    continue;
+                }
+                if (c == '{') {
+                    pos++;
+                    flush(row, text);
+                    row.items.add(parseRow(false));
+                    expect('}');
+                    afterOperator = false;
+                    continue;
+                }
+                if (c == '\\') {
+                    String command = readCommand();
+                    if (command.equals("right")) {
+                        if (!inLeft) throw new IllegalArgumentException("多余的 \\right");
+                        pos -= "\\right".length();
+                        break;
+                    }
+                    flush(row, text);
+                    afterOperator = command(row, command, afterOperator);
+                    continue;
+                }
+                pos++;
+                if (c == '+' || c == '-' || c == '=') {
+                    flush(row, text);
+                    String symbol = c == '-' ? "−" : String.valueOf(c);
+                    operator(row, symbol, c == '=' ? REL_SPACE : BIN_SPACE, afterOperator);
+                    afterOperator = true;
+                } else {
+                    // 其余字符 (数字、字母、表情等) 原样连成一段文字
+                    text.append(c);
+                    afterOperator = false;
+                }
+            }
+            flush(row, text);
+            return row;
+        }
+
+        // 处理一个命令，返回之后是否处于运算符之后
+        private boolean command(Row row, String command, boolean afterOperator) {
+            switch (command) {
+                case "cfrac": case "frac": case "dfrac": {
+                    Box num = group();
+                    Box den = group();
+                    row.items.add(new Frac(num, den));
+                    return false;
+                }
+                case "left": {
+                    expect('(');
+                    Row content = parseRow(true);
+                    if (!readCommand().equals("right")) throw new IllegalArgumentException("缺少 \\right");
+                    expect(')');
+                    row.items.add(new Parens(content));
+                    return false;
+                }
+                case "times": operator(row, "×", BIN_SPACE, afterOperator); return true;
+                case "cdot": operator(row, "·", BIN_SPACE, afterOperator); return true;
+                case "div": operator(row, "÷", BIN_SPACE, afterOperator); return true;
+                case "mathrm": case "text":
+                    row.items.add(group());
+                    return false;
+                case "operatorname":
+                    // 与 MathJax 一样，运算符名称后留一个小空白
+                    row.items.add(group());
+                    row.items.add(new Space(3f / 18));
+                    return true;
+                case "quad": row.items.add(new Space(1f)); return afterOperator;
+                case "qquad": row.items.add(new Space(2f)); return afterOperator;
+                case ",": row.items.add(new Space(3f / 18)); return afterOperator;
+                case ":": row.items.add(new Space(4f / 18)); return afterOperator;
+                case ";": row.items.add(new Space(5f / 18)); return afterOperator;
+                case " ": row.items.add(new Space(0.25f)); return afterOperator;
+                case "displaystyle": case "textstyle": return afterOperator;
+                default:
+                    throw new IllegalArgumentException("不支持的命令: \\" + command);
+            }
+        }
+
+        // 运算符：作正负号用时不加两侧的空白
+        private void operator(Row row, String symbol, float space, boolean afterOperator) {
+            if (!afterOperator) row.items.add(new Space(space));
+            row.items.add(new Text(symbol));
+            if (!afterOperator) row.items.add(new Space(space));
+        }
+
+        private Box group() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+            if (pos < s.length() && s.charAt(pos) != '{' && s.charAt(pos) != '\\' && s.charAt(pos) != '}') {
+                // 不带括号的单个字符参数 (如 \frac12)
+                return new Text(String.valueOf(s.charAt(pos++)));
+            }
+            expect('{');
+            Row row = parseRow(false);
+            expect('}');
+            return row;
+        }
+
+        // 读取 "\" 之后的命令名：字母序列或单个非字母字符
+        private String readCommand() {
+            if (pos >= s.length() || s.charAt(pos) != '\\') throw new IllegalArgumentException("缺少命令");
+            int start = ++pos;
+            while (pos < s.length() && Character.isLetter(s.charAt(pos))) pos++;
+            if (pos == start && pos < s.length()) pos++;
+            if (pos == start) throw new IllegalArgumentException("缺少命令名");
+            return s.substring(start, pos);
+        }
+
+        private void expect(char c) {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+            if (pos >= s.length() || s.charAt(pos) != c) throw new IllegalArgumentException("缺少 " + c);
+            pos++;
+        }
+
+        private static void flush(Row row, StringBuilder text) {
+            if (text.length() == 0) return;
+            row.items.add(new Text(text.toString()));
+            text.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.hajimi24;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MathJax 排版结果 (SVG) 的缓存，以 (LaTeX, 字号, 主题) 为键。
+ * 内存中按 LRU 保留最近用到的公式，同时写入磁盘 (cache/formula_svg)，重启后仍然有效。
+ * 命中时页面直接插入 SVG，不再调用 MathJax 排版；主界面与悬浮窗共用同一个实例。
+ * 读磁盘在后台线程进行，查找结果与排版结果都在主线程交付。
+ */
+public class FormulaSvgCache {
+
+    private static final int MEMORY_ENTRIES = 64;
+    private static final int DISK_ENTRIES = 512;
+
+    // MathJax 配置：字形路径写在每个 SVG 内部 (而不是页面共享的 defs)，SVG 单独插入其他页面也能显示
+    public static final String MATHJAX_SVG_CONFIG = "svg: { fontCache: 'local' }";
+
+    // 不加载 MathJax 时显示缓存的 SVG 所需的样式 (取自 MathJax 的 SVG 输出样式)
+    public static final String SVG_STYLE =
+            "mjx-container[jax='SVG'] { direction: ltr; } " +
+            "mjx-container[jax='SVG'] > svg { overflow: visible; min-height: 1px; min-width: 1px; } " +
+            "mjx-container[jax='SVG'][display='true'] { display: block; text-align: center; margin: 0; } " +
+            "mjx-assistive-mml { display: none; }";
+
+    // 取出元素排版后的 SVG (去掉无障碍用的 MathML)，交给 window.android.onSvgRendered(id, svg)
+    public static final String CAPTURE_SCRIPT =
+            "function captureSvg(el, id) {" +
+            "  if (!window.android || !window.android.onSvgRendered) return;" +
+            "  const copy = el.cloneNode(true);" +
+            "  copy.querySelectorAll('mjx-assistive-mml').forEach(n => n.remove());" +
+            "  window.android.onSvgRendered(id, copy.innerHTML);" +
+            "}";
+
+    // 等待排版结果的请求最多保留的个数：被新公式覆盖的请求可能永远不会回调
+    private static final int PENDING_RENDERS = 16;
+
+    /** 查找结果的回调 (主线程)；没有缓存时 svg 为 null */
+    public interface SvgCallback {
+        void onSvg(String svg);
+    }
+
+    private static FormulaSvgCache instance;
+
+    public static synchronized FormulaSvgCache get(Context context) {
+        if (instance == null) instance = new FormulaSvgCache(new File(context.getApplicationContext().getCacheDir(), "formula_svg"));
+        return instance;
+    }
+
+    private final File dir;
+    private final Map<String, String> memory = new LinkedHashMap<String, String>(MEMORY_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+
+    // 交给 MathJax 排版的请求：编号 -> 缓存键；JS 回调只带编号，按编号取回发出请求时的键
+    private final Map<Integer, String> pendingRenders = new LinkedHashMap<Integer, String>(PENDING_RENDERS, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > PENDING_RENDERS;
+        }
+    };
+    private int nextRenderId = 0;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public FormulaSvgCache(File dir) {
+        this.dir = dir;
+    }
+
+    public static String key(String latex, String fontSize, String theme) {
+        return latex + '\u0000' + fontSize + '\u0000' + theme;
+    }
+
+    /**
+     * 查找缓存的 SVG (在主线程调用)：内存命中时立即回调；未命中时在后台线程读磁盘，读完后在主线程回调。
+     * 调用方在回调中应核对这次查找是否已被更新的公式取代。
+     */
+    public void getSvg(String key, SvgCallback callback) {
+        String cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+        }
+        if (cached != null) {
+            callback.onSvg(cached);
+            return;
+        }
+        new Thread(() -> {
+            String svg = readFromDisk(key);
+            if (svg != null) {
+                synchronized (memory) {
+                    memory.put(key, svg);
+                }
+            }
+            mainHandler.post(() -> callback.onSvg(svg));
+        }).start();
+    }
+
+    // 登记一次 MathJax 排版请求，返回交给页面的编号 (updateMath 的 id)
+    public int requestRender(String key) {
+        synchronized (pendingRenders) {
+            int id = ++nextRenderId;
+            pendingRenders.put(id, key);
+            return id;
+        }
+    }
+
+    // 页面回调的排版结果 (WebView 的 JS 线程)：按编号取回请求时的键，在主线程保存
+    public void onSvgRendered(int id, String svg) {
+        String key;
+        synchronized (pendingRenders) {
+            key = pendingRenders.remove(id);
+        }
+        if (key == null) return;
+        mainHandler.post(() -> putSvg(key, svg));
+    }
+
+    // 保存排版结果：立即进入内存，磁盘在后台线程写入
+    public void putSvg(String key, String svg) {
+        if (svg == null || svg.isEmpty()) return;
+        synchronized (memory) {
+            memory.put(key, svg);
+        }
+        new Thread(() -> {
+            try {
+                writeToDisk(key, svg);
+                trimDisk();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }).start();
+    }
+
+    // 转成 JS 单引号字符串字面量的内容 (用于 evaluateJavascript)
+    public static String escapeJs(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\'': sb.append("\\'"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\u2028': sb.append("\\u2028"); break;
+                case '\u2029': sb.append("\\u2029"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // ==========================================
+    //  磁盘
+    // ==========================================
+
+    // 文件名取键的 SHA-1，文件开头再存一份完整的键，读取时核对
+    private File fileFor(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) sb.append(String.format("%02x", b));
+            return new File(dir, sb + ".svg");
+        } catch (Exception e) {
+            return new File(dir, Integer.toHexString(key.hashCode()) + ".svg");
+        }
+    }
+
+    private String readFromDisk(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (!key.equals(in.readUTF())) return null;
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) bos.write(buffer, 0, n);
+            // 记录最近使用时间，清理时按它淘汰
+            file.setLastModified(System.currentTimeMillis());
+            return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private synchronized void writeToDisk(String key, String svg) throws IOException {
+        if (!dir.exists()) dir.mkdirs();
+        File file = fileFor(key);
+        // 先写临时文件再重命名，避免中途失败留下半个文件
+        File tmp = File.createTempFile("svg_", ".tmp", dir);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeUTF(key);
+            out.write(svg.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("公式缓存写入失败");
+        }
+    }
+
+    // 文件数超过上限时删除最久未用的
+    private synchronized void trimDisk() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".svg"));
+        if (files == null || files.length <= DISK_ENTRIES) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - DISK_ENTRIES; i++) files[i].delete();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.hajimi24;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * 用 FormulaRenderer 原生绘制公式的 View，代替 WebView + MathJax 的快速路径。
+ * 公式放不下时自动缩小字号 (不小于 minTextSize)，居中绘制；可整体旋转 90° 的倍数 (悬浮窗的横向布局)。
+ */
+public class FormulaView extends View {
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private FormulaRenderer.Box formula;
+    private float maxTextSize;
+    private float minTextSize;
+    private int contentRotation = 0;
+
+    // 上次测量时的可用空间与得到的字号，尺寸不变时 onDraw 不再重新排版
+    private float measuredForWidth = -1, measuredForHeight = -1;
+
+    public FormulaView(Context context) {
+        this(context, null);
+    }
+
+    public FormulaView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        maxTextSize = 20 * density;
+        minTextSize = 8 * density;
+        paint.setColor(Color.BLACK);
+    }
+
+    /**
+     * 设置要显示的 LaTeX (ExpressionHelper.getAsLatex 的输出)。
+     * 含有原生排版不支持的命令时返回 false，View 不显示任何内容，由调用方改用 MathJax。
+     */
+    public boolean setLatex(String latex) {
+        FormulaRenderer.Box parsed;
+        try {
+            parsed = FormulaRenderer.parse(latex);
+        } catch (IllegalArgumentException e) {
+            parsed = null;
+        }
+        formula = parsed;
+        invalidateLayout();
+        return parsed != null;
+    }
+
+    public void setTextColor(int color) {
+        paint.setColor(color);
+        invalidate();
+    }
+
+    // 公式的最大字号 (像素)，放得下时按这个字号绘制
+    public void setMaxTextSize(float px) {
+        maxTextSize = px;
+        invalidateLayout();
+    }
+
+    // 内容的旋转角度 (0、90、180、270)，View 本身不旋转
+    public void setContentRotation(int degrees) {
+        contentRotation = ((degrees % 360) + 360) % 360;
+        invalidateLayout();
+    }
+
+    private void invalidateLayout() {
+        measuredForWidth = -1;
+        requestLayout();
+        invalidate();
+    }
+
+    private boolean isSideways() {
+        return contentRotation == 90 || contentRotation == 270;
+    }
+
+    // 按可用空间确定字号并排版
+    private void layoutFormula(float availWidth, float availHeight) {
+        if (availWidth == measuredForWidth && availHeight == measuredForHeight) return;
+        paint.setTextSize(maxTextSize);
+        formula.measure(paint);
+        float height = formula.ascent + formula.descent;
+        float scale = 1f;
+        if (formula.width > availWidth && formula.width > 0) scale = availWidth / formula.width;
+        if (height > availHeight && height > 0) scale = Math.min(scale, availHeight / height);
+        if (scale < 1f) {
+            paint.setTextSize(Math.max(minTextSize, maxTextSize * scale));
+            formula.measure(paint);
+        }
+        measuredForWidth = availWidth;
+        measuredForHeight = availHeight;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int desiredWidth = 0, desiredHeight = 0;
+        if (formula != null) {
+            paint.setTextSize(maxTextSize);
+            formula.measure(paint);
+            float w = formula.width + getPaddingLeft() + getPaddingRight();
+            float h = formula.ascent + formula.descent + getPaddingTop() + getPaddingBottom();
+            desiredWidth = (int) Math.ceil(isSideways() ? h : w);
+            desiredHeight = (int) Math.ceil(isSideways() ? w : h);
+            measuredForWidth = -1;
+        }
+        setMeasuredDimension(resolveSize(desiredWidth, widthMeasureSpec), resolveSize(desiredHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (formula == null) return;
+        float w = getWidth() - getPaddingLeft() - getPaddingRight();
+        float h = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (w <= 0 || h <= 0) return;
+
+        float availWidth = isSideways() ? h : w;
+        float availHeight = isSideways() ? w : h;
+        layoutFormula(availWidth, availHeight);
+
+        canvas.save();
+        canvas.translate(getPaddingLeft() + w / 2, getPaddingTop() + h / 2);
+        canvas.rotate(contentRotation);
+        float x = -formula.width / 2;
+        float baseline = -(formula.ascent + formula.descent) / 2 + formula.ascent;
+        formula.draw(canvas, x, baseline, paint);
+        canvas.restore();
+    }
+}
@@ -2,7 +2,6 @@ package com.example.hajimi24;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.Stack;
@@ -17,7 +16,18 @@ public class GameManager {
     private Stack<Fraction[]> redoStack = new Stack<>();
 
     private List<Problem> problemSet = new ArrayList<>();
-    private int currentProblemIndex = -1;
+    // 出题顺序：第 position 道题取 problemSet 中的 order.apply(position)，不改动列表本身
+    private int position = -1;
+    private long shuffleSeed;
+    private IndexPermutation order;
+    // 只出 requiredNumberCount 个数的题 (例如横屏只支持 4 数)；0 表示不限制
+    private int requiredNumberCount = 0;
+
+    // 分片文件夹题库只在这么大的连续区间内打乱，区间依次推进，避免在各分片之间来回读取
+    private static final int FOLDER_SHUFFLE_WINDOW = 4096;
+    // 分片文件夹题库的下一道题所在的分片尚未解析完时，记下该题 (见 getPendingLoad)
+    private FolderProblemSet pendingFolder;
+    private int pendingIndex;
 
     // [新增] 保存当前题目对象的引用
     private Problem currentProblem;
@@ -35,15 +45,15 @@ public class GameManager {
 
     private void generateLevel(boolean isRandomMode) {
         Arrays.fill(cardValues, null);
-
-        if (!isRandomMode && !problemSet.isEmpty()) {
-            currentProblemIndex++;
-            if (currentProblemIndex >= problemSet.size()) {
-                currentProblemIndex = 0;
-                Collections.shuffle(problemSet);
-            }
-            Problem prob = problemSet.get(currentProblemIndex);
-
+        pendingFolder = null;
+
+        Problem prob = isRandomMode ? null : nextProblem();
+        if (prob == null && pendingFolder != null) {
+            // 等待分片解析：不出题 (也不改出随机题)，由调用方显示加载状态，解析完后再调用 startNewGame
+            this.currentProblem = null;
+            currentLevelSolution = null;
+            rawProblemLineCache = null;
+        } else if (prob != null) {
             // [新增] 记录当前题目
             this.currentProblem = prob;
 
@@ -54,6 +64,7 @@ public class GameManager {
         } else {
             // 随机模式
             this.currentProblem = null; // 随机模式没有特定题目对象
+            if (requiredNumberCount > 0) currentNumberCount = requiredNumberCount;
 
             Random rand = new Random();
             while(true) {
@@ -79,15 +90,114 @@ public class GameManager {
         }
     }
 
+    // 题库中的下一道题：跳过分片文件夹题库中被过滤掉的行 (null) 与操作数个数不符的题，
+    // 整个题库都没有可玩的题时返回 null。
+    // 在主线程调用，分片文件夹题库不等待分片读取：遇到尚未解析完的分片就停下 (不消耗这个位置)，
+    // 开始读入该区间并记下待出的题，返回 null；各区间的分片提前一个区间开始预读，正常出题时不会遇到
+    private Problem nextProblem() {
+        int size = problemSet.size();
+        FolderProblemSet folder = problemSet instanceof FolderProblemSet ? (FolderProblemSet) problemSet : null;
+        for (int steps = 0; steps < size; steps++) {
+            int nextPosition = position + 1;
+            long seed = shuffleSeed;
+            if (nextPosition >= size) {
+                // 一轮结束：由当前种子推出下一轮的种子，整个出题序列仍只由初始种子决定
+                nextPosition = 0;
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+            }
+            int index = indexAt(nextPosition, seed);
+            if (folder != null) {
+                int windowStart = nextPosition - nextPosition % FOLDER_SHUFFLE_WINDOW;
+                if (!folder.isReady(index)) {
+                    folder.prefetchRange(windowStart, windowStart + FOLDER_SHUFFLE_WINDOW);
+                    pendingFolder = folder;
+                    pendingIndex = index;
+                    return null;
+                }
+                // 进入新区间时预读下一个区间 (最后一个区间之后回绕到第一个)
+                if (nextPosition == windowStart) {
+                    int next = windowStart + FOLDER_SHUFFLE_WINDOW < size ? windowStart + FOLDER_SHUFFLE_WINDOW : 0;
+                    folder.prefetchRange(next, next + FOLDER_SHUFFLE_WINDOW);
+                }
+                folder.prefetch(index);
+            }
+            position = nextPosition;
+            shuffleSeed = seed;
+            Problem prob = problemSet.get(index);
+            if (prob != null && (requiredNumberCount == 0 || prob.numbers.size() == requiredNumberCount)) return prob;
+        }
+        return null;
+    }
+
+    /** 上一次 startNewGame 是否因分片尚未解析完而没有出题 */
+    public boolean isWaitingForProblems() {
+        return pendingFolder != null;
+    }
+
+    /**
+     * 等待中时返回一个在后台线程运行的任务：读入待出的题所在的分片 (阻塞直到完成)，
+     * 完成后回到主线程再调用 startNewGame；不在等待中时返回 null。
+     */
+    public Runnable getPendingLoad() {
+        FolderProblemSet folder = pendingFolder;
+        int index = pendingIndex;
+        if (folder == null) return null;
+        return () -> folder.get(index);
+    }
+
+    private int indexAt(int pos, long seed) {
+        int size = problemSet.size();
+        if (!(problemSet instanceof FolderProblemSet)) {
+            if (order == null || order.size() != size || order.getSeed() != seed) order = new IndexPermutation(size, seed);
+            return order.apply(pos);
+        }
+        // 分片文件夹题库：在 pos 所在的区间内打乱 (题库变大时最后一个区间随之变长)
+        int windowStart = pos - pos % FOLDER_SHUFFLE_WINDOW;
+        int windowSize = Math.min(FOLDER_SHUFFLE_WINDOW, size - windowStart);
+        long windowSeed = seed ^ windowStart;
+        if (order == null || order.size() != windowSize || order.getSeed() != windowSeed) {
+            order = new IndexPermutation(windowSize, windowSeed);
+        }
+        return windowStart + order.apply(pos - windowStart);
+    }
+
     // [新增] 公开方法，供 MainActivity 调用以获取 modulus
     public Problem getCurrentProblem() {
         return this.currentProblem;
     }
 
     public void setProblemSet(List<Problem> problems) {
+        setProblemSet(problems, new Random().nextLong());
+    }
+
+    /**
+     * 相同的题库与种子得到相同的出题顺序；列表本身不会被修改。
+     * 分片文件夹题库还取决于已解析的分片：从其中一个 (由种子选出) 开始，需在后台先调用 FolderProblemSet.preload。
+     */
+    public void setProblemSet(List<Problem> problems, long seed) {
         this.problemSet = problems;
-        Collections.shuffle(this.problemSet);
-        this.currentProblemIndex = -1;
+        this.shuffleSeed = seed;
+        this.order = null;
+        this.position = -1;
+        this.pendingFolder = null;
+        if (problems instanceof FolderProblemSet && problems.size() > FOLDER_SHUFFLE_WINDOW) {
+            FolderProblemSet folder = (FolderProblemSet) problems;
+            // 分片文件夹题库从随机的区间开始 (种子决定)，优先选已解析的分片中的第一个完整区间
+            int windows = (problems.size() + FOLDER_SHUFFLE_WINDOW - 1) / FOLDER_SHUFFLE_WINDOW;
+            int start = folder.readyPartStart(seed);
+            int window = start >= 0 ? Math.min((start + FOLDER_SHUFFLE_WINDOW - 1) / FOLDER_SHUFFLE_WINDOW, windows - 1)
+                    : (int) Math.floorMod(seed, (long) windows);
+            this.position = window * FOLDER_SHUFFLE_WINDOW - 1;
+            folder.prefetchRange(window * FOLDER_SHUFFLE_WINDOW, (window + 1) * FOLDER_SHUFFLE_WINDOW);
+        }
+    }
+
+    public long getShuffleSeed() {
+        return shuffleSeed;
+    }
+
+    public void setRequiredNumberCount(int count) {
+        this.requiredNumberCount = count;
     }
 
     public boolean performCalculation(int idx1, int idx2, String op) throws ArithmeticException {
@@ -0,0 +1,202 @@
+package com.example.hajimi24;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合并加载一个文件夹时的手牌去重表。
+ * 同一手牌经常出现在多个题库中 (例如 小于十三 与 小于二十)，这里按手牌的规范键 (数字的多重集合，与书写顺序无关，
+ * 连同 mod / base 后缀) 登记每种手牌，并记录它出现在哪些文件中：
+ * 合并时每种手牌只保留第一次出现的那一行，后面文件中的同一手牌在解析前就被跳过。
+ *
+ * 每次合并新建一张表，随合并出的题库一起缓存、一起释放；表中不保存 Problem，每种手牌只占一个 long 键和一个 int。
+ * 表本身是按段加锁的开放寻址数组，可被多个解析线程同时查询与登记。
+ */
+public class HandTable {
+
+    // 按键的低位分段加锁，多个解析线程同时登记时互不阻塞
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final List<String> fileNames = new ArrayList<>();
+
+    public HandTable() {
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment();
+    }
+
+    /** 登记一种手牌出现在 fileName 中；表中原来没有这种手牌时返回 true (调用方应保留这一行) */
+    public boolean add(long key, String fileName) {
+        return segments[(int) (key & (SEGMENTS - 1))].add(key, fileIdOf(fileName), true);
+    }
+
+    /** 表中已有这种手牌时登记 fileName 并返回 true；没有时不登记，返回 false */
+    public boolean addIfPresent(long key, String fileName) {
+        return !segments[(int) (key & (SEGMENTS - 1))].add(key, fileIdOf(fileName), false);
+    }
+
+    // 包含该题手牌的所有文件 (按登记顺序)；不是本次合并中的手牌时返回空列表
+    public List<String> getFilesContaining(Problem p) {
+        List<String> result = new ArrayList<>();
+        if (p == null) return result;
+        long key = handKey(p.line);
+        if (key == 0) return result;
+        int[] files = segments[(int) (key & (SEGMENTS - 1))].files(key);
+        synchronized (fileNames) {
+            for (int f : files) result.add(fileNames.get(f));
+        }
+        return result;
+    }
+
+    // 表中的不同手牌数
+    public int size() {
+        int n = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                n += s.size;
+            }
+        }
+        return n;
+    }
+
+    private int fileIdOf(String fileName) {
+        synchronized (fileNames) {
+            Integer id = fileIds.get(fileName);
+            if (id == null) {
+                id = fileNames.size();
+                fileNames.add(fileName);
+                fileIds.put(fileName, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * 开放寻址的哈希表段：键为 64 位规范键 (0 作为空槽标记，真实的 0 键映射为 1)，值为首个所在文件；
+     * 出现在多个文件中的手牌其余文件记在 extraFiles 中，并在 firstFile 的最高位做标记。
+     */
+    private static class Segment {
+        long[] keys = new long[1024];
+        int[] firstFile = new int[1024];
+        static final int HAS_EXTRA = 0x80000000;
+        int size = 0;
+        final Map<Long, int[]> extraFiles = new HashMap<>();
+
+        // 已有该键时记下文件并返回 false；没有时 (insert 为 true 才) 插入并返回 true
+        synchronized boolean add(long key, int fileId, boolean insert) {
+            int slot = find(key);
+            if (keys[slot] != 0) {
+                addFile(slot, fileId);
+                return false;
+            }
+            if (!insert) return true;
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = normalize(key);
+            firstFile[slot] = fileId;
+            size++;
+            return true;
+        }
+
+        synchronized int[] files(long key) {
+            int slot = find(key);
+            if (keys[slot] == 0) return new int[0];
+            int first = firstFile[slot] & ~HAS_EXTRA;
+            if ((firstFile[slot] & HAS_EXTRA) == 0) return new int[]{first};
+            int[] extra = extraFiles.get(keys[slot]);
+            int[] all = new int[extra.length + 1];
+            all[0] = first;
+            System.arraycopy(extra, 0, all, 1, extra.length);
+            return all;
+        }
+
+        private void addFile(int slot, int fileId) {
+            if ((firstFile[slot] & ~HAS_EXTRA) == fileId) return;
+            if ((firstFile[slot] & HAS_EXTRA) == 0) {
+                extraFiles.put(keys[slot], new int[]{fileId});
+                firstFile[slot] |= HAS_EXTRA;
+                return;
+            }
+            int[] extra = extraFiles.get(keys[slot]);
+            for (int f : extra) if (f == fileId) return;
+            extra = Arrays.copyOf(extra, extra.length + 1);
+            extra[extra.length - 1] = fileId;
+            extraFiles.put(keys[slot], extra);
+        }
+
+        private int find(long key) {
+            key = normalize(key);
+            int mask = keys.length - 1;
+            int slot = (int) (key >>> 4) & mask; // 低 4 位已用于选择分段
+            while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldFirst = firstFile;
+            keys = new long[oldKeys.length * 2];
+            firstFile = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                firstFile[slot] = oldFirst[i];
+            }
+        }
+
+        private static long normalize(long key) {
+            return key == 0 ? 1 : key;
+        }
+    }
+
+    // 由题目原文计算手牌的规范键；原文格式不对时返回 0
+    static long handKey(String line) {
+        if (line == null) return 0;
+        String[] parts = line.split("->");
+        if (parts.length < 2) return 0;
+        return handKey(parts[0], parts[1].trim());
+    }
+
+    /**
+     * 手牌的规范键：各数字 (按书写形式，忽略引号、空白与括号) 的哈希之和 (与顺序无关的多重集合哈希)，
+     * 再与解法的 mod / base 后缀混合 (同一手牌在不同模数、进制下是不同的题)。
+     * 行首的题号 "[12]" 与解法本身不参与。只扫描字符，不做任何数值解析。
+     */
+    static long handKey(String numberPart, String solution) {
+        long handHash = 0;
+        int start = numberPart.indexOf("['");
+        int end = numberPart.lastIndexOf("']");
+        if (start >= 0 && end > start) {
+            long h = FNV_OFFSET;
+            boolean inToken = false;
+            for (int i = start + 2; i <= end; i++) {
+                char c = i < end ? numberPart.charAt(i) : ',';
+                if (c == ',') {
+                    if (inToken) handHash += Hashing.mix(h);
+                    h = FNV_OFFSET;
+                    inToken = false;
+                } else if (c != '\'' && c != ' ' && c != '(' && c != ')') {
+                    h = (h ^ c) * FNV_PRIME;
+                    inToken = true;
+                }
+            }
+        }
+        long suffixHash = FNV_OFFSET;
+        int suffix = Math.max(solution.lastIndexOf(" mod "), solution.lastIndexOf(" base "));
+        if (suffix >= 0) {
+            for (int i = suffix + 1; i < solution.length(); i++) {
+                suffixHash = (suffixHash ^ solution.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return Hashing.mix(handHash * 31 + suffixHash);
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+}
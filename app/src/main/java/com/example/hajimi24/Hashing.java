@@ -0,0 +1,15 @@
+package com.example.hajimi24;
+
+/** 题库索引、解法去重和表达式节点共用的哈希工具 */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    // SplitMix64 的混合步骤：让相加、异或后的各项哈希分布均匀
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
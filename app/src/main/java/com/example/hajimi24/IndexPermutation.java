@@ -0,0 +1,81 @@
+package com.example.hajimi24;
+
+/**
+ * 0..n-1 上由种子决定的伪随机排列 (可逆)。
+ * 用平衡 Feistel 网络在不小于 n 的 2^(2h) 个数上构造双射，结果 >= n 时继续迭代 (cycle walking)
+ * 直到落回 0..n-1，因此不需要存储或打乱题目列表，任意大小的题库都只占几个字段；
+ * 相同的 n 与种子总是得到相同的顺序 (可用于分享同一套出题顺序)。
+ */
+public class IndexPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final int n;
+    private final long seed;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public IndexPermutation(int n, long seed) {
+        if (n < 0) throw new IllegalArgumentException("n < 0: " + n);
+        this.n = n;
+        this.seed = seed;
+        // 左右两半各 halfBits 位，2^(2*halfBits) >= n，且最多是 n 的 4 倍 (平均迭代不超过 4 次)
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, n - 1));
+        halfBits = Math.max(1, (bits + 1) / 2);
+        halfMask = (1L << halfBits) - 1;
+        long k = seed;
+        for (int r = 0; r < ROUNDS; r++) {
+            k += 0x9E3779B97F4A7C15L;
+            roundKeys[r] = Hashing.mix(k);
+        }
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /** 第 i 个位置对应的下标 */
+    public int apply(int i) {
+        if (i < 0 || i >= n) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + n);
+        long x = i;
+        do {
+            x = encrypt(x);
+        } while (x >= n);
+        return (int) x;
+    }
+
+    /** apply 的逆：下标 j 出现在第几个位置 */
+    public int invert(int j) {
+        if (j < 0 || j >= n) throw new IndexOutOfBoundsException("Index: " + j + ", Size: " + n);
+        long x = j;
+        do {
+            x = decrypt(x);
+        } while (x >= n);
+        return (int) x;
+    }
+
+    private long encrypt(long x) {
+        long left = x >>> halfBits, right = x & halfMask;
+        for (int r = 0; r < ROUNDS; r++) {
+            long next = left ^ (Hashing.mix(right ^ roundKeys[r]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decrypt(long x) {
+        long left = x >>> halfBits, right = x & halfMask;
+        for (int r = ROUNDS - 1; r >= 0; r--) {
+            long prev = right ^ (Hashing.mix(left ^ roundKeys[r]) & halfMask);
+            right = left;
+            left = prev;
+        }
+        return (left << halfBits) | right;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.hajimi24;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 本地文件目录索引 (filesDir/catalog)。
+ * 记录每个本地题库/文档的路径、SHA、大小和行数，由下载、保存、删除操作增量更新，
+ * 打开本地资源管理器时直接读取，无需每次递归扫描 filesDir。
+ */
+public class LocalCatalog {
+
+    private static final int CATALOG_VERSION = 1;
+
+    public static class Entry {
+        public final String path;
+        public final String sha;
+        public final long size;
+        public final int lineCount;
+
+        public Entry(String path, String sha, long size, int lineCount) {
+            this.path = path;
+            this.sha = sha != null ? sha : "";
+            this.size = size;
+            this.lineCount = lineCount;
+        }
+    }
+
+    // 文件夹汇总：文件数、总行数、总字节数
+    public static class Summary {
+        public int files;
+        public long lines;
+        public long bytes;
+    }
+
+    private final File file;
+    // 按路径排序，前缀查询只需取一个子区间
+    private TreeMap<String, Entry> entries = null;
+
+    public LocalCatalog(File file) {
+        this.file = file;
+    }
+
+    // 从磁盘加载；索引文件不存在或损坏时返回 false，需由调用方全量扫描后 replaceAll
+    public synchronized boolean load() {
+        if (entries != null) return true;
+        if (!file.exists()) return false;
+        TreeMap<String, Entry> loaded = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CATALOG_VERSION) return false;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String sha = in.readUTF();
+                long size = in.readLong();
+                int lines = in.readInt();
+                loaded.put(path, new Entry(path, sha, size, lines));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        entries = loaded;
+        return true;
+    }
+
+    public synchronized void replaceAll(Collection<Entry> all) {
+        entries = new TreeMap<>();
+        for (Entry e : all) entries.put(e.path, e);
+        save();
+    }
+
+    public synchronized void put(Entry entry) {
+        if (entries == null) return; // 尚未加载：调用方应先 load (或全量扫描后 replaceAll)
+        entries.put(entry.path, entry);
+        save();
+    }
+
+    public synchronized Entry get(String path) {
+        return entries != null ? entries.get(path) : null;
+    }
+
+    // 删除单个文件 (path) 或整个文件夹 (以 "/" 结尾) 下的所有记录，返回被删除的路径
+    public synchronized List<String> removePrefix(String prefix) {
+        List<String> removed = new ArrayList<>();
+        if (entries == null) return removed;
+        if (prefix.endsWith("/")) {
+            removed.addAll(range(prefix).keySet());
+        } else if (entries.containsKey(prefix)) {
+            removed.add(prefix);
+        }
+        if (removed.isEmpty()) return removed;
+        for (String path : removed) entries.remove(path);
+        save();
+        return removed;
+    }
+
+    public synchronized List<Entry> list(String prefix) {
+        if (entries == null) return new ArrayList<>();
+        return new ArrayList<>(range(prefix).values());
+    }
+
+    // prefix 下每个文件夹 (键以 "/" 结尾，含各级子文件夹) 的汇总，一次遍历得出
+    public synchronized Map<String, Summary> summarizeFolders(String prefix) {
+        Map<String, Summary> result = new HashMap<>();
+        if (entries == null) return result;
+        for (Entry e : range(prefix).values()) {
+            for (int slash = e.path.indexOf('/', prefix.length()); slash >= 0; slash = e.path.indexOf('/', slash + 1)) {
+                String folder = e.path.substring(0, slash + 1);
+                Summary summary = result.get(folder);
+                if (summary == null) result.put(folder, summary = new Summary());
+                summary.files++;
+                summary.lines += e.lineCount;
+                summary.bytes += e.size;
+            }
+        }
+        return result;
+    }
+
+    private SortedMap<String, Entry> range(String prefix) {
+        return entries.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private void save() {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(CATALOG_VERSION);
+            out.writeInt(entries.size());
+            for (Entry e : entries.values()) {
+                out.writeUTF(e.path);
+                out.writeUTF(e.sha);
+                out.writeLong(e.size);
+                out.writeInt(e.lineCount);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    // 行数统计 (与 BufferedReader.readLine 的计数一致：最后一行没有换行符也算一行)
+    public static int countLines(File f) {
+        try (InputStream is = new FileInputStream(f)) {
+            return countLines(is);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    public static int countLines(InputStream is) throws IOException {
+        int count = 0;
+        int last = '\n';
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+            for (int i = 0; i < n; i++) {
+                if (buffer[i] == '\n') count++;
+            }
+            if (n > 0) last = buffer[n - 1];
+        }
+        if (last != '\n') count++;
+        return count;
+    }
+}
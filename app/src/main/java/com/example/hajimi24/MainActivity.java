@@ -29,6 +29,7 @@ import com.google.android.material.navigation.NavigationView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,7 +40,11 @@ public class MainActivity extends AppCompatActivity {
     private List<Problem> lastLoadedProblemSet = new ArrayList<>();
     private String currentLatexCode = "";
     private String currentPlainTextForLatex = "";
-    private boolean isWebViewInitialized = false;
+    // 公式 WebView 从 MathWebViewPool 借用，只在需要 MathJax 时取出；旋转时保留同一个实例
+    private WebView mathWebView;
+    private View.OnLongClickListener copyFormulaListener;
+    // 最近一次公式渲染的序号 (只在主线程读写)：缓存查找返回时核对，已被新公式取代的结果不再显示
+    private int mathRenderSeq = 0;
     private String cachedSolution = null;
     private int lastOperandCount = 0;
     private Problem mCurrentProblem;
@@ -188,39 +193,101 @@ public class MainActivity extends AppCompatActivity {
         // 根据高度调整容器
         adjustWebViewContainerHeight(wv, height);
 
-        // 如果还没有初始化，则加载完整 HTML 模板
-        if (!isWebViewInitialized) {
-            String fontSize = calculateFontSize(height, width);
-            String html = buildMathTemplate(content, fontSize); // 提取出来的 HTML 模板
-
-            wv.getSettings().setJavaScriptEnabled(true);
-            wv.getSettings().setAllowFileAccess(true);
-            wv.setBackgroundColor(0);
-
-            wv.addJavascriptInterface(new Object() {
-                @android.webkit.JavascriptInterface
-                public void onRenderFinished() {
-                    wv.post(() -> {
-                        wv.animate().alpha(1.0f).setDuration(100).start();
-                        isWebViewInitialized = true;
-                    });
-                }
-            }, "android");
+        // 先查公式缓存：排版过的公式直接插入 SVG，不再调用 MathJax
+        String fontSize = calculateFontSize(height, width);
+        String cacheKey = FormulaSvgCache.key(content, fontSize, getMathTheme());
+        String color = "dark".equals(getMathTheme()) ? "#FFFFE0" : "#000000";
+        int seq = mathRenderSeq;
+        FormulaSvgCache cache = FormulaSvgCache.get(this);
+        cache.getSvg(cacheKey, svg -> {
+            // 读磁盘期间又换了公式
+            if (seq != mathRenderSeq) return;
+            // 模板已在池中加载好，只需通过 JS 更新公式 (模板还没就绪时由池排队执行)
+            String js = "setFrame('" + color + "', 0); ";
+            if (svg != null) {
+                js += "showSvg('" + FormulaSvgCache.escapeJs(svg) + "', '" + fontSize + "')";
+            } else {
+                js += "updateMath('" + FormulaSvgCache.escapeJs(content) + "', '" + fontSize + "', " + cache.requestRender(cacheKey) + ")";
+            }
+            MathWebViewPool.get(this).run(wv, js);
+        });
+    }
 
-            wv.loadDataWithBaseURL("file:///android_asset/mathjax/", html, "text/html", "UTF-8", null);
-        } else {
-            // 【核心优化】：如果已经加载过模板，直接通过 JS 更新公式，速度提升 5-10 倍
-            String fontSize = calculateFontSize(height, width);
-            // 对 LaTeX 字符串进行转义，防止 JS 报错
-            String escapedContent = content.replace("\\", "\\\\").replace("'", "\\'");
+    // 公式 WebView 的页面回调 (JS 线程)
+    private final MathWebViewPool.Callback mathCallback = new MathWebViewPool.Callback() {
+        @Override
+        public void onRenderFinished() {
+            showMathWebView("mathjax");
+        }
+
+        // 缓存命中时只需显示
+        @Override
+        public void onFormulaShown() {
+            showMathWebView("svg-cache");
+        }
 
-            String js = "javascript:updateMath('" + escapedContent + "', '" + fontSize + "')";
-            wv.evaluateJavascript(js, null);
+        @Override
+        public void onSvgRendered(int id, String renderedSvg) {
+            FormulaSvgCache.get(MainActivity.this).onSvgRendered(id, renderedSvg);
         }
+    };
+
+    private void showMathWebView(String renderer) {
+        WebView wv = mathWebView;
+        if (wv == null) return;
+        wv.post(() -> wv.animate().alpha(1.0f).setDuration(100).start());
+        MathWebViewPool.get(this).reportFormulaShown(renderer);
+    }
+
+    // 从池中取出公式 WebView，替换布局里的占位 View (id 相同)；旋转重建布局后重新装入同一个实例
+    private WebView obtainMathWebView() {
+        if (mathWebView == null) mathWebView = MathWebViewPool.get(this).acquire(this, mathCallback);
+        if (mathWebView.getParent() == null) {
+            View slot = findViewById(R.id.wv_math_message);
+            android.view.ViewGroup parent = (android.view.ViewGroup) slot.getParent();
+            int index = parent.indexOfChild(slot);
+            parent.removeView(slot);
+            mathWebView.setId(R.id.wv_math_message);
+            mathWebView.setVisibility(View.GONE);
+            mathWebView.setOnLongClickListener(copyFormulaListener);
+            parent.addView(mathWebView, index, slot.getLayoutParams());
+        }
+        return mathWebView;
+    }
+
+    // 重新加载布局前取下公式 WebView，保留其中已加载的模板
+    private void detachMathWebView() {
+        if (mathWebView != null && mathWebView.getParent() != null) {
+            ((android.view.ViewGroup) mathWebView.getParent()).removeView(mathWebView);
+        }
+    }
+
+    // 用 FormulaView 直接绘制公式 (不经过 WebView)；公式含有原生排版不支持的命令时返回 false
+    private boolean renderLatexNatively(FormulaView fv, String content, int height, int width) {
+        if (!fv.setLatex(content)) return false;
+        float density = getResources().getDisplayMetrics().density;
+        // 与 WebView 页面一致：正文 16px 乘以字号百分比，颜色随深色模式变化
+        fv.setMaxTextSize(16 * density * calculateFontPercent(height, width) / 100f);
+        fv.setTextColor("dark".equals(getMathTheme()) ? 0xFFFFFFE0 : Color.BLACK);
+        adjustWebViewContainerHeight(fv, height);
+        fv.setVisibility(View.VISIBLE);
+        fv.post(() -> MathWebViewPool.get(this).reportFormulaShown("native"));
+        return true;
+    }
+
+    // 公式缓存的主题：正文颜色随深色模式变化
+    private String getMathTheme() {
+        int night = getResources().getConfiguration().uiMode & android.content.res.Configuration.UI_MODE_NIGHT_MASK;
+        return night == android.content.res.Configuration.UI_MODE_NIGHT_YES ? "dark" : "light";
     }
 
     // 提取字号逻辑，方便复用
     private String calculateFontSize(int h, int w) {
+        return String.format("%.0f%%", calculateFontPercent(h, w));
+    }
+
+    // 公式字号 (相对正文的百分比)，MathJax 与原生绘制共用
+    private float calculateFontPercent(int h, int w) {
         // 设定标准阈值：高度超过 2 层开始收缩，宽度超过 16 字符开始收缩
         float shrinkH = (h <= 2) ? 1.0f : h / 2.0f;
         float shrinkW = (w <= 16) ? 1.0f : w / 16.0f;
@@ -234,9 +301,9 @@ public class MainActivity extends AppCompatActivity {
         // 限制最小字号为 50% 防止看不清
         if (size < 50f) size = 50f;
 
-        return String.format("%.0f%%", size);
+        return size;
     }
-    private void adjustWebViewContainerHeight(WebView wv, int formulaHeight) {
+    private void adjustWebViewContainerHeight(View wv, int formulaHeight) {
         float density = getResources().getDisplayMetrics().density;
         int baseHeightDp = 100;
         int extraHeightPerUnit = 32;
@@ -275,29 +342,6 @@ public class MainActivity extends AppCompatActivity {
     }
 
 
-    private String buildMathTemplate(String content, String fontSize) {
-        return "<!DOCTYPE html><html><head><meta charset='UTF-8'>" +
-                "<style>body { margin: 0; padding: 0; display: flex; justify-content: center; align-items: center; " +
-                "height: 100vh; background: transparent; overflow: hidden; color: #000000; } " +
-                "@media (prefers-color-scheme: dark) { body { color: #FFFFE0; } } " +
-                "#math { font-size: " + fontSize + "; text-align: center; width: 100%; transition: font-size 0.2s; }</style>" +
-                "<script>" +
-                "window.MathJax = { tex: { inlineMath: [['$', '$']], displayMath: [['$$', '$$']] }, " +
-                "startup: { ready: () => { MathJax.startup.defaultReady(); " +
-                "MathJax.startup.promise.then(() => { window.android.onRenderFinished(); }); } } };" +
-                "// 【关键函数】：不重载页面，只更新数学公式\n" +
-                "function updateMath(newTex, newSize) {" +
-                "  const container = document.getElementById('math');" +
-                "  container.style.fontSize = newSize;" +
-                "  container.innerHTML = '$$\\\\displaystyle ' + newTex + '$$';" +
-                "  MathJax.typesetPromise([container]).then(() => { window.android.onRenderFinished(); });" +
-                "}" +
-                "</script>" +
-                "<script id='MathJax-script' src='file:///android_asset/mathjax/tex-svg.js'></script></head>" +
-                "<body><div id='math'>$$\\displaystyle " + content + "$$</div></body></html>";
-    }
-
-
     // 3. 新增：带自定义高度的提示方法 (用于替换原来的 Toast)
     public void showCustomToast(String text) {
         if (text == null || text.isEmpty()) return;
@@ -378,8 +422,15 @@ public class MainActivity extends AppCompatActivity {
         hideSystemUI();
 
         setContentView(R.layout.activity_main);
+        // 选择了 MathJax 时提前在后台加载公式模板，第一次提示时不必等待
+        MathWebViewPool mathPool = MathWebViewPool.get(this);
+        if (prefs.getBoolean("use_latex_mode", false)
+                && (prefs.getBoolean("latex_use_mathjax", false) || prefs.getInt("latex_long_press_mode", 0) == 2)) {
+            mathPool.warmUp();
+        }
         repository = new ProblemRepository(this);
         gameManager = new GameManager();
+        gameManager.setRequiredNumberCount(isLandscape() ? 4 : 0);
 
         // --- 修改点：判断是新开始还是从旋转中恢复 ---
         if (savedInstanceState != null) {
@@ -407,6 +458,15 @@ public class MainActivity extends AppCompatActivity {
         updateManager.checkUpdate();
     }
 
+    @Override
+    protected void onDestroy() {
+        // 公式 WebView 还给池 (模板保持加载)，下次打开界面或悬浮窗可直接使用
+        if (mathWebView != null) {
+            MathWebViewPool.get(this).release(mathWebView);
+            mathWebView = null;
+        }
+        super.onDestroy();
+    }
 
     @Override
     protected void onResume() {
@@ -457,8 +517,9 @@ public class MainActivity extends AppCompatActivity {
         return getResources().getConfiguration().orientation == android.content.res.Configuration.ORIENTATION_LANDSCAPE;
     }
     private void updateMenuButtonText(String rawName) {
-        // 1. 去掉 .txt 后缀
+        // 1. 去掉 .txt 后缀 (合并加载的文件夹去掉末尾的 "/")
         String nameWithoutExt = rawName.replace(".txt", "");
+        if (nameWithoutExt.endsWith("/")) nameWithoutExt = nameWithoutExt.substring(0, nameWithoutExt.length() - 1);
 
         // 2. 核心：只取最后一个 '/' 之后的部分，从而彻底隐藏文件夹名称
         String cleanName = nameWithoutExt;
@@ -490,17 +551,11 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onLoadProblems(List<Problem> problems, String title) {
-                if (isLandscape()) {
-                    List<Problem> filtered = new ArrayList<>();
-                    for (Problem p : problems) {
-                        if (p.numbers != null && p.numbers.size() == 4) filtered.add(p);
-                    }
-                    problems = filtered;
-                    if (problems.isEmpty()) {
-                        showCustomToast("横屏仅支持 4 数题目");
-                        switchToRandomMode(4);
-                        return;
-                    }
+                // 横屏只出 4 数题：由 GameManager 出题时跳过，不再复制题库
+                if (isLandscape() && !hasNumberCount(problems, 4)) {
+                    showCustomToast("横屏仅支持 4 数题目");
+                    switchToRandomMode(4);
+                    return;
                 }
                 // 【核心修复】：明确指向外部类的变量
                 MainActivity.this.lastLoadedProblemSet = problems;
@@ -519,11 +574,18 @@ public class MainActivity extends AppCompatActivity {
                     // 如果是随机休闲模式，直接开始新的一局（随机休闲题目重新生成）
                     startNewGameLocal();
                 } else {
-                    // 如果是题库模式，获取当前记录的文件路径，重新调用加载方法
-                    // 这会触发 Repository 重新读取文件并根据新设置进行过滤
+                    // 如果是题库模式，直接用已缓存的属性索引重新过滤，无需重读文件
                     String path = sidebarLogic.currentLoadedFileName;
                     if (path != null) {
-                        loadProblemSet(path);
+                        List<Problem> problems = repository.refilterCachedProblemSet(path, sidebarLogic.getGameModeSettings());
+                        if (problems instanceof FolderProblemSet) {
+                            // 分片按新设定重新解析：在后台先读入一个分片再出题
+                            new Thread(() -> {
+                                ((FolderProblemSet) problems).preload(new Random().nextLong());
+                                runOnUiThread(() -> applyLoadedProblemSet(problems, path));
+                            }).start();
+                        } else if (problems != null) applyLoadedProblemSet(problems, path);
+                        else loadProblemSet(path); // 索引未缓存 (例如已被其它题库替换) 时才重新加载
                     }
                 }
             }
@@ -556,36 +618,39 @@ public class MainActivity extends AppCompatActivity {
     public void loadProblemSet(String fileName) {
         try {
             List<Problem> problems = repository.loadProblemSet(fileName, sidebarLogic.getGameModeSettings());
-
-            // --- 新增横屏过滤逻辑 ---
-            if (isLandscape()) {
-                List<Problem> filtered = new ArrayList<>();
-                for (Problem p : problems) {
-                    // 【修正】：使用 p.numbers
-                    if (p.numbers != null && p.numbers.size() == 4) {
-                        filtered.add(p);
-                    }
-                }
-                problems = filtered;
-                if (problems.isEmpty()) {
-                    showCustomToast("该题库无 4 数题目，已切换至随机模式");
-                    switchToRandomMode(4);
-                    return;
-                }
-            }
-            // -----------------------
-            this.lastLoadedProblemSet = problems;
-            gameManager.setProblemSet(problems);
-            currentFileName = fileName;
-            updateMenuButtonText(fileName);
-            showCustomToast("加载成功!");
-            startNewGameLocal();
+            applyLoadedProblemSet(problems, fileName);
         } catch (Exception e) {
             e.printStackTrace();
             switchToRandomMode(4);
         }
     }
 
+    // 题库中是否有 count 个数的题 (找到一道即返回)；分片文件夹题库不逐个读取分片，视为有
+    private static boolean hasNumberCount(List<Problem> problems, int count) {
+        if (problems instanceof FolderProblemSet) return true;
+        for (Problem p : problems) {
+            if (p.numbers != null && p.numbers.size() == count) return true;
+        }
+        return false;
+    }
+
+    // 将已过滤好的题目列表应用到游戏 (加载文件与修改设定后重新过滤共用)
+    private void applyLoadedProblemSet(List<Problem> problems, String fileName) {
+        // --- 横屏只出 4 数题 (由 GameManager 出题时跳过，不复制题库) ---
+        if (isLandscape() && !hasNumberCount(problems, 4)) {
+            showCustomToast("该题库无 4 数题目，已切换至随机模式");
+            switchToRandomMode(4);
+            return;
+        }
+        // -----------------------
+        this.lastLoadedProblemSet = problems;
+        gameManager.setProblemSet(problems);
+        currentFileName = fileName;
+        updateMenuButtonText(fileName);
+        showCustomToast("加载成功!");
+        startNewGameLocal();
+    }
+
     public void switchToRandomMode(int count) {
         if (isLandscape()) count = 4;
 
@@ -622,6 +687,22 @@ public class MainActivity extends AppCompatActivity {
         updateDisplay("", null, false);
         lastShownType = "";
         lastPlainTextSolution = "";
+        waitForPendingProblem();
+    }
+
+    // 分片文件夹题库的下一道题还在解析：显示加载状态，在后台等它读完后再出题 (不改出随机题)
+    private void waitForPendingProblem() {
+        Runnable load = gameManager.getPendingLoad();
+        if (load == null) return;
+        if (gameTimer != null) gameTimer.stop();
+        if (tvMessage != null) tvMessage.setText("题库加载中…");
+        new Thread(() -> {
+            load.run();
+            runOnUiThread(() -> {
+                // 等待期间已换了题库、已出题或界面已关闭时不再出题
+                if (!isFinishing() && gameManager.isWaitingForProblems()) startNewGameLocal();
+            });
+        }).start();
     }
 
     @Override
@@ -727,10 +808,11 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onConfigurationChanged(android.content.res.Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
-        isWebViewInitialized = false;
+        detachMathWebView();
         lastShownType = "";
 
         boolean wasRunning = gameTimer != null;
+        gameManager.setRequiredNumberCount(newConfig.orientation == android.content.res.Configuration.ORIENTATION_LANDSCAPE ? 4 : 0);
 
         // 1. 重新加载布局（系统会自动根据当前横竖屏选择 layout 或 layout-land 文件夹下的 xml）
         setContentView(R.layout.activity_main);
@@ -852,19 +934,18 @@ public class MainActivity extends AppCompatActivity {
         }
 
         // 实时求解（4个数字以下速度极快）
-        List<String> allRawSolutions = Solver.solveAll(currentNums, modulus, targetValue);
-        if (allRawSolutions.isEmpty()) return null;
+        List<String> rawDistinct = Solver.solveAllDistinct(currentNums, modulus, targetValue);
+        if (rawDistinct.isEmpty()) return null;
 
         String suffix = "";
         if (modulus != null) suffix = " mod " + modulus;
         else if (radix != 10) suffix = " base " + radix;
 
-        List<String> candidates = new ArrayList<>();
-        for (String s : allRawSolutions) {
-            candidates.add((s.contains("mod") || s.contains("base")) ? s : s + suffix);
+        // 补上后缀 (所有解的后缀相同，不影响归类)
+        List<String> distinctSolutions = new ArrayList<>();
+        for (String s : rawDistinct) {
+            distinctSolutions.add((s.contains("mod") || s.contains("base")) ? s : s + suffix);
         }
-
-        List<String> distinctSolutions = SolutionNormalizer.distinct(candidates);
         Collections.sort(distinctSolutions, (s1, s2) -> {
             if (s1.length() != s2.length()) return Integer.compare(s1.length(), s2.length());
             return s1.compareTo(s2);
@@ -917,46 +998,62 @@ public class MainActivity extends AppCompatActivity {
         // 侧边栏菜单
         if (btnMenu != null)
             btnMenu.setOnClickListener(v -> drawerLayout.openDrawer(GravityCompat.START));
+        // 长按模式按钮：合并加载文件夹时，列出当前手牌出现在哪些题库中
+        if (btnMenu != null)
+            btnMenu.setOnLongClickListener(v -> {
+                List<String> files = repository.getFilesContaining(gameManager.getCurrentProblem());
+                if (files.isEmpty()) return false;
+                String[] names = new String[files.size()];
+                for (int i = 0; i < names.length; i++) names[i] = files.get(i).replace(".txt", "");
+                new androidx.appcompat.app.AlertDialog.Builder(this)
+                        .setTitle("本题手牌出现在")
+                        .setItems(names, null)
+                        .setPositiveButton("确定", null)
+                        .show();
+                return true;
+            });
 
-        WebView wvMath = findViewById(R.id.wv_math_message);
-        if (wvMath != null) {
-            wvMath.setOnLongClickListener(v -> {
-                SharedPreferences prefs = getSharedPreferences("AppConfig", MODE_PRIVATE);
-                int mode = prefs.getInt("latex_long_press_mode", 0);
-
-                if (mode == 2) return false; // 模式 2：保持原生，不拦截
-
-                String textToCopy;
-                if (mode == 0) {
-                    // --- 核心优化：直接剥离 \text{...} 结构 ---
-                    textToCopy = currentLatexCode;
-                    if (textToCopy != null) {
-                        // 使用正则表达式匹配 \text{内容} 并替换为 内容
-                        // \\\\text\\{  -> 匹配 \text{
-                        // ([^{}]*)      -> 捕获组：匹配不含大括号的内容（即最内层文本）
-                        // \\}           -> 匹配结尾的 }
-                        // 使用循环确保处理所有嵌套可能（虽然本应用中通常只有一层）
-                        String lastResult;
-                        do {
-                            lastResult = textToCopy;
-                            textToCopy = textToCopy.replaceAll("\\\\text\\{([^{}]*)\\}", "$1");
-                        } while (!textToCopy.equals(lastResult));
-
-                        textToCopy = textToCopy.trim();
-                    }
-                } else {
-                    textToCopy = currentPlainTextForLatex;
+        // 公式区长按复制 (原生绘制与 WebView 共用)
+        View wvMath = findViewById(R.id.wv_math_message);
+        FormulaView fvMath = findViewById(R.id.fv_math_message);
+        copyFormulaListener = v -> {
+            SharedPreferences prefs = getSharedPreferences("AppConfig", MODE_PRIVATE);
+            int mode = prefs.getInt("latex_long_press_mode", 0);
+
+            if (mode == 2) return false; // 模式 2：保持原生，不拦截
+
+            String textToCopy;
+            if (mode == 0) {
+                // --- 核心优化：直接剥离 \text{...} 结构 ---
+                textToCopy = currentLatexCode;
+                if (textToCopy != null) {
+                    // 使用正则表达式匹配 \text{内容} 并替换为 内容
+                    // \\\\text\\{  -> 匹配 \text{
+                    // ([^{}]*)      -> 捕获组：匹配不含大括号的内容（即最内层文本）
+                    // \\}           -> 匹配结尾的 }
+                    // 使用循环确保处理所有嵌套可能（虽然本应用中通常只有一层）
+                    String lastResult;
+                    do {
+                        lastResult = textToCopy;
+                        textToCopy = textToCopy.replaceAll("\\\\text\\{([^{}]*)\\}", "$1");
+                    } while (!textToCopy.equals(lastResult));
+
+                    textToCopy = textToCopy.trim();
                 }
+            } else {
+                textToCopy = currentPlainTextForLatex;
+            }
 
-                if (textToCopy != null && !textToCopy.isEmpty()) {
-                    ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
-                    ClipData clip = ClipData.newPlainText("Hajimi24-LaTeX", textToCopy);
-                    clipboard.setPrimaryClip(clip);
-                    showCustomToast("已复制" + (mode == 0 ? " LaTeX 代码" : "计算式文本"));
-                }
-                return true; // 拦截事件，防止弹出原生菜单
-            });
-        }
+            if (textToCopy != null && !textToCopy.isEmpty()) {
+                ClipboardManager clipboard = (ClipboardManager) getSystemService(Context.CLIPBOARD_SERVICE);
+                ClipData clip = ClipData.newPlainText("Hajimi24-LaTeX", textToCopy);
+                clipboard.setPrimaryClip(clip);
+                showCustomToast("已复制" + (mode == 0 ? " LaTeX 代码" : "计算式文本"));
+            }
+            return true; // 拦截事件，防止弹出原生菜单
+        };
+        if (wvMath != null) wvMath.setOnLongClickListener(copyFormulaListener);
+        if (fvMath != null) fvMath.setOnLongClickListener(copyFormulaListener);
 
         // 消息区域长按复制
         if (tvMessage != null) {
@@ -1173,11 +1270,14 @@ public class MainActivity extends AppCompatActivity {
         int divMode = prefs.getInt("latex_div_mode", 0);
         // ------------------
 
-        WebView wvMath = findViewById(R.id.wv_math_message);
+        View wvMath = findViewById(R.id.wv_math_message);
+        FormulaView fvMath = findViewById(R.id.fv_math_message);
+        mathRenderSeq++; // 还没返回的缓存查找作废
 
         // 清空显示或无解情况
         if (prefix.isEmpty() || "无解".equals(prefix)) {
             wvMath.setVisibility(View.GONE);
+            fvMath.setVisibility(View.GONE);
             tvMessage.setVisibility(View.VISIBLE);
             tvMessage.setText(prefix);
             return;
@@ -1193,9 +1293,6 @@ public class MainActivity extends AppCompatActivity {
             int depth = ExpressionHelper.getLatexHeight(latexBody);
             int width = ExpressionHelper.getLatexWidth(latexBody);
 
-            // 3. 传入 depth 进行渲染
-            renderLatexInWebView(wvMath, latexBody, depth, width);
-
             // --- 新增：保存用于复制的文本 ---
             currentLatexCode = latexBody;
             currentPlainTextForLatex = isStructure ?
@@ -1203,10 +1300,19 @@ public class MainActivity extends AppCompatActivity {
                     ExpressionHelper.getAnswerAsPlainText(rawSolution, getCurrentNumbers());
             // ---------------------------
 
-            renderLatexInWebView(wvMath, latexBody, depth, width);
+            // 3. 默认原生绘制；用户选择 MathJax、长按需要网页原生选择 (模式 2) 或公式超出原生排版的范围时才用 WebView
+            boolean useMathJax = prefs.getBoolean("latex_use_mathjax", false)
+                    || prefs.getInt("latex_long_press_mode", 0) == 2;
+            if (!useMathJax && renderLatexNatively(fvMath, latexBody, depth, width)) {
+                wvMath.setVisibility(View.GONE);
+            } else {
+                fvMath.setVisibility(View.GONE);
+                renderLatexInWebView(obtainMathWebView(), latexBody, depth, width);
+            }
         } else {
             // 普通模式逻辑保持不变
             wvMath.setVisibility(View.GONE);
+            fvMath.setVisibility(View.GONE);
             tvMessage.setVisibility(View.VISIBLE);
             tvMessage.setText(prefix);
             if (isStructure) {
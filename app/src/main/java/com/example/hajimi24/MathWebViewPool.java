@@ -0,0 +1,221 @@
+package com.example.hajimi24;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预热好的公式 WebView 池，主界面与悬浮窗共用。
+ *
+ * 每个 WebView 只加载一次公式模板 (含 MathJax)，之后只通过 updateMath / showSvg 换公式，不再重新加载页面。
+ * warmUp 在主线程空闲时创建并加载一个备用实例；acquire 取出它 (模板未就绪时，脚本排队到就绪后执行)，
+ * 用完 release 回池。旋转时调用方只需把 WebView 从旧布局取下、装进新布局，页面状态保持不变。
+ *
+ * WebView 用 MutableContextWrapper 创建：借出时换成调用方的 Context，归还时换回 Application，不会泄漏 Activity。
+ */
+public class MathWebViewPool {
+
+    private static final String TAG = "Hajimi24";
+    // 备用实例数：同一时刻最多一个界面在显示公式，一个就够
+    private static final int IDLE_LIMIT = 1;
+
+    /** 页面事件，在 JS 线程回调 */
+    public interface Callback {
+        // MathJax 排版完成
+        void onRenderFinished();
+
+        // 缓存的 SVG 已显示
+        void onFormulaShown();
+
+        void onSvgRendered(int id, String svg);
+    }
+
+    // 公式模板：正文颜色与旋转由 setFrame 设置 (悬浮窗横放时内容整体旋转)
+    private static final String TEMPLATE = "<!DOCTYPE html><html><head><meta charset='UTF-8'>" +
+            "<style>body { margin: 0; padding: 0; display: flex; justify-content: center; align-items: center; " +
+            "height: 100vh; background: transparent; overflow: hidden; color: #000000; } " +
+            "#math { font-size: 125%; text-align: center; width: 100%; transition: font-size 0.2s; } " +
+            "body.rotated #math { position: absolute; top: 50%; left: 50%; width: auto; white-space: nowrap; transition: none; } " +
+            FormulaSvgCache.SVG_STYLE + "</style>" +
+            "<script>" +
+            "window.MathJax = { tex: { inlineMath: [['$', '$']], displayMath: [['$$', '$$']] }, " +
+            FormulaSvgCache.MATHJAX_SVG_CONFIG + ", " +
+            "startup: { ready: () => { MathJax.startup.defaultReady(); " +
+            "MathJax.startup.promise.then(() => window.android.onTemplateReady()); } } };" +
+            FormulaSvgCache.CAPTURE_SCRIPT +
+            "function setFrame(color, rotation) {" +
+            "  document.body.style.color = color;" +
+            "  document.body.className = rotation ? 'rotated' : '';" +
+            "  document.getElementById('math').style.transform = rotation ? 'translate(-50%, -50%) rotate(' + rotation + 'deg)' : '';" +
+            "}" +
+            // 不重载页面，只更新数学公式
+            "function updateMath(newTex, newSize, id) {" +
+            "  const container = document.getElementById('math');" +
+            "  container.style.fontSize = newSize;" +
+            "  container.innerHTML = '$$\\\\displaystyle ' + newTex + '$$';" +
+            "  MathJax.typesetPromise([container]).then(() => { captureSvg(container, id); window.android.onRenderFinished(); });" +
+            "}" +
+            // 缓存命中：直接换上排版好的 SVG
+            "function showSvg(svg, newSize) {" +
+            "  const container = document.getElementById('math');" +
+            "  container.style.fontSize = newSize;" +
+            "  container.innerHTML = svg;" +
+            "  window.android.onFormulaShown();" +
+            "}" +
+            "</script>" +
+            "<script id='MathJax-script' src='file:///android_asset/mathjax/tex-svg.js'></script></head>" +
+            "<body><div id='math'></div></body></html>";
+
+    private static MathWebViewPool instance;
+
+    public static synchronized MathWebViewPool get(Context context) {
+        if (instance == null) instance = new MathWebViewPool(context.getApplicationContext());
+        return instance;
+    }
+
+    // 每个 WebView 的状态
+    private static class Entry {
+        final WebView view;
+        final long createdAt = SystemClock.uptimeMillis();
+        boolean ready;
+        // 模板就绪前收到的最后一段脚本 (每次都会整体替换公式，只需保留最新的)
+        String pendingScript;
+        volatile Callback callback;
+
+        Entry(WebView view) {
+            this.view = view;
+        }
+    }
+
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Entry> idle = new ArrayList<>();
+    private final Map<WebView, Entry> entries = new HashMap<>();
+    private boolean warmUpScheduled = false;
+
+    // 首个公式显示耗时的起点 (第一次使用本类，即主界面 onCreate)
+    private final long startUptime = SystemClock.uptimeMillis();
+    private boolean firstFormulaReported = false;
+
+    private MathWebViewPool(Context appContext) {
+        this.appContext = appContext;
+    }
+
+    // 在主线程空闲时准备一个备用实例 (已有时不做任何事)，不拖慢当前的 onCreate
+    public void warmUp() {
+        if (warmUpScheduled) return;
+        warmUpScheduled = true;
+        mainHandler.post(() -> {
+            warmUpScheduled = false;
+            if (idle.size() < IDLE_LIMIT) idle.add(create());
+        });
+    }
+
+    // 借出一个 WebView (必须在主线程调用)：优先用预热好的，没有时现场创建
+    public WebView acquire(Context owner, Callback callback) {
+        Entry entry = idle.isEmpty() ? create() : idle.remove(idle.size() - 1);
+        ((MutableContextWrapper) entry.view.getContext()).setBaseContext(owner);
+        entry.callback = callback;
+        return entry.view;
+    }
+
+    // 归还：从布局中取下，清空公式后留作备用；备用已满时销毁
+    public void release(WebView view) {
+        Entry entry = entries.get(view);
+        if (entry == null) return;
+        entry.callback = null;
+        if (view.getParent() instanceof ViewGroup) ((ViewGroup) view.getParent()).removeView(view);
+        ((MutableContextWrapper) view.getContext()).setBaseContext(appContext);
+        view.setOnLongClickListener(null);
+        view.setLayerType(View.LAYER_TYPE_NONE, null);
+        view.setVisibility(View.GONE);
+        if (idle.size() < IDLE_LIMIT) {
+            run(view, "document.getElementById('math').innerHTML = '';");
+            idle.add(entry);
+        } else {
+            entries.remove(view);
+            view.destroy();
+        }
+    }
+
+    // 在页面中执行脚本；模板 (MathJax) 还没就绪时排队，就绪后立即执行
+    public void run(WebView view, String script) {
+        Entry entry = entries.get(view);
+        if (entry == null) return;
+        if (entry.ready) {
+            view.evaluateJavascript(script, null);
+        } else {
+            entry.pendingScript = script;
+        }
+    }
+
+    // 记录首个公式 (原生绘制或 WebView) 显示到屏幕的耗时，只记录一次
+    public synchronized void reportFormulaShown(String renderer) {
+        if (firstFormulaReported) return;
+        firstFormulaReported = true;
+        Log.i(TAG, "time-to-first-formula: " + (SystemClock.uptimeMillis() - startUptime) + " ms (" + renderer + ")");
+    }
+
+    private Entry create() {
+        WebView view = new WebView(new MutableContextWrapper(appContext));
+        view.getSettings().setJavaScriptEnabled(true);
+        view.getSettings().setAllowFileAccess(true);
+        view.setBackgroundColor(0);
+        Entry entry = new Entry(view);
+        entries.put(view, entry);
+        view.addJavascriptInterface(new Bridge(entry), "android");
+        view.loadDataWithBaseURL("file:///android_asset/mathjax/", TEMPLATE, "text/html", "UTF-8", null);
+        return entry;
+    }
+
+    // 页面回调：模板就绪由池处理，其余转给当前借用者
+    private class Bridge {
+        private final Entry entry;
+
+        Bridge(Entry entry) {
+            this.entry = entry;
+        }
+
+        @JavascriptInterface
+        public void onTemplateReady() {
+            mainHandler.post(() -> {
+                entry.ready = true;
+                Log.i(TAG, "MathJax template ready in " + (SystemClock.uptimeMillis() - entry.createdAt) + " ms");
+                if (entry.pendingScript != null) {
+                    entry.view.evaluateJavascript(entry.pendingScript, null);
+                    entry.pendingScript = null;
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public void onRenderFinished() {
+            Callback callback = entry.callback;
+            if (callback != null) callback.onRenderFinished();
+        }
+
+        @JavascriptInterface
+        public void onFormulaShown() {
+            Callback callback = entry.callback;
+            if (callback != null) callback.onFormulaShown();
+        }
+
+        @JavascriptInterface
+        public void onSvgRendered(int id, String svg) {
+            Callback callback = entry.callback;
+            if (callback != null) callback.onSvgRendered(id, svg);
+        }
+    }
+}
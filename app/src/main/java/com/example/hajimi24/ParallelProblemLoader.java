@@ -0,0 +1,248 @@
+package com.example.hajimi24;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 大题库的分块并行解析。
+ * 把文件切成按换行对齐的字节区间，交给与 CPU 核数相同的线程池解析，
+ * 最后按原顺序合并成一个 ProblemFilterIndex。
+ * 分块压缩的文件 (BlockCompressedFile) 本身就按换行分块，各线程直接解压并解析自己的那几块。
+ */
+public class ParallelProblemLoader {
+
+    // 每行的解析逻辑由调用方提供 (ProblemRepository.indexLine)
+    public interface LineParser {
+        void parseLine(String line, ProblemFilterIndex target);
+    }
+
+    // 按行号对齐解析时使用：返回该行对应的题目，注释、空行或被过滤掉的行返回 null
+    public interface LineMapper {
+        Problem map(String line);
+    }
+
+    // 小于该大小的文件直接单线程解析，避免线程调度开销
+    private static final int MIN_PARALLEL_BYTES = 256 * 1024;
+    // 每块至少这么大，保证每个任务的工作量足够
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static ExecutorService pool;
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(THREADS, r -> {
+                Thread t = new Thread(r, "ProblemParser");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return pool;
+    }
+
+    // 从输入流加载 (内部存储或 APK assets)：一次性读入字节数组，再按区间切分
+    public static ProblemFilterIndex load(InputStream is, String fileName, LineParser parser) throws IOException {
+        byte[] data = readAll(is);
+        return load(data, data.length, fileName, parser);
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        try {
+            while ((n = is.read(buffer)) != -1) baos.write(buffer, 0, n);
+        } finally {
+            is.close();
+        }
+        return baos.toByteArray();
+    }
+
+    public static ProblemFilterIndex load(BlockCompressedFile file, String fileName, LineParser parser) throws IOException {
+        int blocks = file.getBlockCount();
+        if (file.getRawLength() < MIN_PARALLEL_BYTES || THREADS == 1 || blocks < 2) {
+            ProblemFilterIndex index = new ProblemFilterIndex(fileName);
+            for (int b = 0; b < blocks; b++) {
+                byte[] data = file.readBlock(b);
+                parseRange(data, 0, data.length, index, parser);
+            }
+            return index;
+        }
+
+        // 连续的若干块为一个任务，任务数与按字节切分时相同
+        int tasks = Math.min(blocks, THREADS * 2);
+        List<Future<ProblemFilterIndex>> futures = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            final int from = (int) ((long) blocks * t / tasks), to = (int) ((long) blocks * (t + 1) / tasks);
+            futures.add(getPool().submit(() -> {
+                ProblemFilterIndex part = new ProblemFilterIndex(fileName);
+                for (int b = from; b < to; b++) {
+                    byte[] data = file.readBlock(b);
+                    parseRange(data, 0, data.length, part, parser);
+                }
+                return part;
+            }));
+        }
+        return merge(futures, fileName);
+    }
+
+    public static ProblemFilterIndex load(byte[] data, int length, String fileName, LineParser parser) throws IOException {
+        if (length < MIN_PARALLEL_BYTES || THREADS == 1) {
+            ProblemFilterIndex index = new ProblemFilterIndex(fileName);
+            parseRange(data, 0, length, index, parser);
+            return index;
+        }
+
+        int[] bounds = splitAtNewlines(data, length);
+        List<Future<ProblemFilterIndex>> futures = new ArrayList<>();
+        for (int c = 0; c + 1 < bounds.length; c++) {
+            final int from = bounds[c], to = bounds[c + 1];
+            futures.add(getPool().submit(() -> {
+                ProblemFilterIndex part = new ProblemFilterIndex(fileName);
+                parseRange(data, from, to, part, parser);
+                return part;
+            }));
+        }
+
+        return merge(futures, fileName);
+    }
+
+    /**
+     * 按行号对齐解析 (FolderProblemSet 的分片使用)：结果第 i 项对应文件第 i 行，
+     * 各块的起始行号已知，各线程直接写入自己的区间，无需合并。
+     */
+    public static Problem[] loadLines(BlockCompressedFile file, LineMapper mapper) throws IOException {
+        Problem[] result = new Problem[(int) file.getLineCount()];
+        int blocks = file.getBlockCount();
+        if (file.getRawLength() < MIN_PARALLEL_BYTES || THREADS == 1 || blocks < 2) {
+            for (int b = 0; b < blocks; b++) {
+                byte[] data = file.readBlock(b);
+                mapRange(data, 0, data.length, result, (int) file.getFirstLine(b), mapper);
+            }
+            return result;
+        }
+
+        int tasks = Math.min(blocks, THREADS * 2);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < tasks; t++) {
+            final int from = (int) ((long) blocks * t / tasks), to = (int) ((long) blocks * (t + 1) / tasks);
+            futures.add(getPool().submit(() -> {
+                for (int b = from; b < to; b++) {
+                    byte[] data = file.readBlock(b);
+                    mapRange(data, 0, data.length, result, (int) file.getFirstLine(b), mapper);
+                }
+                return null;
+            }));
+        }
+        await(futures);
+        return result;
+    }
+
+    // 输入流版本 (APK assets 或未压缩的旧文件)：先数出各区间的起始行号，再并行解析
+    public static Problem[] loadLines(InputStream is, LineMapper mapper) throws IOException {
+        byte[] data = readAll(is);
+        int[] bounds = data.length < MIN_PARALLEL_BYTES || THREADS == 1
+                ? new int[]{0, data.length} : splitAtNewlines(data, data.length);
+        int[] firstLines = new int[bounds.length];
+        for (int c = 0; c + 1 < bounds.length; c++) {
+            int lines = 0;
+            for (int i = bounds[c]; i < bounds[c + 1]; i++) if (data[i] == '\n') lines++;
+            firstLines[c + 1] = firstLines[c] + lines;
+        }
+        int last = bounds[bounds.length - 1];
+        boolean endsWithNewline = last == 0 || data[last - 1] == '\n';
+        Problem[] result = new Problem[firstLines[bounds.length - 1] + (endsWithNewline ? 0 : 1)];
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c + 1 < bounds.length; c++) {
+            final int from = bounds[c], to = bounds[c + 1], firstLine = firstLines[c];
+            if (bounds.length == 2) mapRange(data, from, to, result, firstLine, mapper);
+            else futures.add(getPool().submit(() -> {
+                mapRange(data, from, to, result, firstLine, mapper);
+                return null;
+            }));
+        }
+        await(futures);
+        return result;
+    }
+
+    private static void await(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> f : futures) f.get();
+        } catch (InterruptedException e) {
+            for (Future<?> f : futures) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Parsing failed", e.getCause());
+        }
+    }
+
+    // 按块的原始顺序合并，保证题目顺序与文件一致
+    private static ProblemFilterIndex merge(List<Future<ProblemFilterIndex>> futures, String fileName) throws IOException {
+        ProblemFilterIndex index = new ProblemFilterIndex(fileName);
+        try {
+            for (Future<ProblemFilterIndex> f : futures) index.appendAll(f.get());
+        } catch (InterruptedException e) {
+            for (Future<ProblemFilterIndex> f : futures) f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Parsing interrupted: " + fileName);
+        } catch (ExecutionException e) {
+            throw new IOException("Parsing failed: " + fileName, e.getCause());
+        }
+        return index;
+    }
+
+    // 计算各块的边界：先按字节数均分，再把每个边界向后移到下一个换行符之后
+    private static int[] splitAtNewlines(byte[] data, int length) {
+        int chunks = Math.max(1, Math.min(THREADS * 2, length / MIN_CHUNK_BYTES));
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        for (int c = 1; c < chunks; c++) {
+            int pos = (int) ((long) length * c / chunks);
+            int last = bounds.get(bounds.size() - 1);
+            if (pos <= last) continue;
+            while (pos < length && data[pos - 1] != '\n') pos++;
+            if (pos >= length) break;
+            bounds.add(pos);
+        }
+        bounds.add(length);
+
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    // 逐行映射并写入 result[firstLine...]，空行也占一个行号
+    private static void mapRange(byte[] data, int from, int to, Problem[] result, int firstLine, LineMapper mapper) {
+        int line = firstLine;
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            if (data[i] == '\n') {
+                if (i > lineStart) result[line] = mapper.map(new String(data, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        if (to > lineStart) result[line] = mapper.map(new String(data, lineStart, to - lineStart, StandardCharsets.UTF_8));
+    }
+
+    private static void parseRange(byte[] data, int from, int to, ProblemFilterIndex target, LineParser parser) {
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            if (data[i] == '\n') {
+                if (i > lineStart) parser.parseLine(new String(data, lineStart, i - lineStart, StandardCharsets.UTF_8), target);
+                lineStart = i + 1;
+            }
+        }
+        if (to > lineStart) parser.parseLine(new String(data, lineStart, to - lineStart, StandardCharsets.UTF_8), target);
+    }
+}
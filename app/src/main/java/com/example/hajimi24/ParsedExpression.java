@@ -0,0 +1,318 @@
+package com.example.hajimi24;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 解析一次、多处渲染的解法算式。
+ * 后缀 (mod / base)、操作数占位与语法树都在构造时算好，HTML、纯文本、结构模式与各种乘除写法的 LaTeX
+ * 只是对同一棵树的不同遍历。按 (解法, 当前数字) 缓存最近用到的几个，切换显示模式时不再重新解析。
+ */
+public class ParsedExpression {
+
+    private static final int CACHE_SIZE = 32;
+
+    private static final Map<String, ParsedExpression> cache = new LinkedHashMap<String, ParsedExpression>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ParsedExpression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // 后缀：关键字 (mod / base，不区分大小写) 与其后的数字
+    private static final Pattern SUFFIX_PATTERN = Pattern.compile("(?i)(mod|base)\\s*(\\d+)");
+    private static final Pattern SUFFIX_TAIL_PATTERN = Pattern.compile("(?i)\\s*(mod|base)\\s*\\d+.*");
+
+    public static ParsedExpression of(String expression, List<Fraction> numbers) {
+        StringBuilder key = new StringBuilder(expression);
+        for (Fraction f : numbers) key.append('\u0000').append(f.toString());
+        String k = key.toString();
+        synchronized (cache) {
+            ParsedExpression cached = cache.get(k);
+            if (cached != null) return cached;
+        }
+        ParsedExpression parsed = new ParsedExpression(expression, numbers);
+        synchronized (cache) {
+            cache.put(k, parsed);
+        }
+        return parsed;
+    }
+
+    private final String expression;
+    // 去掉后缀后的算式
+    private final String cleanExpr;
+    // 后缀关键字 (小写) 与数值；没有后缀时为空串
+    private final String suffixKeyword;
+    private final String suffixValue;
+    // 纯文本显示用的完整后缀 (例如 "base 5 mod 7")
+    private final String suffixText;
+    private final Map<String, String> placeholderMap = new HashMap<>();
+    // 解析失败时为 null，各渲染方法退回原文
+    private final Node root;
+
+    private ParsedExpression(String expression, List<Fraction> numbers) {
+        this.expression = expression;
+        Matcher mSuffix = SUFFIX_PATTERN.matcher(expression);
+        if (mSuffix.find()) {
+            suffixKeyword = mSuffix.group(1).toLowerCase();
+            suffixValue = mSuffix.group(2);
+        } else {
+            suffixKeyword = "";
+            suffixValue = "";
+        }
+        Matcher mTail = SUFFIX_TAIL_PATTERN.matcher(expression);
+        if (mTail.find()) {
+            cleanExpr = expression.substring(0, mTail.start()).trim();
+            suffixText = mTail.group().trim();
+        } else {
+            cleanExpr = expression.trim();
+            suffixText = "";
+        }
+
+        Node parsed;
+        try {
+            parsed = parse(createPlaceholders(cleanExpr, numbers, placeholderMap));
+        } catch (Exception e) {
+            parsed = null;
+        }
+        root = parsed;
+    }
+
+    // ==========================================
+    //  渲染
+    // ==========================================
+
+    /** HTML 形式 (Html.fromHtml 之前的文本)，解析失败时返回 null */
+    public String toHtml(boolean isStructureMode) {
+        if (root == null) return null;
+        try {
+            String html = root.toHtml(placeholderMap, isStructureMode);
+            if (!suffixKeyword.isEmpty()) html += "&nbsp;&nbsp;&nbsp;<b>(" + suffixKeyword + " " + suffixValue + ")</b>";
+            return html;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public String toPlainText(boolean isStructureMode) {
+        try {
+            if (root == null) throw new IllegalStateException();
+            String suffixPart = suffixText.isEmpty() ? "" : "   (" + suffixText + ")";
+            return root.toPlainText(placeholderMap, isStructureMode) + suffixPart;
+        } catch (Exception e) {
+            return cleanExpr + (suffixText.isEmpty() ? "" : " " + suffixText);
+        }
+    }
+
+    public String toLatex(boolean isStructureMode, int mulMode, int divMode) {
+        if (root == null) return "";
+        try {
+            String latex = root.toLatex(placeholderMap, isStructureMode, 0, false, mulMode, divMode);
+            if (!suffixKeyword.isEmpty()) {
+                // 输出结果形如： \quad \left(\operatorname{mod} 73\right)
+                latex += " \\quad \\left(\\operatorname{" + suffixKeyword + "} " + suffixValue + "\\right)";
+            }
+            return latex;
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    // ==========================================
+    //  语法树
+    // ==========================================
+
+    private interface Node {
+        String toHtml(Map<String, String> map, boolean isStructureMode);
+        String toPlainText(Map<String, String> map, boolean isStructureMode);
+        String toLatex(Map<String, String> map, boolean isStructureMode, int parentPrec, boolean isRight, int mulMode, int divMode);
+    }
+
+    private static class ValueNode implements Node {
+        private final String placeholder;
+        ValueNode(String placeholder) { this.placeholder = placeholder; }
+
+        private String getValue(Map<String, String> map, boolean isStructureMode) {
+            if (isStructureMode) return "🐱";
+            String val = map.get(placeholder);
+            return (val != null) ? val : "";
+        }
+
+        private int getEffectivePrec(String val) {
+            if (val.contains("+") || (val.lastIndexOf("-") > 0)) return 1;
+            return 999;
+        }
+
+        @Override public String toHtml(Map<String, String> map, boolean isStructureMode) { return getValue(map, isStructureMode); }
+        @Override public String toPlainText(Map<String, String> map, boolean isStructureMode) { return getValue(map, isStructureMode); }
+
+        @Override
+        public String toLatex(Map<String, String> map, boolean isStructureMode, int parentPrec, boolean isRight, int mulMode, int divMode) {
+            String val = getValue(map, isStructureMode);
+            String result;
+
+            // 1. 处理分式并将 i 替换为 \mathrm{i}
+            if (divMode == 1 && !isStructureMode && val.contains("/")) {
+                String[] p = val.split("/");
+                // 分子分母分别替换
+                result = "\\cfrac{" + p[0].replace("i", "\\mathrm{i}") + "}{" + p[1].replace("i", "\\mathrm{i}") + "}";
+            } else {
+                result = val.replace("i", "\\mathrm{i}");
+            }
+
+            int myPrec = getEffectivePrec(val);
+            if (isStructureMode) myPrec = 999;
+
+            boolean needBrackets = false;
+            if (parentPrec > myPrec) needBrackets = true;
+            if (parentPrec == 1 && isRight && myPrec == 1) needBrackets = true;
+
+            if (needBrackets) return "\\left(" + result + "\\right)";
+            return result;
+        }
+    }
+
+    private static class OperatorNode implements Node {
+        final char op;
+        final Node left, right;
+        OperatorNode(char op, Node right, Node left) { this.op = op; this.left = left; this.right = right; }
+
+        private int getPrec(int divMode) {
+            if (op == '*' || op == '×') return 2;
+            if (op == '/') return (divMode == 2) ? 2 : 3;
+            return 1;
+        }
+
+        @Override public String toPlainText(Map<String, String> map, boolean isStructureMode) {
+            String l = left.toPlainText(map, isStructureMode);
+            String r = right.toPlainText(map, isStructureMode);
+            char dOp = (op == '*') ? '×' : (op == '/') ? '÷' : op;
+            return "(" + l + " " + dOp + " " + r + ")";
+        }
+
+        @Override public String toHtml(Map<String, String> map, boolean isStructureMode) {
+            String l = left.toHtml(map, isStructureMode);
+            String r = right.toHtml(map, isStructureMode);
+            return "(" + l + " " + ((op == '*') ? '×' : op) + " " + r + ")";
+        }
+
+        @Override
+        public String toLatex(Map<String, String> map, boolean isStructureMode, int parentPrec, boolean isRight, int mulMode, int divMode) {
+            int myPrec = getPrec(divMode);
+            String lStr, rStr;
+
+            if (op == '/' && (divMode == 0 || divMode == 1)) {
+                lStr = left.toLatex(map, isStructureMode, 0, false, mulMode, divMode);
+                rStr = right.toLatex(map, isStructureMode, 0, true, mulMode, divMode);
+                return "\\cfrac{" + lStr + "}{" + rStr + "}";
+            }
+
+            lStr = left.toLatex(map, isStructureMode, myPrec, false, mulMode, divMode);
+            rStr = right.toLatex(map, isStructureMode, myPrec, true, mulMode, divMode);
+
+            String latexOp;
+            if (op == '*' || op == '×') {
+                if (mulMode == 0) latexOp = " \\times ";
+                else if (mulMode == 1) latexOp = " \\cdot ";
+                else {
+                    // 【核心逻辑适配】：
+                    // 如果移除 \text{}，则判断逻辑改为：只要不是以 \right) 或 \left( 包装的，即视为数字或分式
+                    boolean leftIsBracket = lStr.endsWith("\\right)");
+                    boolean rightIsBracket = rStr.startsWith("\\left(");
+
+                    // 只要不是括号包裹，就认为是数字或分式（如 10 或 \cfrac{...}{...}）
+                    boolean leftIsNumOrFrac = !leftIsBracket;
+                    boolean rightIsNumOrFrac = !rightIsBracket;
+
+                    if ((leftIsBracket && rightIsBracket) || (leftIsNumOrFrac && rightIsBracket) || (leftIsBracket && rightIsNumOrFrac)) {
+                        latexOp = " ";
+                    } else {
+                        latexOp = " \\cdot ";
+                    }
+                }
+            } else if (op == '/') {
+                latexOp = " \\div ";
+            } else {
+                latexOp = " " + op + " ";
+            }
+
+            String result = lStr + latexOp + rStr;
+            boolean needBrackets = false;
+            if (parentPrec > myPrec) needBrackets = true;
+            if (parentPrec == myPrec && isRight && (parentPrec == 1 || parentPrec == 2)) needBrackets = true;
+
+            if (needBrackets) return "\\left(" + result + "\\right)";
+            return result;
+        }
+    }
+
+    // ==========================================
+    //  解析
+    // ==========================================
+
+    // 把算式中出现的各个数字换成占位符 #0#、#1#…，占位符到原文的对应关系存入 map。
+    // 从左到右读一遍算式，在每个位置按长度从长到短尝试首字符相同的数字 (例如 "12" 先于 "1"、"1/2" 先于 "1")，
+    // 匹配上就整体替换并跳过，否则原样保留这个字符
+    private static String createPlaceholders(String expr, List<Fraction> nums, Map<String, String> map) {
+        Map<Character, List<String>> byFirstChar = new HashMap<>();
+        List<String> ns = new ArrayList<>();
+        for (Fraction f : nums) ns.add(f.toString());
+        ns.sort((a, b) -> b.length() - a.length());
+        for (String s : ns) {
+            if (s.isEmpty()) continue;
+            List<String> list = byFirstChar.get(s.charAt(0));
+            if (list == null) byFirstChar.put(s.charAt(0), list = new ArrayList<>());
+            list.add(s);
+        }
+
+        StringBuilder sb = new StringBuilder(expr.length());
+        int count = 0;
+        int pos = 0;
+        while (pos < expr.length()) {
+            String operand = null;
+            List<String> candidates = byFirstChar.get(expr.charAt(pos));
+            if (candidates != null) {
+                for (String s : candidates) {
+                    if (expr.startsWith(s, pos)) { operand = s; break; }
+                }
+            }
+            if (operand == null) {
+                sb.append(expr.charAt(pos++));
+                continue;
+            }
+            String p = "#" + count + "#";
+            map.put(p, operand);
+            sb.append(p);
+            count++;
+            pos += operand.length();
+        }
+        return sb.toString();
+    }
+
+    // 占位符之间的算式由 CompiledExpression 解析，操作数只能是占位符
+    private static Node parse(String expr) {
+        return CompiledExpression.compile(expr, false).build(new CompiledExpression.Builder<Node>() {
+            @Override
+            public Node operand(String token) {
+                if (token.length() < 3 || token.charAt(0) != '#' || token.charAt(token.length() - 1) != '#') {
+                    throw new IllegalArgumentException("未识别的数字: " + token);
+                }
+                return new ValueNode(token);
+            }
+
+            @Override
+            public Node apply(char op, Node left, Node right) {
+                return new OperatorNode(op, right, left);
+            }
+        });
+    }
+}
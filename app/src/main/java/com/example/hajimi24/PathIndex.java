@@ -0,0 +1,101 @@
+package com.example.hajimi24;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * 文件列表的目录树索引 (按 RemoteFile.path 的 "/" 分段建立)。
+ * 每个文件夹节点缓存其下 (含子文件夹) 的文件总数与总大小，
+ * 查询某个文件夹的子项或汇总时只需沿路径走到该节点，不必遍历整个列表。
+ * 每次获取到新的文件列表时重建一次。
+ */
+public class PathIndex {
+
+    private static class Node {
+        final TreeMap<String, Node> folders = new TreeMap<>();
+        final TreeMap<String, ProblemRepository.RemoteFile> files = new TreeMap<>();
+        int fileCount = 0;
+        long totalSize = 0;
+        boolean sizeUnknown = false;
+    }
+
+    private final Node root = new Node();
+
+    private PathIndex() {}
+
+    public static PathIndex build(List<ProblemRepository.RemoteFile> files) {
+        PathIndex index = new PathIndex();
+        if (files == null) return index;
+        for (ProblemRepository.RemoteFile rf : files) index.add(rf);
+        return index;
+    }
+
+    private void add(ProblemRepository.RemoteFile rf) {
+        String[] segments = rf.path.split("/");
+        Node node = root;
+        accumulate(node, rf);
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (segments[i].isEmpty()) continue;
+            Node child = node.folders.get(segments[i]);
+            if (child == null) {
+                child = new Node();
+                node.folders.put(segments[i], child);
+            }
+            node = child;
+            accumulate(node, rf);
+        }
+        node.files.put(segments[segments.length - 1], rf);
+    }
+
+    private static void accumulate(Node node, ProblemRepository.RemoteFile rf) {
+        node.fileCount++;
+        if (rf.size >= 0) node.totalSize += rf.size;
+        else node.sizeUnknown = true;
+    }
+
+    // folderPath 形如 "data/三个数/"，"" 表示根目录；不存在时返回 null
+    private Node find(String folderPath) {
+        Node node = root;
+        for (String segment : folderPath.split("/")) {
+            if (segment.isEmpty()) continue;
+            node = node.folders.get(segment);
+            if (node == null) return null;
+        }
+        return node;
+    }
+
+    // 直属子文件夹名 (已排序)
+    public List<String> childFolders(String folderPath) {
+        Node node = find(folderPath);
+        if (node == null) return Collections.emptyList();
+        return new ArrayList<>(node.folders.keySet());
+    }
+
+    // 直属文件名 (已排序)
+    public List<String> childFiles(String folderPath) {
+        Node node = find(folderPath);
+        if (node == null) return Collections.emptyList();
+        return new ArrayList<>(node.files.keySet());
+    }
+
+    public ProblemRepository.RemoteFile getFile(String path) {
+        int slash = path.lastIndexOf('/');
+        Node node = find(slash >= 0 ? path.substring(0, slash + 1) : "");
+        return node != null ? node.files.get(path.substring(slash + 1)) : null;
+    }
+
+    // 文件夹下 (含子文件夹) 的文件总数
+    public int fileCount(String folderPath) {
+        Node node = find(folderPath);
+        return node != null ? node.fileCount : 0;
+    }
+
+    // 文件夹下的文件总大小；有文件大小未知时返回 -1
+    public long totalSize(String folderPath) {
+        Node node = find(folderPath);
+        if (node == null) return 0;
+        return node.sizeUnknown ? -1 : node.totalSize;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.hajimi24;
+
+import java.util.List;
+
+/**
+ * 单个题库文件的过滤属性索引。
+ * 每道题在解析时由 SolutionAnalyzer 计算一次特征字，修改游戏模式设定后只需扫描特征字即可重新过滤，
+ * 不必重新读取或解析文件。题目本身按列存放在 ProblemTable 中。
+ */
+public class ProblemFilterIndex {
+    // 各过滤标志 (含义见 SolutionAnalyzer)
+    public static final int ATTR_HAS_DIVISION = SolutionAnalyzer.HAS_DIVISION;
+    public static final int ATTR_HAS_MUL_DIV = SolutionAnalyzer.HAS_MUL_DIV;
+    public static final int ATTR_DIVISION_STORM = SolutionAnalyzer.DIVISION_STORM;
+    public static final int ATTR_TRIVIAL_FINAL_MUL = SolutionAnalyzer.TRIVIAL_FINAL_MUL;
+    public static final int ATTR_FRACTION_CALC = SolutionAnalyzer.FRACTION_CALC;
+
+    private final String fileName;
+    private final ProblemTable problems = new ProblemTable();
+    private int[] masks = new int[64];
+
+    public ProblemFilterIndex(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int size() {
+        return problems.size();
+    }
+
+    // 构造第 i 道题的 Problem (只需个别字段时用 getSolution 等)
+    public Problem getProblem(int i) {
+        return problems.get(i);
+    }
+
+    public String getLine(int i) {
+        return problems.getLine(i);
+    }
+
+    public String getSolution(int i) {
+        return problems.getSolution(i);
+    }
+
+    // 进制，没有时为 0
+    public int getRadix(int i) {
+        return problems.getRadix(i);
+    }
+
+    public int getMask(int i) {
+        return masks[i];
+    }
+
+    void add(Problem problem, int mask) {
+        int i = problems.size();
+        if (i == masks.length) {
+            int[] grown = new int[masks.length * 2];
+            System.arraycopy(masks, 0, grown, 0, masks.length);
+            masks = grown;
+        }
+        problems.add(problem);
+        masks[i] = mask;
+    }
+
+    // 追加另一个索引的第 i 道题 (连同其特征字)
+    void add(ProblemFilterIndex other, int i) {
+        int n = problems.size();
+        if (n == masks.length) {
+            int[] grown = new int[masks.length * 2];
+            System.arraycopy(masks, 0, grown, 0, masks.length);
+            masks = grown;
+        }
+        problems.addRow(other.problems, i);
+        masks[n] = other.masks[i];
+    }
+
+    // 按顺序追加另一个索引的全部题目 (并行解析后合并各块结果)
+    void appendAll(ProblemFilterIndex other) {
+        int base = problems.size();
+        int needed = base + other.size();
+        if (needed > masks.length) {
+            int[] grown = new int[Math.max(needed, masks.length * 2)];
+            System.arraycopy(masks, 0, grown, 0, base);
+            masks = grown;
+        }
+        problems.appendAll(other.problems);
+        System.arraycopy(other.masks, 0, masks, base, other.size());
+    }
+
+    // 加载完成后调用，释放多余的容量
+    void trimToSize() {
+        problems.trimToSize();
+        if (masks.length > problems.size()) {
+            int[] trimmed = new int[problems.size()];
+            System.arraycopy(masks, 0, trimmed, 0, trimmed.length);
+            masks = trimmed;
+        }
+    }
+
+    // 根据设定判断单个特征字是否通过过滤 (与原 isProblemValid 的规则一致)
+    public static boolean matches(int mask, GameModeSettings settings) {
+        if (settings.mustHaveDivision && (mask & ATTR_HAS_DIVISION) == 0) return false;
+        if (settings.avoidPureAddSub && (mask & ATTR_HAS_MUL_DIV) == 0) return false;
+        if (settings.requireDivisionStorm && (mask & ATTR_DIVISION_STORM) == 0) return false;
+        if (settings.avoidTrivialFinalMultiply && (mask & ATTR_TRIVIAL_FINAL_MUL) != 0) return false;
+        if (settings.requireFractionCalc && (mask & ATTR_FRACTION_CALC) == 0) return false;
+        return true;
+    }
+
+    // 扫描特征字得到过滤后的题目列表；
+    // 结果是表中选中行的只读视图，每道题只占一个 int
+    public List<Problem> filter(GameModeSettings settings) {
+        int[] rows = new int[problems.size()];
+        int count = 0;
+        for (int i = 0; i < problems.size(); i++) {
+            if (matches(masks[i], settings)) rows[count++] = i;
+        }
+        return problems.select(rows, count);
+    }
+}
@@ -1,19 +1,27 @@
 package com.example.hajimi24;
 
 import android.content.Context;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import java.io.BufferedReader;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,9 +31,43 @@ public class ProblemRepository {
     private static final String GITHUB_RAW_BASE = "https://raw.githubusercontent.com/zhangchenchengSJTU/hajimi24/Stable/";
 
     private Context context;
+    // 实际使用的地址 (默认为 GitHub，可替换为本地镜像服务器，方便测试同步逻辑)
+    private final String rawBase;
+    private final RemoteTreeCache treeCache;
+    // 下载的题库按内容 SHA 存放在 filesDir/blobs 中 (文档仍按路径存放，版本记录在 FileMeta)
+    private final BlobStore blobStore;
+    // 本地文件目录索引 (路径、SHA、大小、行数)，打开本地资源管理器时直接使用
+    private final LocalCatalog localCatalog;
+    // 本地各文件夹的汇总文字 (文件夹路径 -> "12 项 · 3400 行")，每次 fetchLocalFileTree 时重算，整体替换
+    private volatile Map<String, String> localFolderSummaries = new HashMap<>();
+    // APK 内置资源在运行期间不会变化，按目录缓存列表
+    private final Map<String, String[]> assetListCache = new HashMap<>();
+
+    // 跨题库的按数字搜题索引 (filesDir/search_index)，题库有变化时在首次查询前重建
+    private final File searchIndexFile;
+    private final Object searchIndexLock = new Object();
+    private ProblemSearchIndex searchIndex = null;
+
+    // 最近一次加载的题库属性索引 (修改游戏设定时直接复用，无需重读文件)
+    private ProblemFilterIndex cachedIndex = null;
+    // 缓存的是合并加载的文件夹时，其包含的各个文件与合并时的手牌去重表
+    private List<String> cachedIndexFiles = new ArrayList<>();
+    private HandTable cachedHands = null;
+    // 最近打开的分片文件夹 (修改设定时换一套设定重新按需读取)
+    private FolderProblemSet cachedFolderSet = null;
 
     public ProblemRepository(Context context) {
+        this(context, GITHUB_TREE_URL, GITHUB_RAW_BASE);
+    }
+
+    // rawBase 需以 "/" 结尾，文件路径直接拼接在其后
+    public ProblemRepository(Context context, String treeUrl, String rawBase) {
         this.context = context;
+        this.rawBase = rawBase;
+        this.treeCache = new RemoteTreeCache(new File(context.getCacheDir(), "remote_tree"), treeUrl);
+        this.blobStore = new BlobStore(new File(context.getFilesDir(), "blobs"));
+        this.localCatalog = new LocalCatalog(new File(context.getFilesDir(), "catalog"));
+        this.searchIndexFile = new File(context.getFilesDir(), "search_index");
     }
 
     // --- 数据结构与回调接口 ---
@@ -33,12 +75,18 @@ public class ProblemRepository {
         public String path;
         public String name;
         public String sha;
+        public long size = -1; // 字节数，未知时为 -1 (来自目录树的 "size" 字段)
 
         public RemoteFile(String path, String name, String sha) {
             this.path = path;
             this.name = name;
             this.sha = sha;
         }
+
+        public RemoteFile(String path, String name, String sha, long size) {
+            this(path, name, sha);
+            this.size = size;
+        }
     }
 
     public interface MenuDataCallback {
@@ -46,6 +94,17 @@ public class ProblemRepository {
         void onFail(String error);
     }
 
+    // 下载过程中登记/注销当前的 HTTP 连接，供 ProblemSyncEngine 取消时直接断开
+    public interface ConnectionListener {
+        void onOpened(HttpURLConnection connection);
+        void onClosed(HttpURLConnection connection);
+    }
+
+    public interface SearchCallback {
+        void onSuccess(List<ProblemSearchIndex.Hit> hits);
+        void onFail(String error);
+    }
+
     public interface FileDownloadCallback {
         void onProgress(int percent, long currentBytes, long totalBytes);
         void onSuccess(List<Problem> problems, String fileName);
@@ -59,7 +118,7 @@ public class ProblemRepository {
 
     // 新增：仅下载原始字符串内容（不解析为 Problem）
     public String downloadRawText(String filePath) throws IOException {
-        String url = GITHUB_RAW_BASE + filePath.replace(" ", "%20");
+        String url = getRawUrl(filePath);
         return downloadStringWithProgress(url, null);
     }
 
@@ -67,62 +126,135 @@ public class ProblemRepository {
         context.getSharedPreferences("FileMeta", Context.MODE_PRIVATE)
                 .edit().putString(path, sha).apply();
     }
-    // 统计某个路径下的直属内容数量 (用于显示在文件夹右侧)
-    public String getFolderContentSummary(String path, List<RemoteFile> dataSource) {
-        int folders = 0;
-        int files = 0;
-        for (RemoteFile f : dataSource) {
-            if (f.path.startsWith(path) && !f.path.equals(path)) {
-                String relative = f.path.substring(path.length());
-                if (relative.contains("/")) folders++; // 这里只是粗略统计，为了准确通常需要更复杂的逻辑
-                else files++;
-            }
+    // 文件夹汇总 (用于显示在文件夹右侧，例如 "12 项 · 340 KB")，由目录索引中缓存的聚合值直接得出
+    public String getFolderContentSummary(String folderPath, PathIndex index) {
+        int files = index.fileCount(folderPath);
+        long size = index.totalSize(folderPath);
+        return size >= 0 ? files + " 项 · " + formatSize(size) : files + " 项";
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return (bytes / 1024) + " KB";
+        return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    public int getLocalFileLineCount(String fileName) {
+        ensureLocalCatalog();
+        LocalCatalog.Entry entry = localCatalog.get(fileName);
+        return entry != null ? entry.lineCount : 0;
+    }
+
+    // 本地文件夹汇总 (例如 "12 项 · 3400 行")：只读 fetchLocalFileTree 在后台算好的结果，可在列表的 getView 中调用
+    public String getLocalFolderSummary(String folderPath) {
+        String summary = localFolderSummaries.get(folderPath);
+        return summary != null ? summary : "";
+    }
+
+    // 保存文档等本地文件后调用：记录版本标记并更新目录索引
+    public void recordLocalFile(String path, String sha) {
+        if (sha != null && !sha.isEmpty()) saveLocalFileSHA(path, sha);
+        File file = new File(context.getFilesDir(), path);
+        if (file.exists()) {
+            ensureLocalCatalog();
+            localCatalog.put(new LocalCatalog.Entry(path, sha, file.length(), LocalCatalog.countLines(file)));
         }
-        // 简化逻辑：仅统计该文件夹下的总文件数
-        int totalFiles = 0;
-        for (RemoteFile f : dataSource) {
-            if (f.path.startsWith(path)) totalFiles++;
+    }
+
+    // 删除本地文件 (path) 或整个文件夹 (以 "/" 结尾)：存储中的题库、版本标记与目录索引一并清除
+    // (直接存放在 filesDir 中的旧文件由调用方删除，见 SidebarLogic.deleteRecursive)
+    public void removeLocalPath(String path) {
+        ensureLocalCatalog();
+        List<String> removed = localCatalog.removePrefix(path);
+        android.content.SharedPreferences.Editor editor =
+                context.getSharedPreferences("FileMeta", Context.MODE_PRIVATE).edit();
+        for (String p : removed) {
+            blobStore.remove(p);
+            editor.remove(p);
+            invalidateCachedIndex(p);
         }
-        return totalFiles + " 项";
+        editor.apply();
     }
-    public int getLocalFileLineCount(String fileName) {
-        File file = new File(context.getFilesDir(), fileName);
-        if (!file.exists()) return 0;
-        int count = 0;
-        // 使用 try-with-resources 确保流关闭
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
-            while (reader.readLine() != null) {
-                count++;
+
+    // 首次使用 (或索引文件丢失) 时全量扫描一次 filesDir 与存储，之后只做增量更新；
+    // 扫描期间持有索引的锁，下载线程的 put 会等扫描写完再追加，不会被 replaceAll 覆盖
+    private void ensureLocalCatalog() {
+        if (localCatalog.load()) return;
+        synchronized (localCatalog) {
+            if (localCatalog.load()) return;
+            List<LocalCatalog.Entry> all = new ArrayList<>();
+            android.content.SharedPreferences meta = context.getSharedPreferences("FileMeta", Context.MODE_PRIVATE);
+
+            List<RemoteFile> legacy = new ArrayList<>();
+            scanLocalDirectory(context.getFilesDir(), "", legacy);
+            for (RemoteFile rf : legacy) {
+                File f = new File(context.getFilesDir(), rf.path);
+                all.add(new LocalCatalog.Entry(rf.path, meta.getString(rf.path, ""), f.length(), LocalCatalog.countLines(f)));
             }
+            for (String path : blobStore.listPaths("")) {
+                BlobStore.Entry entry = blobStore.get(path);
+                if (entry == null) continue;
+                all.add(new LocalCatalog.Entry(path, entry.sha, entry.size, countBlobLines(path)));
+            }
+            localCatalog.replaceAll(all);
+        }
+    }
+
+    // 压缩的 blob 直接取块索引中记录的行数，旧的未压缩 blob 逐字节统计
+    private int countBlobLines(String path) {
+        try (BlockCompressedFile blocks = blobStore.openBlocks(path)) {
+            if (blocks != null) return (int) blocks.getLineCount();
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return count;
+        try (InputStream is = blobStore.openStream(path)) {
+            return is != null ? LocalCatalog.countLines(is) : 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
     }
 
     public boolean needsUpdate(String path, String remoteSha) {
+        // 存储中的内容在下载时已校验过 SHA，查 manifest 即可
+        if (blobStore.contains(path, remoteSha)) return false;
+        if (blobStore.get(path) != null) return true; // 存储中是旧版本
+
+        // 旧版本直接存放在 filesDir 中的文件
         File file = new File(context.getFilesDir(), path);
         if (!file.exists()) return true; // 文件不存在，需要下载
 
         String localSha = context.getSharedPreferences("FileMeta", Context.MODE_PRIVATE)
                 .getString(path, "");
-        return !localSha.equals(remoteSha); // 如果 SHA 不一致，说明云端更新了
+        if (!localSha.equals(remoteSha)) return true; // 如果 SHA 不一致，说明云端更新了
+        if (!path.endsWith(".txt")) return false;
+
+        // 题库：校验内容后迁移到存储中，校验不通过则重新下载
+        try {
+            if (!remoteSha.equalsIgnoreCase(ResumableDownloader.gitBlobSha1(file))) return true;
+            blobStore.commit(path, remoteSha, file);
+            removeLegacyFileMeta(path);
+            return false;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return true;
+        }
     }
 
     public void downloadFileContent(String filePath, GameModeSettings settings, FileDownloadCallback callback) {
+        downloadFileContent(filePath, null, settings, callback);
+    }
+
+    // sha 为远程目录树中的 blob SHA，用于下载完成后的校验 (可为 null，此时只校验大小)
+    public void downloadFileContent(String filePath, String sha, GameModeSettings settings, FileDownloadCallback callback) {
         new Thread(() -> {
             try {
-                String encodedPath = filePath.replace(" ", "%20");
-                String url = GITHUB_RAW_BASE + encodedPath;
-
-                String content = downloadStringWithProgress(url, callback);
-                if (content == null) throw new Exception("文件内容下载失败");
-
-                // --- 新增：保存到本地 ---
-                saveFileToInternalStorage(filePath, content);
-                // -----------------------
+                // 断点续传下载到 .part 文件，校验通过后才放入存储
+                storeDownloadedFile(filePath, sha, callback, null);
 
-                List<Problem> problems = parseContentToProblems(content, filePath, settings);
+                ProblemFilterIndex index = loadProblemIndex(filePath);
+                putCachedIndex(index, new ArrayList<>(), null);
+                List<Problem> problems = filterIndex(index, settings);
                 if (callback != null) callback.onSuccess(problems, filePath);
             } catch (Exception e) {
                 if (callback != null) callback.onFail(e.getMessage());
@@ -130,46 +262,38 @@ public class ProblemRepository {
         }).start();
     }
 
-    private void saveFileToInternalStorage(String filePath, String content) {
-        try {
-            File file = new File(context.getFilesDir(), filePath);
-            // 如果包含文件夹路径，先创建父目录
-            File parent = file.getParentFile();
-            if (parent != null && !parent.exists()) parent.mkdirs();
-
-            java.io.FileWriter writer = new java.io.FileWriter(file);
-            writer.write(content);
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     // 1. 递归获取本地文件 (支持子文件夹)
     // 完整替换：fetchLocalFileTree
     public void fetchLocalFileTree(String rootDir, MenuDataCallback callback) {
         new Thread(() -> {
             List<RemoteFile> result = new ArrayList<>();
             try {
-                // 1. 扫描手机内部存储空间
-                File targetDir = new File(context.getFilesDir(), rootDir);
+                // 1. 本地文件 (下载的题库与文档) 直接取自目录索引，不再递归扫描 filesDir
                 String prefix = rootDir.endsWith("/") ? rootDir : rootDir + "/";
-                if (targetDir.exists()) {
-                    scanLocalDirectory(targetDir, prefix, result);
+                ensureLocalCatalog();
+                Set<String> seen = new HashSet<>();
+                for (LocalCatalog.Entry e : localCatalog.list(prefix)) {
+                    seen.add(e.path);
+                    result.add(new RemoteFile(e.path, e.path.substring(e.path.lastIndexOf('/') + 1), e.sha, e.size));
+                }
+                // 顺便算好各文件夹的汇总，资源管理器的列表行直接读取
+                Map<String, String> summaries = new HashMap<>(localFolderSummaries);
+                summaries.keySet().removeIf(folder -> folder.startsWith(prefix));
+                for (Map.Entry<String, LocalCatalog.Summary> entry : localCatalog.summarizeFolders(prefix).entrySet()) {
+                    summaries.put(entry.getKey(), entry.getValue().files + " 项 · " + entry.getValue().lines + " 行");
                 }
+                localFolderSummaries = summaries;
 
                 // 2. 扫描 APK 内置的 Assets 目录 (同步搜索 rootDir)
                 String assetPath = rootDir.endsWith("/") ? rootDir.substring(0, rootDir.length() - 1) : rootDir;
-                String[] assetFiles = context.getAssets().list(assetPath);
+                String[] assetFiles = listAssets(assetPath);
                 if (assetFiles != null) {
                     for (String fileName : assetFiles) {
                         // 匹配题库 (.txt) 或 文档 (.md)
                         if (fileName.endsWith(".txt") || fileName.endsWith(".md")) {
                             String path = prefix + fileName;
                             // 如果下载目录中已经有了（用户更新版），则不再重复添加内置版
-                            boolean exists = false;
-                            for (RemoteFile rf : result) if (rf.path.equals(path)) exists = true;
-                            if (!exists) result.add(new RemoteFile(path, fileName, ""));
+                            if (seen.add(path)) result.add(new RemoteFile(path, fileName, ""));
                         }
                     }
                 }
@@ -181,7 +305,15 @@ public class ProblemRepository {
         }).start();
     }
 
-    // 辅助方法：递归遍历文件夹
+    private String[] listAssets(String assetPath) throws IOException {
+        synchronized (assetListCache) {
+            if (!assetListCache.containsKey(assetPath)) {
+                assetListCache.put(assetPath, context.getAssets().list(assetPath));
+            }
+            return assetListCache.get(assetPath);
+        }
+    }
+
     private void scanLocalDirectory(File dir, String prefix, List<RemoteFile> result) {
         File[] files = dir.listFiles();
         if (files == null) return;
@@ -199,35 +331,9 @@ public class ProblemRepository {
     }
 
 
-    private List<Problem> parseContentToProblems(String content, String fileName, GameModeSettings settings) {
-        List<Problem> list = new ArrayList<>();
-        String[] lines = content.split("\n");
-        for (String line : lines) {
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("#")) continue;
-
-            // 调整：放宽 hasMod 和 hasBase 的识别，避免因末尾空格或格式微调导致 matches 失败
-            boolean hasMod = line.contains("mod");
-            boolean hasBase = line.contains("base");
-
-            if (!isProblemValid(line, fileName, settings)) continue;
-
-            Problem p = parseLineToProblem(line);
-            if (p != null) list.add(p);
-        }
-        return list;
-    }
-
     // ==========================================
     //  网络下载辅助
     // ==========================================
-    private String downloadString(String urlString) {
-        try {
-            return downloadStringWithProgress(urlString, null);
-        } catch (IOException e) {
-            return null;
-        }
-    }
     private String downloadStringWithProgress(String urlString, FileDownloadCallback callback) throws IOException {
         HttpURLConnection connection = null;
         InputStream stream = null;
@@ -237,6 +343,7 @@ public class ProblemRepository {
             URL url = new URL(urlString);
             connection = (HttpURLConnection) url.openConnection();
             connection.setConnectTimeout(5000);
+            connection.setReadTimeout(15000);
             connection.connect();
 
             // 核心修复：在这里获取长度，此时 connection 才被有效创建
@@ -286,179 +393,342 @@ public class ProblemRepository {
     //  Part 2: 本地逻辑与解析逻辑
     // ==========================================
 
+    // fileName 以 "/" 结尾时表示合并加载该文件夹下的所有题库：
+    // 分片文件夹按需逐个分片读取 (见 FolderProblemSet)，其它文件夹整体去重合并 (见 loadFolderIndex)
     public List<Problem> loadProblemSet(String fileName, GameModeSettings settings) throws Exception {
-        List<Problem> problems = new ArrayList<>();
-        InputStream is = getFileInputStream(fileName);
-        if (is == null) throw new Exception("File not found: " + fileName);
-
-        BufferedReader br = new BufferedReader(new InputStreamReader(is));
-        String line;
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("#")) continue;
+        ProblemFilterIndex index = getCachedIndex(fileName);
+        if (index == null) {
+            if (fileName.endsWith("/")) {
+                List<String> files = listLocalProblemFiles(fileName);
+                if (FolderProblemSet.isSplitSet(files)) {
+                    return openFolderProblemSet(fileName, files, new ArrayList<>(), settings);
+                }
+                HandTable hands = new HandTable();
+                index = loadFolderIndex(fileName, files, hands);
+                putCachedIndex(index, files, hands);
+            } else {
+                index = loadProblemIndex(fileName);
+                putCachedIndex(index, new ArrayList<>(), null);
+            }
+        }
+        return filterIndex(index, settings);
+    }
 
-            boolean hasMod = line.contains("mod");
-            boolean hasBase = line.contains("base");
+    /**
+     * 把分片文件夹作为一个题库打开 (在后台线程调用)。
+     * remoteFiles 为该文件夹在远程目录树中的文件，其中尚未下载的分片在玩到时才下载；
+     * 本地一个分片都没有时先下载第一个，以便立即开始。
+     */
+    public FolderProblemSet openFolderProblemSet(String folder, List<RemoteFile> remoteFiles,
+                                                 GameModeSettings settings) throws Exception {
+        return openFolderProblemSet(folder, listLocalProblemFiles(folder), remoteFiles, settings);
+    }
 
-            if (!isProblemValid(line, fileName, settings)) continue;
-            Problem p = parseLineToProblem(line);
-            if (p != null) problems.add(p);
+    private FolderProblemSet openFolderProblemSet(String folder, List<String> localParts, List<RemoteFile> remoteFiles,
+                                                  GameModeSettings settings) throws Exception {
+        Map<String, String> remoteShas = new HashMap<>();
+        List<String> remoteParts = new ArrayList<>();
+        for (RemoteFile rf : remoteFiles) {
+            if (localParts.contains(rf.path)) continue;
+            remoteParts.add(rf.path);
+            remoteShas.put(rf.path, rf.sha);
+        }
+        FolderProblemSet set = new FolderProblemSet(folder, localParts, remoteParts, new FolderPartSource(remoteShas), settings);
+        while (set.size() == 0 && set.fetchNextPart()) {
+            // 继续下载，直到有可玩的题目
+        }
+        if (set.size() == 0) throw new Exception("文件夹中没有题库: " + folder);
+        // 先读入一个分片，出第一题时不必在主线程等待
+        set.preload(new Random().nextLong());
+        synchronized (this) {
+            cachedFolderSet = set;
         }
-        br.close();
-        return problems;
+        return set;
     }
 
-    private boolean isProblemValid(String line, String fileName, GameModeSettings settings) {
-        String[] parts = line.split("->");
-        if (parts.length < 2) return false;
-        String solution = parts[1].trim();
-        String solLower = solution.toLowerCase();
-        String fileLower = fileName.toLowerCase();
-
-        // ==========================================
-        // 基础全局规则 (对所有格式生效)
-        // ==========================================
-        // 1. 必须含有除法规则
-        if (settings.mustHaveDivision && !solution.contains(" / ")) return false;
-
-        // 2. 避免纯加减规则
-        if (settings.avoidPureAddSub && !solution.contains(" * ") && !solution.contains(" / ")) return false;
-
-        // 3. [核心修改] 除法风暴规则 (提升为全局规则)
-        if (settings.requireDivisionStorm) {
-            // 计算题目中的数字个数 n
-            String numbersListString = parts[0];
-            int n = 1;
-            for (int i = 0; i < numbersListString.length(); i++) {
-                if (numbersListString.charAt(i) == ',') n++;
-            }
+    // 分片的行数、下载与按行解析
+    private class FolderPartSource implements FolderProblemSet.PartSource {
+        private final Map<String, String> remoteShas;
 
-            // 统计解法中除号 " / " 出现的次数
-            int divisionCount = 0;
-            int lastIndex = 0;
-            String op = " / ";
-            while ((lastIndex = solution.indexOf(op, lastIndex)) != -1) {
-                divisionCount++;
-                lastIndex += op.length();
-            }
+        FolderPartSource(Map<String, String> remoteShas) {
+            this.remoteShas = remoteShas;
+        }
 
-            // 判定：如果除号数量少于 n - 2，则不合格
-            if (divisionCount < n - 2) return false;
-        }
-
-        // ==========================================
-        // 高级过滤保护：判断是否为特殊模式 (进制、取模、复数、分数题库)
-        // ==========================================
-        boolean isSpecialMode = solLower.contains("mod") || solLower.contains("base") || solLower.contains("i")
-                || fileLower.contains("base") || fileLower.contains("进制")
-                || fileLower.contains("mod") || fileLower.contains("模")
-                || fileLower.contains("分数") || fileLower.contains("fraction");
-
-        if (isSpecialMode) return true;
-
-        // ==========================================
-        // 4. 只有在非特殊模式下，才执行以下 10 进制特有过滤
-        // ==========================================
-        if (settings.avoidTrivialFinalMultiply) {
-            int mainOpIdx = findMainOperatorIndex(solution);
-            if (mainOpIdx != -1 && solution.charAt(mainOpIdx) == '*') {
-                String left = solution.substring(0, mainOpIdx).trim();
-                String right = solution.substring(mainOpIdx + 1).trim();
-                while (left.startsWith("(") && left.endsWith(")")) left = left.substring(1, left.length() - 1).trim();
-                while (right.startsWith("(") && right.endsWith(")")) right = right.substring(1, right.length() - 1).trim();
-
-                String[] trivialNumbers = {"1", "2", "3", "4", "6", "8", "12", "24"};
-                for (String num : trivialNumbers) {
-                    if (left.equals(num) || right.equals(num)) return false;
+        @Override
+        public int localLineCount(String path) {
+            ensureLocalCatalog();
+            LocalCatalog.Entry e = localCatalog.get(path);
+            if (e != null) return e.lineCount;
+            // APK 内置的分片不在目录索引中，数一遍
+            try {
+                InputStream is = getFileInputStream(path);
+                if (is == null) return -1;
+                try {
+                    return LocalCatalog.countLines(is);
+                } finally {
+                    is.close();
                 }
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return -1;
             }
         }
 
-        return true;
+        @Override
+        public int fetch(String path) throws Exception {
+            storeDownloadedFile(path, remoteShas.get(path), null, null);
+            return getLocalFileLineCount(path);
+        }
+
+        @Override
+        public Problem[] load(String path, GameModeSettings settings) throws Exception {
+            ParallelProblemLoader.LineMapper mapper = line -> mapFilteredLine(line, path, settings);
+            try (BlockCompressedFile blocks = blobStore.openBlocks(path)) {
+                if (blocks != null) return ParallelProblemLoader.loadLines(blocks, mapper);
+            }
+            InputStream is = getFileInputStream(path);
+            if (is == null) throw new IOException("分片不存在: " + path);
+            return ParallelProblemLoader.loadLines(is, mapper);
+        }
     }
 
+    // 解析一行并直接按设定过滤 (分片不建属性索引，修改设定后重新读取用到的分片)
+    private Problem mapFilteredLine(String line, String fileName, GameModeSettings settings) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) return null;
 
+        String[] parts = line.split("->");
+        if (parts.length < 2) return null;
 
+        // 先按特征过滤，被过滤掉的行不必构造 Problem
+        if (!ProblemFilterIndex.matches(SolutionAnalyzer.analyze(parts[0], parts[1].trim(), fileName), settings)) return null;
+        return parseLineToProblem(line);
+    }
 
-    public boolean expressionContainsFractions(String expression) {
-        return expressionContainsFractions(expression, 10);
+    /**
+     * 合并加载多个题库：各文件的手牌登记在 hands 中，同一手牌 (例如 小于十三 与 小于二十 的重叠部分)
+     * 只解析一次并只出现一次，保留最先出现的那一行；hands 同时记下每种手牌出现在哪些文件中。
+     * 各题的过滤属性仍按其所在文件计算。
+     */
+    private ProblemFilterIndex loadFolderIndex(String folder, List<String> files, HandTable hands) throws Exception {
+        if (files.isEmpty()) throw new Exception("文件夹中没有题库: " + folder);
+        ProblemFilterIndex merged = new ProblemFilterIndex(folder);
+        ParallelProblemLoader.LineParser parser = (line, target) -> indexSharedLine(line, target, hands);
+        for (String file : files) {
+            ProblemFilterIndex part;
+            try (BlockCompressedFile blocks = blobStore.openBlocks(file)) {
+                if (blocks != null) {
+                    part = ParallelProblemLoader.load(blocks, file, parser);
+                } else {
+                    InputStream is = getFileInputStream(file);
+                    if (is == null) continue;
+                    part = ParallelProblemLoader.load(is, file, parser);
+                }
+            }
+            // 本文件中新出现的手牌在这里登记 (文件内的重复也在这里去掉)；按列复制，不构造 Problem
+            for (int i = 0; i < part.size(); i++) {
+                if (hands.add(HandTable.handKey(part.getLine(i)), file)) merged.add(part, i);
+            }
+        }
+        merged.trimToSize();
+        return merged;
     }
 
-    public boolean expressionContainsFractions(String expression, int radix) {
-        if (expression.contains("mod")) return false;
-        if (expression.contains("base")) return false;
-        try { evaluateAndCheck(expression, radix); }
-        catch (FractionalOperationFoundException e) { return true; }
-        catch (Exception e) { return false; }
-        return false;
+    // 本地的所有题库文件 (目录索引中 folder 下的 .txt，含子文件夹；以及 APK 内置的同名目录)
+    private List<String> listLocalProblemFiles(String folder) throws IOException {
+        ensureLocalCatalog();
+        List<String> files = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (LocalCatalog.Entry e : localCatalog.list(folder)) {
+            if (e.path.endsWith(".txt") && seen.add(e.path)) files.add(e.path);
+        }
+        String[] assetFiles = listAssets(folder.substring(0, folder.length() - 1));
+        if (assetFiles != null) {
+            for (String fileName : assetFiles) {
+                if (fileName.endsWith(".txt") && seen.add(folder + fileName)) files.add(folder + fileName);
+            }
+        }
+        return files;
     }
 
-    private static class FractionalOperationFoundException extends RuntimeException {}
+    // ==========================================
+    //  按数字搜题 (跨题库倒排索引)
+    // ==========================================
 
-    private Fraction evaluateAndCheck(String subExpression) throws FractionalOperationFoundException {
-        return evaluateAndCheck(subExpression, 10);
+    /**
+     * 在所有本地题库中查找包含给定数字的题目，命中的题目行读出后填入 Hit.problem。
+     * 索引过期 (题库有增删或更新) 时先在当前线程重建，首次查询会慢一些。
+     */
+    public void searchProblems(List<Fraction> operands, Integer modulus, Integer radix, int limit,
+                               SearchCallback callback) {
+        new Thread(() -> {
+            try {
+                List<ProblemSearchIndex.Hit> hits = getSearchIndex().search(operands, modulus, radix, limit);
+                resolveHits(hits);
+                callback.onSuccess(hits);
+            } catch (Exception e) {
+                e.printStackTrace();
+                callback.onFail("搜索失败: " + e.getMessage());
+            }
+        }).start();
     }
 
-    private Fraction evaluateAndCheck(String subExpression, int radix) throws FractionalOperationFoundException {
-        subExpression = subExpression.trim();
-        if (subExpression.matches(".*mod\\s*\\d+$")) subExpression = subExpression.replaceAll("mod\\s*\\d+$", "").trim();
-
-        if (subExpression.startsWith("(") && subExpression.endsWith(")")) {
-            int balance = 0;
-            boolean isPaired = true;
-            for (int i = 0; i < subExpression.length() - 1; i++) {
-                if (subExpression.charAt(i) == '(') balance++;
-                else if (subExpression.charAt(i) == ')') balance--;
-                if (balance == 0) { isPaired = false; break; }
+    // 题库同步完成后调用：提前在后台重建索引，之后的查询无需等待
+    public void prepareSearchIndex() {
+        new Thread(() -> {
+            try {
+                getSearchIndex();
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-            if (isPaired) return evaluateAndCheck(subExpression.substring(1, subExpression.length() - 1), radix);
-        }
-
-        int balance = 0;
-        for (int i = subExpression.length() - 1; i >= 0; i--) {
-            char c = subExpression.charAt(i);
-            if (c == ')') balance++; else if (c == '(') balance--;
-            if (balance == 0 && (c == '+' || c == '-') && i > 0) {
-                String leftStr = subExpression.substring(0, i).trim();
-                if (leftStr.isEmpty() || "+-*/(".indexOf(leftStr.charAt(leftStr.length() - 1)) != -1) continue;
-                Fraction l = evaluateAndCheck(leftStr, radix);
-                Fraction r = evaluateAndCheck(subExpression.substring(i + 1).trim(), radix);
-                if (l.toString().contains("/") || r.toString().contains("/")) throw new FractionalOperationFoundException();
-                return c == '+' ? l.add(r) : l.sub(r);
+        }).start();
+    }
+
+    private ProblemSearchIndex getSearchIndex() throws IOException {
+        synchronized (searchIndexLock) {
+            List<ProblemSearchIndex.Source> sources = listSearchSources();
+            if (searchIndex == null) searchIndex = ProblemSearchIndex.load(searchIndexFile);
+            if (searchIndex == null || !searchIndex.isUpToDate(sources)) {
+                searchIndex = ProblemSearchIndex.build(searchIndexFile, sources,
+                        this::getFileInputStream, this::parseLineToProblem);
             }
+            return searchIndex;
         }
-        balance = 0;
-        for (int i = subExpression.length() - 1; i >= 0; i--) {
-            char c = subExpression.charAt(i);
-            if (c == ')') balance++; else if (c == '(') balance--;
-            if (balance == 0 && (c == '*' || c == '/') && i > 0) {
-                Fraction l = evaluateAndCheck(subExpression.substring(0, i).trim(), radix);
-                Fraction r = evaluateAndCheck(subExpression.substring(i + 1).trim(), radix);
-                if (c == '*') return l.multiply(r);
-                else {
-                    if (r.toString().equals("0")) throw new ArithmeticException("Div 0");
-                    return l.divide(r);
+    }
+
+    // 参与搜索的题库：本地 data/ 下的所有题库，以 SHA 与大小为版本标记 (APK 内置的题库不会变化)
+    private List<ProblemSearchIndex.Source> listSearchSources() throws IOException {
+        List<ProblemSearchIndex.Source> sources = new ArrayList<>();
+        for (String path : listLocalProblemFiles("data/")) {
+            LocalCatalog.Entry e = localCatalog.get(path);
+            sources.add(new ProblemSearchIndex.Source(path, e != null ? e.sha + ":" + e.size : "asset"));
+        }
+        return sources;
+    }
+
+    // 读出命中的题目：压缩的题库只解压所在的块，其余题库顺序读一遍 (同一文件的命中按行号排好序)
+    private void resolveHits(List<ProblemSearchIndex.Hit> hits) throws IOException {
+        int i = 0;
+        while (i < hits.size()) {
+            String path = hits.get(i).path;
+            int j = i;
+            while (j < hits.size() && hits.get(j).path.equals(path)) j++;
+            List<ProblemSearchIndex.Hit> group = hits.subList(i, j);
+            i = j;
+
+            try (BlockCompressedFile blocks = blobStore.openBlocks(path)) {
+                if (blocks != null) {
+                    for (ProblemSearchIndex.Hit h : group) h.problem = parseHitLine(blocks.readLine(h.line));
+                    continue;
                 }
             }
+            InputStream is = getFileInputStream(path);
+            if (is == null) continue;
+            try {
+                String[] lines = ProblemSearchIndex.readLines(is, group);
+                for (int k = 0; k < group.size(); k++) group.get(k).problem = parseHitLine(lines[k]);
+            } finally {
+                is.close();
+            }
         }
-        return parseTokenToFraction(subExpression, radix);
     }
 
-    private int findMainOperatorIndex(String expression) {
-        int balance = 0;
-        String expr = expression.trim();
-        while (expr.length() > 2 && expr.startsWith("(") && expr.endsWith(")")) expr = expr.substring(1, expr.length() - 1).trim();
-        for (int i = expr.length() - 1; i >= 0; i--) {
-            char c = expr.charAt(i);
-            if (c == ')') balance++; else if (c == '(') balance--;
-            else if ((c == '+' || c == '-') && balance == 0) return expression.lastIndexOf(expr) + i;
+    private Problem parseHitLine(String line) {
+        return line != null ? parseLineToProblem(line.trim()) : null;
+    }
+
+    // 当前合并加载的文件夹中包含该题手牌的各个题库；当前题库不是合并加载的 (或没有该手牌) 时返回空列表
+    public List<String> getFilesContaining(Problem p) {
+        HandTable hands;
+        synchronized (this) {
+            hands = cachedHands;
+        }
+        return hands != null ? hands.getFilesContaining(p) : new ArrayList<>();
+    }
+
+    // 设定改变时调用：直接用已缓存的属性索引重新过滤，不重读文件。未缓存时返回 null
+    public List<Problem> refilterCachedProblemSet(String fileName, GameModeSettings settings) {
+        synchronized (this) {
+            if (cachedFolderSet != null && cachedFolderSet.getFolder().equals(fileName)) {
+                cachedFolderSet = cachedFolderSet.withSettings(settings);
+                return cachedFolderSet;
+            }
         }
-        for (int i = expr.length() - 1; i >= 0; i--) {
-            char c = expr.charAt(i);
-            if (c == ')') balance++; else if (c == '(') balance--;
-            else if ((c == '*' || c == '/') && balance == 0) return expression.lastIndexOf(expr) + i;
+        ProblemFilterIndex index = getCachedIndex(fileName);
+        if (index == null) return null;
+        return filterIndex(index, settings);
+    }
+
+    private ProblemFilterIndex loadProblemIndex(String fileName) throws Exception {
+        ProblemFilterIndex index = null;
+        // 存储中的压缩题库：各块可独立解压，解压与解析一起并行
+        try (BlockCompressedFile blocks = blobStore.openBlocks(fileName)) {
+            if (blocks != null) index = ParallelProblemLoader.load(blocks, fileName, this::indexLine);
+        }
+
+        if (index == null) {
+            InputStream is = getFileInputStream(fileName);
+            if (is == null) throw new Exception("File not found: " + fileName);
+
+            // 大文件按换行切块，在多个核心上并行解析
+            index = ParallelProblemLoader.load(is, fileName, this::indexLine);
+        }
+        index.trimToSize(); // 缓存期间一直占用内存，去掉增长时多留的容量
+        return index;
+    }
+
+    // 解析一行题目并计算其过滤属性，写入索引 (无效行直接跳过)
+    // 注意：会被 ParallelProblemLoader 的多个线程同时调用 (各自写入不同的索引)，不能依赖共享状态
+    private void indexLine(String line, ProblemFilterIndex index) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) return;
+
+        String[] parts = line.split("->");
+        if (parts.length < 2) return;
+
+        Problem p = parseLineToProblem(line);
+        if (p != null) index.add(p, SolutionAnalyzer.analyze(parts[0], parts[1].trim(), index.getFileName()));
+    }
+
+    // 合并加载时使用：前面的文件已合并过的手牌只在去重表中登记所在文件，不再解析
+    private void indexSharedLine(String line, ProblemFilterIndex index, HandTable hands) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) return;
+
+        String[] parts = trimmed.split("->");
+        if (parts.length < 2) return;
+
+        String fileName = index.getFileName();
+        String solution = parts[1].trim();
+        if (hands.addIfPresent(HandTable.handKey(parts[0], solution), fileName)) return;
+        Problem p = parseLineToProblem(trimmed);
+        if (p != null) index.add(p, SolutionAnalyzer.analyze(parts[0], solution, fileName));
+    }
+
+    private synchronized ProblemFilterIndex getCachedIndex(String fileName) {
+        if (cachedIndex != null && cachedIndex.getFileName().equals(fileName)) return cachedIndex;
+        return null;
+    }
+
+    private synchronized void putCachedIndex(ProblemFilterIndex index, List<String> files, HandTable hands) {
+        cachedIndex = index;
+        cachedIndexFiles = files;
+        cachedHands = hands;
+    }
+
+    private synchronized void invalidateCachedIndex(String fileName) {
+        if (cachedIndex == null) return;
+        if (cachedIndex.getFileName().equals(fileName) || cachedIndexFiles.contains(fileName)) {
+            cachedIndex = null;
+            cachedIndexFiles = new ArrayList<>();
+            cachedHands = null;
+        }
+    }
+
+    private List<Problem> filterIndex(ProblemFilterIndex index, GameModeSettings settings) {
+        synchronized (index) {
+            return index.filter(settings);
         }
-        return -1;
     }
 
     private List<Integer> getIntegerComponents(String problemPart) {
@@ -482,6 +752,11 @@ public class ProblemRepository {
         return numbers;
     }
 
+    // 预编译的正则 (Pattern 线程安全，每行只需新建 Matcher)
+    private static final Pattern MOD_SUFFIX_PATTERN = Pattern.compile("mod\\s*(\\d+)$");
+    private static final Pattern BASE_SUFFIX_PATTERN = Pattern.compile("base\\s*(\\d+)$");
+    private static final Pattern NUMBER_LIST_PATTERN = Pattern.compile("\\['(.*?)'\\]");
+
     public Problem parseLineToProblem(String line) {
         try {
             String[] parts = line.split("->");
@@ -491,16 +766,13 @@ public class ProblemRepository {
             Integer modulus = null;
             Integer radix = null;
 
-            Pattern modPattern = Pattern.compile("mod\\s*(\\d+)$");
-            Matcher modMatcher = modPattern.matcher(solution);
+            Matcher modMatcher = MOD_SUFFIX_PATTERN.matcher(solution);
             if (modMatcher.find()) modulus = Integer.parseInt(modMatcher.group(1));
 
-            Pattern basePattern = Pattern.compile("base\\s*(\\d+)$");
-            Matcher baseMatcher = basePattern.matcher(solution);
+            Matcher baseMatcher = BASE_SUFFIX_PATTERN.matcher(solution);
             if (baseMatcher.find()) radix = Integer.parseInt(baseMatcher.group(1));
 
-            Pattern pattern = Pattern.compile("\\['(.*?)'\\]");
-            Matcher matcher = pattern.matcher(numberPart);
+            Matcher matcher = NUMBER_LIST_PATTERN.matcher(numberPart);
 
             if (matcher.find()) {
                 String numbersString = matcher.group(1);
@@ -517,7 +789,7 @@ public class ProblemRepository {
         return null;
     }
 
-    private Fraction parseTokenToFraction(String token, int radix) {
+    static Fraction parseTokenToFraction(String token, int radix) {
         token = token.replace("(", "").replace(")", "");
         if (token.contains("i")) {
             long realPart = 0; long imagPart = 0;
@@ -550,6 +822,7 @@ public class ProblemRepository {
     }
     // 1. 检查本地是否已存在该文件
     public boolean isFileDownloaded(String filePath) {
+        if (blobStore.getFile(filePath) != null) return true;
         File file = new File(context.getFilesDir(), filePath);
         return file.exists() && file.length() > 0;
     }
@@ -557,16 +830,59 @@ public class ProblemRepository {
     // 2. 同步下载方法 (供批量下载线程调用)
     public void downloadFileSync(String path, String sha) {
         try {
-            String content = downloadString(GITHUB_RAW_BASE + path.replace(" ", "%20"));
-            if (content != null) {
-                saveFileToInternalStorage(path, content);
-                saveLocalFileSHA(path, sha); // 保存版本标记
+            downloadFileSync(path, sha, null);
+        } catch (IOException e) { e.printStackTrace(); }
+    }
+
+    // 带连接登记的版本：失败时抛出异常 (由 ProblemSyncEngine 决定是否重试)
+    public void downloadFileSync(String path, String sha, ConnectionListener listener) throws IOException {
+        // 中断后再次调用会从 .part 文件续传；大小与 SHA 校验通过后才放入存储
+        storeDownloadedFile(path, sha, null, listener);
+    }
+
+    private void storeDownloadedFile(String path, String sha, FileDownloadCallback callback,
+                                     ConnectionListener listener) throws IOException {
+        File part = blobStore.partFileFor(path);
+        String actualSha = ResumableDownloader.download(getRawUrl(path), part, sha, callback, listener);
+        // 存入时会被压缩，大小与行数按原文在此记录
+        long size = part.length();
+        int lines = LocalCatalog.countLines(part);
+        blobStore.commit(path, actualSha, part);
+        invalidateCachedIndex(path); // 文件内容变了，旧的属性索引作废
+        removeLegacyFileMeta(path);
+        // 索引还没加载时先加载 (或全量扫描)，否则这次写入会被丢掉
+        ensureLocalCatalog();
+        localCatalog.put(new LocalCatalog.Entry(path, actualSha, size, lines));
+    }
+
+    // 删除旧方式保存的文件及其 FileMeta 记录 (已由 BlobStore 接管)
+    private void removeLegacyFileMeta(String path) {
+        File legacy = new File(context.getFilesDir(), path);
+        if (legacy.exists()) legacy.delete();
+        context.getSharedPreferences("FileMeta", Context.MODE_PRIVATE).edit().remove(path).apply();
+    }
+
+    // 逐段编码路径 (中文文件名、空格等)，不同 HTTP 实现对未编码的 URL 处理不一致
+    private String getRawUrl(String path) {
+        StringBuilder sb = new StringBuilder(rawBase);
+        String[] segments = path.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) sb.append('/');
+            try {
+                sb.append(URLEncoder.encode(segments[i], "UTF-8").replace("+", "%20"));
+            } catch (UnsupportedEncodingException e) {
+                sb.append(segments[i].replace(" ", "%20"));
             }
-        } catch (Exception e) { e.printStackTrace(); }
+        }
+        return sb.toString();
     }
 
     private InputStream getFileInputStream(String fileName) throws IOException {
-        // 1. 先尝试从应用内部存储空间读取 (用户下载的)
+        // 0. 按内容寻址的存储 (同步/下载的题库)
+        InputStream stored = blobStore.openStream(fileName);
+        if (stored != null) return stored;
+
+        // 1. 再尝试从应用内部存储空间读取 (旧版本下载的)
         File file = new File(context.getFilesDir(), fileName);
         if (file.exists()) {
             return new FileInputStream(file);
@@ -582,37 +898,92 @@ public class ProblemRepository {
     }
 
     // 修改：增加 rootDir 和 extension 参数，使其支持扫描不同目录和后缀
-    // 完整替换：fetchRemoteFileTree
+    // 目录树缓存在磁盘上，每次只做一次条件请求 (未变化时服务器返回 304)
     public void fetchRemoteFileTree(String rootDir, String extension, MenuDataCallback callback) {
+        fetchRemoteFileTree(rootDir, extension, false, callback);
+    }
+
+    // staleWhileRevalidate 为 true 时：若有缓存，先立即用缓存回调 onSuccess，
+    // 再在后台验证；只有目录确实变化时才会用新结果再次回调 onSuccess (此时失败不再回调 onFail)
+    public void fetchRemoteFileTree(String rootDir, String extension, boolean staleWhileRevalidate,
+                                    MenuDataCallback callback) {
         new Thread(() -> {
+            boolean deliveredStale = false;
             try {
-                String jsonStr = downloadString(GITHUB_TREE_URL);
-
-                // --- 核心修复：防止网络错误导致的空指针崩溃 ---
-                if (jsonStr == null) {
-                    if (callback != null) callback.onFail("无法连接到 GitHub (请检查网络)");
-                    return;
-                }
-                // ----------------------------------------
-
-                JSONObject root = new JSONObject(jsonStr);
-                JSONArray tree = root.getJSONArray("tree");
-                List<RemoteFile> result = new ArrayList<>();
-                for (int i = 0; i < tree.length(); i++) {
-                    JSONObject item = tree.getJSONObject(i);
-                    String path = item.getString("path");
-                    // 根据传入的 rootDir 和 extension 精准过滤
-                    if (path.startsWith(rootDir) && path.endsWith(extension)) {
-                        String name = path.substring(path.lastIndexOf('/') + 1);
-                        String sha = item.getString("sha");
-                        result.add(new RemoteFile(path, name, sha));
+                if (staleWhileRevalidate) {
+                    File cached = treeCache.getCachedFile();
+                    if (cached != null) {
+                        if (callback != null) callback.onSuccess(parseRemoteTree(cached, rootDir, extension));
+                        deliveredStale = true;
                     }
                 }
-                if (callback != null) callback.onSuccess(result);
+
+                File treeFile;
+                if (deliveredStale) {
+                    if (!treeCache.revalidate()) return; // 304：缓存就是最新的
+                    treeFile = treeCache.getCachedFile();
+                } else {
+                    treeFile = treeCache.fetch();
+                }
+                if (callback != null) callback.onSuccess(parseRemoteTree(treeFile, rootDir, extension));
+            } catch (IOException e) {
+                // --- 核心修复：防止网络错误导致的空指针崩溃 ---
+                if (!deliveredStale && callback != null) callback.onFail("无法连接到 GitHub (请检查网络)");
             } catch (Exception e) {
-                if (callback != null) callback.onFail("同步失败: " + e.getMessage());
+                if (!deliveredStale && callback != null) callback.onFail("同步失败: " + e.getMessage());
             }
         }).start();
     }
 
+    // 流式解析目录树 JSON：边读边过滤，只为匹配 rootDir 和 extension 的条目创建 RemoteFile，
+    // 不构建整棵 JSONObject，内存占用与目录树大小无关
+    private List<RemoteFile> parseRemoteTree(File treeFile, String rootDir, String extension) throws IOException {
+        List<RemoteFile> result = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new BufferedInputStream(new FileInputStream(treeFile)), "UTF-8"))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("tree")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    RemoteFile rf = readTreeEntry(reader, rootDir, extension);
+                    if (rf != null) result.add(rf);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        return result;
+    }
+
+    // 读取 tree 数组中的一个条目，不匹配时返回 null
+    private RemoteFile readTreeEntry(JsonReader reader, String rootDir, String extension) throws IOException {
+        String path = null, sha = null;
+        long size = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+            } else if (key.equals("path")) {
+                path = reader.nextString();
+            } else if (key.equals("sha")) {
+                sha = reader.nextString();
+            } else if (key.equals("size")) {
+                size = reader.nextLong();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // 根据传入的 rootDir 和 extension 精准过滤
+        if (path == null || sha == null || !path.startsWith(rootDir) || !path.endsWith(extension)) return null;
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return new RemoteFile(path, name, sha, size);
+    }
+
 }
@@ -0,0 +1,401 @@
+package com.example.hajimi24;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨题库的倒排索引：按题目中的数字 (以及模数、进制) 查找题目所在的 (文件, 行号)。
+ * 在后台对所有本地题库建立一次并保存到磁盘 (filesDir/search_index)，
+ * 查询时只读取涉及到的几个倒排表求交集，不需要解析任何题目文本。
+ *
+ * 词项：
+ *   "v<实部>,<虚部>,<分母>"    某个数字 (按数值，与书写进制无关)；同一数字第 k 次出现 (k≥2) 追加 "#k"
+ *   "m<模数>" / "b<进制>"
+ * 倒排表按 (文件, 行号) 升序，磁盘上用变长整数存差值。
+ */
+public class ProblemSearchIndex {
+
+    private static final int MAGIC = 0x484A5349; // "HJSI"
+    private static final int VERSION = 1;
+
+    // 一个待索引的题库：path 与版本标记 (SHA)，标记变化即需要重建
+    public static class Source {
+        public final String path;
+        public final String stamp;
+
+        public Source(String path, String stamp) {
+            this.path = path;
+            this.stamp = stamp != null ? stamp : "";
+        }
+    }
+
+    // 查询结果：题库路径与行号 (从 0 开始，与 BlockCompressedFile.readLine 一致)
+    public static class Hit {
+        public final String path;
+        public final int line;
+        public Problem problem; // 由 ProblemRepository 读取该行后填入
+
+        Hit(String path, int line) {
+            this.path = path;
+            this.line = line;
+        }
+    }
+
+    public interface SourceOpener {
+        InputStream open(String path) throws IOException;
+    }
+
+    public interface LineParser {
+        Problem parse(String line);
+    }
+
+    private static class Term {
+        final int count;
+        final long offset;
+        final int length;
+
+        Term(int count, long offset, int length) {
+            this.count = count;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File file;
+    private final List<Source> sources;
+    private final Map<String, Term> terms;
+    private final long postingsStart;
+
+    private ProblemSearchIndex(File file, List<Source> sources, Map<String, Term> terms, long postingsStart) {
+        this.file = file;
+        this.sources = sources;
+        this.terms = terms;
+        this.postingsStart = postingsStart;
+    }
+
+    // ==========================================
+    //  查询
+    // ==========================================
+
+    /**
+     * 查找同时包含所有给定数字 (重复的数字需出现相应次数)、且模数/进制符合的题目。
+     * @param modulus 为 null 时不限
+     * @param radix   为 null 时不限
+     * @param limit   最多返回多少条
+     */
+    public List<Hit> search(List<Fraction> operands, Integer modulus, Integer radix, int limit) throws IOException {
+        List<String> queryTerms = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+        for (Fraction f : operands) {
+            String key = valueKey(f);
+            Integer k = seen.get(key);
+            k = (k == null) ? 1 : k + 1;
+            seen.put(key, k);
+            queryTerms.add(k == 1 ? key : key + "#" + k);
+        }
+        if (modulus != null) queryTerms.add("m" + modulus);
+        if (radix != null) queryTerms.add("b" + radix);
+        if (queryTerms.isEmpty()) return new ArrayList<>();
+
+        // 从最短的倒排表开始求交集，中间结果只会越来越小
+        List<Term> lists = new ArrayList<>();
+        for (String t : queryTerms) {
+            Term term = terms.get(t);
+            if (term == null) return new ArrayList<>();
+            lists.add(term);
+        }
+        Collections.sort(lists, (a, b) -> Integer.compare(a.count, b.count));
+
+        long[] result = readPostings(lists.get(0));
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            size = intersect(result, size, readPostings(lists.get(i)));
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < size && hits.size() < limit; i++) {
+            hits.add(new Hit(sources.get((int) (result[i] >>> 32)).path, (int) result[i]));
+        }
+        return hits;
+    }
+
+    // 索引建立时的题库集合是否与当前一致
+    public boolean isUpToDate(List<Source> current) {
+        if (current.size() != sources.size()) return false;
+        Map<String, String> stamps = new HashMap<>();
+        for (Source s : sources) stamps.put(s.path, s.stamp);
+        for (Source s : current) {
+            if (!s.stamp.equals(stamps.get(s.path))) return false;
+        }
+        return true;
+    }
+
+    // 就地求交集：a 的前 size 项与 b 的交集写回 a，返回新的长度
+    private static int intersect(long[] a, int size, long[] b) {
+        int i = 0, j = 0, n = 0;
+        while (i < size && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                a[n++] = a[i++];
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private long[] readPostings(Term term) throws IOException {
+        byte[] data = new byte[term.length];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(postingsStart + term.offset);
+            raf.readFully(data);
+        }
+        long[] postings = new long[term.count];
+        int pos = 0;
+        long fileIdx = -1, line = 0; // 第一项的文件号差值为 fileIdx + 1
+        for (int i = 0; i < term.count; i++) {
+            // 每项为 (文件号差值, 行号)：同一文件内行号存差值，换文件时存绝对值
+            long fileDelta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                fileDelta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            long lineValue = 0;
+            shift = 0;
+            do {
+                b = data[pos++];
+                lineValue |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (fileDelta != 0) {
+                fileIdx += fileDelta;
+                line = lineValue;
+            } else {
+                line += lineValue;
+            }
+            postings[i] = (fileIdx << 32) | line;
+        }
+        return postings;
+    }
+
+    // ==========================================
+    //  建立与读写
+    // ==========================================
+
+    public static ProblemSearchIndex load(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            int headerLength = in.readInt();
+            int sourceCount = in.readInt();
+            List<Source> sources = new ArrayList<>(sourceCount);
+            for (int i = 0; i < sourceCount; i++) sources.add(new Source(in.readUTF(), in.readUTF()));
+            int termCount = in.readInt();
+            Map<String, Term> terms = new HashMap<>(termCount * 2);
+            for (int i = 0; i < termCount; i++) {
+                String key = in.readUTF();
+                terms.put(key, new Term(in.readInt(), in.readLong(), in.readInt()));
+            }
+            return new ProblemSearchIndex(file, sources, terms, 12L + headerLength);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 依次读取各题库的每一行，建立倒排索引并写入 file (先写临时文件再重命名)。
+     * 行号按换行符计数，空行、注释与无法解析的行也占行号。
+     */
+    public static ProblemSearchIndex build(File file, List<Source> sources, SourceOpener opener,
+                                           LineParser parser) throws IOException {
+        Map<String, PostingWriter> postings = new HashMap<>();
+        List<Source> indexed = new ArrayList<>(sources); // 读取失败的题库也记入，避免每次都判定为过期
+        for (int fileIdx = 0; fileIdx < indexed.size(); fileIdx++) {
+            try (InputStream is = opener.open(indexed.get(fileIdx).path)) {
+                if (is == null) continue;
+                LineReader reader = new LineReader(is);
+                Map<String, Integer> counts = new HashMap<>();
+                String line;
+                for (int lineNo = 0; (line = reader.next()) != null; lineNo++) {
+                    String trimmed = line.trim();
+                    if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+                    Problem p = parser.parse(trimmed);
+                    if (p == null || p.numbers == null) continue;
+
+                    counts.clear();
+                    for (Fraction f : p.numbers) {
+                        String key = valueKey(f);
+                        Integer k = counts.get(key);
+                        k = (k == null) ? 1 : k + 1;
+                        counts.put(key, k);
+                        addPosting(postings, k == 1 ? key : key + "#" + k, fileIdx, lineNo);
+                    }
+                    if (p.modulus != null) addPosting(postings, "m" + p.modulus, fileIdx, lineNo);
+                    if (p.radix != null) addPosting(postings, "b" + p.radix, fileIdx, lineNo);
+                }
+            }
+        }
+
+        // 头部 (题库表与词典) 先写入内存以得到其长度，倒排表紧随其后
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(indexed.size());
+        for (Source s : indexed) {
+            header.writeUTF(s.path);
+            header.writeUTF(s.stamp);
+        }
+        String[] keys = postings.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        header.writeInt(keys.length);
+        Map<String, Term> terms = new HashMap<>(keys.length * 2);
+        long offset = 0;
+        for (String key : keys) {
+            PostingWriter w = postings.get(key);
+            Term term = new Term(w.count, offset, w.size);
+            terms.put(key, term);
+            header.writeUTF(key);
+            header.writeInt(term.count);
+            header.writeLong(term.offset);
+            header.writeInt(term.length);
+            offset += w.size;
+        }
+        header.flush();
+
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) dir.mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(headerBytes.size());
+            headerBytes.writeTo(out);
+            for (String key : keys) {
+                PostingWriter w = postings.get(key);
+                out.write(w.bytes, 0, w.size);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("无法写入索引: " + file.getName());
+        }
+        return new ProblemSearchIndex(file, indexed, terms, 12L + headerBytes.size());
+    }
+
+    // 顺序读出 hits (同一文件，行号升序) 对应的行，缺失的行为 null
+    static String[] readLines(InputStream is, List<Hit> hits) throws IOException {
+        String[] result = new String[hits.size()];
+        LineReader reader = new LineReader(is);
+        int lineNo = 0;
+        String line = reader.next();
+        for (int i = 0; i < hits.size() && line != null; i++) {
+            while (line != null && lineNo < hits.get(i).line) {
+                line = reader.next();
+                lineNo++;
+            }
+            if (line != null && lineNo == hits.get(i).line) result[i] = line;
+        }
+        return result;
+    }
+
+    private static void addPosting(Map<String, PostingWriter> postings, String key, int fileIdx, int line) {
+        PostingWriter w = postings.get(key);
+        if (w == null) {
+            w = new PostingWriter();
+            postings.put(key, w);
+        }
+        w.add(fileIdx, line);
+    }
+
+    // 数值相同的数字对应同一词项 (Fraction 构造时已约分)
+    private static String valueKey(Fraction f) {
+        return "v" + f.getRe() + "," + f.getIm() + "," + f.getDe();
+    }
+
+    // 单个词项的倒排表，边建立边编码为变长整数
+    private static class PostingWriter {
+        byte[] bytes = new byte[16];
+        int size = 0;
+        int count = 0;
+        int lastFile = 0;
+        int lastLine = 0;
+
+        void add(int fileIdx, int line) {
+            if (count > 0 && fileIdx == lastFile && line == lastLine) return; // 同一行只记一次
+            if (count == 0 || fileIdx != lastFile) {
+                // 第一个文件的文件号差值按 fileIdx + 1 记，保证换文件时差值不为 0
+                writeVarint(count == 0 ? fileIdx + 1 : fileIdx - lastFile);
+                writeVarint(line);
+            } else {
+                writeVarint(0);
+                writeVarint(line - lastLine);
+            }
+            lastFile = fileIdx;
+            lastLine = line;
+            count++;
+        }
+
+        private void writeVarint(int value) {
+            if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+
+    // 按 '\n' 切分的逐行读取 (与 BlockCompressedFile 的行号一致，不把单独的 '\r' 当作换行)
+    private static class LineReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[16 * 1024];
+        private int pos = 0, limit = 0;
+        private byte[] line = new byte[256];
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        String next() throws IOException {
+            int length = 0;
+            boolean any = false;
+            while (true) {
+                if (pos >= limit) {
+                    limit = in.read(buffer);
+                    pos = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return any ? new String(line, 0, length, StandardCharsets.UTF_8) : null;
+                    }
+                }
+                any = true;
+                byte b = buffer[pos++];
+                if (b == '\n') return new String(line, 0, length, StandardCharsets.UTF_8);
+                if (length == line.length) line = Arrays.copyOf(line, length * 2);
+                line[length++] = b;
+            }
+        }
+    }
+}
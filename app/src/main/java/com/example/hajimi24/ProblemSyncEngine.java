@@ -0,0 +1,168 @@
+package com.example.hajimi24;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量同步题库：只下载 SHA 与本地不一致的文件，使用少量并行连接，失败时指数退避重试。
+ * start() 返回 SyncHandle，cancel() 会中断等待中的任务并直接断开正在进行的连接；
+ * onFinished 在所有工作线程都退出后才回调，此后不会再有其它回调。
+ */
+public class ProblemSyncEngine {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 3;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_BACKOFF_MS = 500;
+
+    // 文件的比较与下载 (由 ProblemRepository 提供)
+    public interface FileSource {
+        boolean needsUpdate(String path, String sha);
+
+        // 失败时抛出异常；listener 用于登记连接以便取消
+        void download(String path, String sha, ProblemRepository.ConnectionListener listener) throws IOException;
+    }
+
+    // 回调均在工作线程中执行，更新 UI 需自行切回主线程
+    public interface SyncListener {
+        void onFileDone(ProblemRepository.RemoteFile file, int finished, int total);
+        void onFileFailed(ProblemRepository.RemoteFile file, String error);
+        void onFinished(int succeeded, int failed, boolean cancelled);
+    }
+
+    public static class SyncHandle {
+        private final ExecutorService executor;
+        private final Set<HttpURLConnection> activeConnections = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled = false;
+
+        SyncHandle(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        public void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            // 排队中的任务不再执行，正在退避等待的任务被中断
+            executor.shutdownNow();
+            // 阻塞在网络读写上的线程不响应中断，直接断开连接让其抛出异常
+            // (disconnect 可能涉及网络操作，不能在主线程执行)
+            new Thread(() -> {
+                for (HttpURLConnection c : activeConnections) c.disconnect();
+            }).start();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final FileSource source;
+    private final int maxConnections;
+    private final int maxRetries;
+    private final long backoffMs;
+
+    public ProblemSyncEngine(ProblemRepository repository) {
+        this(new FileSource() {
+            @Override
+            public boolean needsUpdate(String path, String sha) {
+                return repository.needsUpdate(path, sha);
+            }
+
+            @Override
+            public void download(String path, String sha, ProblemRepository.ConnectionListener listener) throws IOException {
+                repository.downloadFileSync(path, sha, listener);
+            }
+        }, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_RETRIES, DEFAULT_BACKOFF_MS);
+    }
+
+    public ProblemSyncEngine(FileSource source, int maxConnections, int maxRetries, long backoffMs) {
+        this.source = source;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffMs = backoffMs;
+    }
+
+    // 与本地 SHA 比较，得到需要下载的文件 (本地不存在或云端已更新)
+    public List<ProblemRepository.RemoteFile> diff(List<ProblemRepository.RemoteFile> remoteFiles) {
+        List<ProblemRepository.RemoteFile> changed = new ArrayList<>();
+        for (ProblemRepository.RemoteFile rf : remoteFiles) {
+            if (source.needsUpdate(rf.path, rf.sha)) changed.add(rf);
+        }
+        return changed;
+    }
+
+    public SyncHandle start(List<ProblemRepository.RemoteFile> files, SyncListener listener) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConnections, Math.max(1, files.size())));
+        SyncHandle handle = new SyncHandle(executor);
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int total = files.size();
+
+        for (ProblemRepository.RemoteFile rf : files) {
+            executor.execute(() -> {
+                try {
+                    downloadWithRetry(rf, handle);
+                    if (!handle.cancelled) listener.onFileDone(rf, finished.incrementAndGet(), total);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    if (handle.cancelled) return;
+                    failed.incrementAndGet();
+                    finished.incrementAndGet();
+                    listener.onFileFailed(rf, e.getMessage());
+                }
+            });
+        }
+        executor.shutdown();
+
+        // 等待全部任务结束后统一回调一次：取消时 shutdownNow 只是发出中断，
+        // 仍要等正在下载、写入的线程真正退出，调用方才能安全地清理或重新开始同步
+        new Thread(() -> {
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                handle.cancel();
+            }
+            int failCount = failed.get();
+            listener.onFinished(finished.get() - failCount, failCount, handle.cancelled);
+        }).start();
+        return handle;
+    }
+
+    private void downloadWithRetry(ProblemRepository.RemoteFile rf, SyncHandle handle)
+            throws IOException, InterruptedException {
+        ProblemRepository.ConnectionListener connections = new ProblemRepository.ConnectionListener() {
+            @Override
+            public void onOpened(HttpURLConnection connection) {
+                handle.activeConnections.add(connection);
+                if (handle.cancelled) connection.disconnect();
+            }
+            @Override
+            public void onClosed(HttpURLConnection connection) {
+                handle.activeConnections.remove(connection);
+            }
+        };
+
+        for (int attempt = 0; ; attempt++) {
+            if (handle.cancelled) throw new InterruptedException();
+            try {
+                source.download(rf.path, rf.sha, connections);
+                return;
+            } catch (FileNotFoundException e) {
+                throw e; // 404：云端没有该文件，重试无意义
+            } catch (IOException e) {
+                if (handle.cancelled || attempt >= maxRetries) throw e;
+                // 指数退避：500ms, 1s, 2s ...
+                Thread.sleep(backoffMs << attempt);
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.hajimi24;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 按列存储的题目表。
+ * 每道题不再是 Problem + List + 若干 Fraction/String/Integer 对象，而是几个基本类型数组中的一行：
+ * 题目原文 (UTF-8) 统一放在一个字节数组中，解法是原文中的一段 (记录其字符位置)，
+ * 各操作数的 实部/虚部/分母 依次放在一个 long 数组中，模数与进制为 int 列 (0 表示没有)。
+ *
+ * get(i) 按需构造该行的 Problem (只在出题、展示时用到，用完即可回收)，
+ * 因此同一行两次 get 得到的是内容相同的不同对象。
+ */
+public class ProblemTable extends AbstractList<Problem> implements RandomAccess {
+
+    private int size = 0;
+    // 第 i 行原文在 text 中的区间为 [textStart[i], textStart[i + 1])
+    private int[] textStart = new int[65];
+    private byte[] text = new byte[4096];
+    // 解法在原文 (String) 中的起始字符位置与长度
+    private int[] solutionStart = new int[64];
+    private int[] solutionLength = new int[64];
+    // 第 i 行的操作数为 operands 中第 operandStart[i] 到 operandStart[i + 1] 个 (每个占 3 个 long)
+    private int[] operandStart = new int[65];
+    private long[] operands = new long[64 * 3 * 4];
+    // 同一行的操作数都按该题的进制 (base 后缀，没有时为 10) 解析，因此每行只存一个
+    private int[] operandRadix = new int[64];
+    private int[] modulus = new int[64];
+    private int[] radix = new int[64];
+    // 解法不在原文中 (例如手工构造的题目) 时解法接在原文后面，这里记下原文长度 + 1 (原文为 null 时为 -1)；
+    // 0 表示整段都是原文。从文件读入的题目都用不到，按需分配
+    private int[] lineLengths = null;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Problem p) {
+        ensureRows(size + 1);
+        String line = p.line;
+        int sol = -1;
+        if (p.solution != null) {
+            // 解法通常是原文 "->" 右边的部分
+            int arrow = line != null ? line.indexOf("->") : -1;
+            sol = line != null ? line.indexOf(p.solution, Math.max(0, arrow)) : -1;
+            if (sol < 0) {
+                ensureLineLengths();
+                lineLengths[size] = line != null ? line.length() + 1 : -1;
+                sol = line != null ? line.length() : 0;
+                line = (line != null ? line : "") + p.solution;
+            }
+        } else if (line == null) {
+            ensureLineLengths();
+            lineLengths[size] = -1;
+            line = "";
+        }
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        ensureText(textStart[size] + bytes.length);
+        System.arraycopy(bytes, 0, text, textStart[size], bytes.length);
+        textStart[size + 1] = textStart[size] + bytes.length;
+        solutionStart[size] = sol;
+        solutionLength[size] = p.solution != null ? p.solution.length() : 0;
+
+        int count = p.numbers != null ? p.numbers.size() : 0;
+        ensureOperands(operandStart[size] + count);
+        int o = operandStart[size] * 3;
+        for (int k = 0; k < count; k++) {
+            Fraction f = p.numbers.get(k);
+            operands[o++] = f.getRe();
+            operands[o++] = f.getIm();
+            operands[o++] = f.getDe();
+        }
+        operandStart[size + 1] = operandStart[size] + count;
+        operandRadix[size] = count > 0 ? p.numbers.get(0).getRadix() : 10;
+        modulus[size] = p.modulus != null ? p.modulus : 0;
+        radix[size] = p.radix != null ? p.radix : 0;
+        size++;
+        return true;
+    }
+
+    @Override
+    public Problem get(int i) {
+        checkIndex(i);
+        String all = new String(text, textStart[i], textStart[i + 1] - textStart[i], StandardCharsets.UTF_8);
+        int lineLength = lineLengths != null ? lineLengths[i] : 0;
+        String line = lineLength == 0 ? all : lineLength > 0 ? all.substring(0, lineLength - 1) : null;
+        String solution = solutionStart[i] >= 0 ? all.substring(solutionStart[i], solutionStart[i] + solutionLength[i]) : null;
+        return new Problem(numbersOf(i), solution, line,
+                modulus[i] != 0 ? modulus[i] : null, radix[i] != 0 ? radix[i] : null);
+    }
+
+    // 以下按列读取单个字段，不构造 Problem
+
+    // 题目原文，没有时为 null
+    public String getLine(int i) {
+        checkIndex(i);
+        String all = new String(text, textStart[i], textStart[i + 1] - textStart[i], StandardCharsets.UTF_8);
+        int lineLength = lineLengths != null ? lineLengths[i] : 0;
+        return lineLength == 0 ? all : lineLength > 0 ? all.substring(0, lineLength - 1) : null;
+    }
+
+    public String getSolution(int i) {
+        checkIndex(i);
+        if (solutionStart[i] < 0) return null;
+        String all = new String(text, textStart[i], textStart[i + 1] - textStart[i], StandardCharsets.UTF_8);
+        return all.substring(solutionStart[i], solutionStart[i] + solutionLength[i]);
+    }
+
+    public int getNumberCount(int i) {
+        checkIndex(i);
+        return operandStart[i + 1] - operandStart[i];
+    }
+
+    // 模数，没有时为 0
+    public int getModulus(int i) {
+        checkIndex(i);
+        return modulus[i];
+    }
+
+    // 进制，没有时为 0
+    public int getRadix(int i) {
+        checkIndex(i);
+        return radix[i];
+    }
+
+    // 追加另一个表的第 i 行 (直接复制各列，不构造 Problem)
+    public void addRow(ProblemTable other, int i) {
+        other.checkIndex(i);
+        ensureRows(size + 1);
+        int textLen = other.textStart[i + 1] - other.textStart[i];
+        int opCount = other.operandStart[i + 1] - other.operandStart[i];
+        ensureText(textStart[size] + textLen);
+        ensureOperands(operandStart[size] + opCount);
+        System.arraycopy(other.text, other.textStart[i], text, textStart[size], textLen);
+        System.arraycopy(other.operands, other.operandStart[i] * 3, operands, operandStart[size] * 3, opCount * 3);
+        textStart[size + 1] = textStart[size] + textLen;
+        operandStart[size + 1] = operandStart[size] + opCount;
+        solutionStart[size] = other.solutionStart[i];
+        solutionLength[size] = other.solutionLength[i];
+        operandRadix[size] = other.operandRadix[i];
+        modulus[size] = other.modulus[i];
+        radix[size] = other.radix[i];
+        if (other.lineLengths != null && other.lineLengths[i] != 0) {
+            ensureLineLengths();
+            lineLengths[size] = other.lineLengths[i];
+        }
+        size++;
+    }
+
+    // 按原顺序追加另一个表的全部行 (并行解析后合并各块结果)
+    public void appendAll(ProblemTable other) {
+        int n = other.size;
+        if (n == 0) return;
+        ensureRows(size + n);
+        int textBase = textStart[size], opBase = operandStart[size];
+        int textLen = other.textStart[n], opCount = other.operandStart[n];
+        ensureText(textBase + textLen);
+        ensureOperands(opBase + opCount);
+        System.arraycopy(other.text, 0, text, textBase, textLen);
+        System.arraycopy(other.operands, 0, operands, opBase * 3, opCount * 3);
+        for (int k = 0; k < n; k++) {
+            textStart[size + k + 1] = textBase + other.textStart[k + 1];
+            operandStart[size + k + 1] = opBase + other.operandStart[k + 1];
+        }
+        System.arraycopy(other.solutionStart, 0, solutionStart, size, n);
+        System.arraycopy(other.solutionLength, 0, solutionLength, size, n);
+        System.arraycopy(other.operandRadix, 0, operandRadix, size, n);
+        System.arraycopy(other.modulus, 0, modulus, size, n);
+        System.arraycopy(other.radix, 0, radix, size, n);
+        if (other.lineLengths != null) {
+            ensureLineLengths();
+            System.arraycopy(other.lineLengths, 0, lineLengths, size, n);
+        }
+        size += n;
+    }
+
+    // 加载完成后释放各数组多余的容量
+    public void trimToSize() {
+        textStart = Arrays.copyOf(textStart, size + 1);
+        operandStart = Arrays.copyOf(operandStart, size + 1);
+        text = Arrays.copyOf(text, textStart[size]);
+        operands = Arrays.copyOf(operands, operandStart[size] * 3);
+        solutionStart = Arrays.copyOf(solutionStart, size);
+        solutionLength = Arrays.copyOf(solutionLength, size);
+        operandRadix = Arrays.copyOf(operandRadix, size);
+        modulus = Arrays.copyOf(modulus, size);
+        radix = Arrays.copyOf(radix, size);
+        if (lineLengths != null) lineLengths = Arrays.copyOf(lineLengths, size);
+    }
+
+    /** 只含指定行 (按给出的顺序) 的只读视图，每行只占一个 int */
+    public List<Problem> select(int[] rows, int count) {
+        int[] selected = Arrays.copyOf(rows, count);
+        return new View(selected);
+    }
+
+    private class View extends AbstractList<Problem> implements RandomAccess {
+        private final int[] rows;
+
+        View(int[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Problem get(int index) {
+            return ProblemTable.this.get(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+
+    private List<Fraction> numbersOf(int i) {
+        int from = operandStart[i], to = operandStart[i + 1];
+        List<Fraction> numbers = new ArrayList<>(to - from);
+        for (int k = from; k < to; k++) {
+            numbers.add(new Fraction(operands[k * 3], operands[k * 3 + 1], operands[k * 3 + 2], operandRadix[i]));
+        }
+        return numbers;
+    }
+
+    private void ensureLineLengths() {
+        if (lineLengths == null) lineLengths = new int[solutionStart.length];
+        else if (lineLengths.length < solutionStart.length) lineLengths = Arrays.copyOf(lineLengths, solutionStart.length);
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+
+    private void ensureRows(int rows) {
+        if (rows <= solutionStart.length) return;
+        int capacity = Math.max(rows, solutionStart.length * 2);
+        textStart = Arrays.copyOf(textStart, capacity + 1);
+        operandStart = Arrays.copyOf(operandStart, capacity + 1);
+        solutionStart = Arrays.copyOf(solutionStart, capacity);
+        solutionLength = Arrays.copyOf(solutionLength, capacity);
+        operandRadix = Arrays.copyOf(operandRadix, capacity);
+        modulus = Arrays.copyOf(modulus, capacity);
+        radix = Arrays.copyOf(radix, capacity);
+        if (lineLengths != null) lineLengths = Arrays.copyOf(lineLengths, capacity);
+    }
+
+    private void ensureText(int bytes) {
+        if (bytes > text.length) text = Arrays.copyOf(text, Math.max(bytes, text.length * 2));
+    }
+
+    private void ensureOperands(int count) {
+        if (count * 3 > operands.length) operands = Arrays.copyOf(operands, Math.max(count * 3, operands.length * 2));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.hajimi24;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 远程目录树 (GitHub trees API 返回的 JSON) 的磁盘缓存。
+ * 响应连同 ETag 一起保存，之后用 If-None-Match 重新验证，目录未变化时服务器只返回 304。
+ */
+public class RemoteTreeCache {
+
+    private final String treeUrl;
+    private final File jsonFile;
+    private final File etagFile;
+
+    public RemoteTreeCache(File dir, String treeUrl) {
+        this.treeUrl = treeUrl;
+        // 以 URL 区分缓存文件，切换到镜像服务器时不会读到别处的缓存
+        String key = Integer.toHexString(treeUrl.hashCode());
+        this.jsonFile = new File(dir, "tree_" + key + ".json");
+        this.etagFile = new File(dir, "tree_" + key + ".etag");
+    }
+
+    // 本地缓存的 JSON 文件，没有缓存时返回 null (由调用方流式解析，不整体读入内存)
+    public synchronized File getCachedFile() {
+        return jsonFile.exists() ? jsonFile : null;
+    }
+
+    // 获取最新的目录树文件：目录未变化 (304) 时直接返回缓存
+    public File fetch() throws IOException {
+        revalidate();
+        File cached = getCachedFile();
+        if (cached == null) throw new IOException("目录缓存读取失败");
+        return cached;
+    }
+
+    // 向服务器重新验证缓存：有变化时把响应直接写入缓存文件并返回 true；未变化 (304) 时返回 false
+    public boolean revalidate() throws IOException {
+        String etag;
+        synchronized (this) {
+            etag = (jsonFile.exists() && etagFile.exists()) ? readFile(etagFile).trim() : null;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(treeUrl).openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(15000);
+            if (etag != null && !etag.isEmpty()) connection.setRequestProperty("If-None-Match", etag);
+
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) return false;
+            if (code != HttpURLConnection.HTTP_OK) throw new IOException("HTTP " + code);
+
+            File dir = jsonFile.getParentFile();
+            if (dir != null && !dir.exists()) dir.mkdirs();
+            // 先写临时文件再重命名，避免中途失败留下半个 JSON
+            File tmp = File.createTempFile("tree_", ".tmp", dir);
+            long expected = connection.getContentLength();
+            try (InputStream is = connection.getInputStream();
+                 FileOutputStream fos = new FileOutputStream(tmp)) {
+                byte[] buffer = new byte[8192];
+                long received = 0;
+                int n;
+                while ((n = is.read(buffer)) != -1) {
+                    fos.write(buffer, 0, n);
+                    received += n;
+                }
+                // 连接提前断开时读取可能直接结束而不报错，不能把半个 JSON 当成新的缓存
+                if (expected >= 0 && received < expected) throw new IOException("连接提前结束");
+            } catch (IOException e) {
+                tmp.delete(); // 原有缓存保持不变
+                throw e;
+            }
+            store(tmp, connection.getHeaderField("ETag"));
+            return true;
+        } finally {
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    private synchronized void store(File tmpJson, String etag) throws IOException {
+        if (!tmpJson.renameTo(jsonFile)) {
+            tmpJson.delete();
+            throw new IOException("无法写入缓存: " + jsonFile.getName());
+        }
+        try {
+            if (etag != null) writeAtomically(etagFile, etag);
+            else etagFile.delete();
+        } catch (IOException e) {
+            e.printStackTrace();
+            etagFile.delete(); // 没有 ETag 时下次会完整下载
+        }
+    }
+
+    private static void writeAtomically(File target, String content) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            fos.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("无法写入缓存: " + target.getName());
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = is.read(buffer)) != -1) baos.write(buffer, 0, n);
+        }
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.hajimi24;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 可断点续传的文件下载。
+ * 数据写入调用方指定的 .part 文件，连接中断后用 HTTP Range 请求从已收到的位置继续。
+ * 接收的同时计算 git blob SHA-1，全部接收后校验大小与 SHA，由调用方 (BlobStore) 把 .part 文件移入存储。
+ */
+public class ResumableDownloader {
+
+    // 单次调用内，只要上一次尝试有新数据到达，就继续续传的最大次数
+    private static final int MAX_RESUMES = 5;
+
+    private ResumableDownloader() {}
+
+    /**
+     * 下载到 part 文件并校验，返回内容的 git blob SHA-1。校验失败时删除 part 文件并抛出异常。
+     * @param expectedSha 远程目录树中的 blob SHA-1，为空时只校验大小
+     * @param callback    可为 null，只使用其 onProgress
+     * @param listener    可为 null，用于登记连接以便取消
+     */
+    public static String download(String url, File part, String expectedSha,
+                                  ProblemRepository.FileDownloadCallback callback,
+                                  ProblemRepository.ConnectionListener listener) throws IOException {
+        File parent = part.getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        String actualSha;
+        for (int attempt = 0; ; attempt++) {
+            long before = part.length();
+            try {
+                actualSha = transfer(url, part, callback, listener);
+                break;
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                // 没有任何进展或次数用尽时交给调用方 (例如 ProblemSyncEngine 的退避重试)，.part 文件保留供下次续传
+                if (attempt >= MAX_RESUMES || part.length() <= before) throw e;
+            }
+        }
+
+        if (expectedSha != null && !expectedSha.isEmpty() && !expectedSha.equalsIgnoreCase(actualSha)) {
+            part.delete();
+            throw new IOException("文件校验失败: " + part.getName());
+        }
+        return actualSha;
+    }
+
+    // 下载 (或续传) 到 part 文件，返回完整内容的 git blob SHA-1
+    private static String transfer(String urlString, File part,
+                                   ProblemRepository.FileDownloadCallback callback,
+                                   ProblemRepository.ConnectionListener listener) throws IOException {
+        long offset = part.length();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(urlString).openConnection();
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(15000);
+            if (offset > 0) {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                // 续传时不能让服务器做透明压缩，否则字节偏移对不上
+                connection.setRequestProperty("Accept-Encoding", "identity");
+            }
+            if (listener != null) listener.onOpened(connection);
+
+            int code = connection.getResponseCode();
+            long total;
+            boolean append;
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                total = parseContentRangeTotal(connection.getHeaderField("Content-Range"));
+                append = true;
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                // 服务器不支持 Range，或这是第一次请求：从头开始
+                total = connection.getContentLength();
+                offset = 0;
+                append = false;
+            } else if (code == 416 && offset > 0) {
+                // 已收到的部分不小于文件大小：按大小和 SHA 判断是否完整
+                total = parseContentRangeTotal(connection.getHeaderField("Content-Range"));
+                checkSize(part, total);
+                return gitBlobSha1(part);
+            } else if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new FileNotFoundException(urlString);
+            } else {
+                throw new IOException("HTTP " + code);
+            }
+
+            // 总大小已知时边下载边计算 SHA (续传时先补上已有部分)；未知时下载完成后再整体计算
+            MessageDigest digest = null;
+            if (total >= 0) {
+                digest = newBlobDigest(total);
+                if (append) updateFromFile(digest, part, offset);
+            }
+
+            long current = offset;
+            try (InputStream stream = connection.getInputStream();
+                 FileOutputStream out = new FileOutputStream(part, append)) {
+                byte[] buffer = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = stream.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    if (digest != null) digest.update(buffer, 0, bytesRead);
+                    current += bytesRead;
+                    if (callback != null) {
+                        if (total > 0) callback.onProgress((int) (current * 100L / total), current, total);
+                        else callback.onProgress(-1, current, -1);
+                    }
+                }
+            }
+            if (total >= 0 && current < total) throw new IOException("连接提前结束");
+            checkSize(part, total);
+            return digest != null ? toHex(digest.digest()) : gitBlobSha1(part);
+        } finally {
+            if (listener != null && connection != null) listener.onClosed(connection);
+            if (connection != null) connection.disconnect();
+        }
+    }
+
+    private static void checkSize(File part, long total) throws IOException {
+        if (total >= 0 && part.length() != total) {
+            part.delete();
+            throw new IOException("文件大小不符: " + part.getName());
+        }
+    }
+
+    // "bytes 100-199/2000" 或 "bytes */2000" -> 2000
+    private static long parseContentRangeTotal(String contentRange) {
+        if (contentRange == null) return -1;
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) return -1;
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1; // "*" 表示未知
+        }
+    }
+
+    // git 对象 ID：SHA-1("blob " + 字节数 + "\0" + 内容)，与 trees API 返回的 sha 一致
+    public static String gitBlobSha1(File file) throws IOException {
+        MessageDigest digest = newBlobDigest(file.length());
+        updateFromFile(digest, file, file.length());
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newBlobDigest(long size) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(("blob " + size + "\0").getBytes(StandardCharsets.US_ASCII));
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // 把文件前 length 个字节加入摘要
+    private static void updateFromFile(MessageDigest digest, File file, long length) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            long remaining = length;
+            int n;
+            while (remaining > 0 && (n = is.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                digest.update(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -41,7 +41,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 
 public class SidebarLogic {
-    private volatile boolean isBatchCancelled = false;      // 批量下载取消标记
+    private ProblemSyncEngine.SyncHandle batchSyncHandle = null; // 批量同步句柄 (用于取消)
     private volatile boolean isSingleDownloadCancelled = false; // 单个下载取消标记
 
     private void fetchLocalFilesAndShowDialog() {
@@ -74,12 +74,8 @@ public class SidebarLogic {
         repository.fetchRemoteFileTree("data/", ".txt", new ProblemRepository.MenuDataCallback() {
             @Override
             public void onSuccess(List<ProblemRepository.RemoteFile> remoteFiles) {
-                List<ProblemRepository.RemoteFile> filesToDownload = new ArrayList<>();
-                for (ProblemRepository.RemoteFile rf : remoteFiles) {
-                    if (repository.needsUpdate(rf.path, rf.sha)) {
-                        filesToDownload.add(rf);
-                    }
-                }
+                // 只同步 SHA 发生变化的文件
+                List<ProblemRepository.RemoteFile> filesToDownload = new ProblemSyncEngine(repository).diff(remoteFiles);
                 if (filesToDownload.isEmpty()) {
                     new Handler(Looper.getMainLooper()).post(() ->
                             Toast.makeText(activity, "所有题库已是最新", Toast.LENGTH_SHORT).show());
@@ -397,18 +393,17 @@ public class SidebarLogic {
 
 
     private void executeBatchDownload(List<ProblemRepository.RemoteFile> files) {
-        isBatchCancelled = false;
         // 复用你之前的自定义 AlertDialog 逻辑
         AlertDialog.Builder builder = new AlertDialog.Builder(activity);
         builder.setTitle("同步题库中...");
         // --- 允许取消和返回键 ---
         builder.setCancelable(true);
         builder.setNegativeButton("停止", (dialog, which) -> {
-            isBatchCancelled = true;
+            if (batchSyncHandle != null) batchSyncHandle.cancel();
             dialog.dismiss();
         });
         builder.setOnCancelListener(dialog -> { // 处理返回键
-            isBatchCancelled = true;
+            if (batchSyncHandle != null) batchSyncHandle.cancel();
             Toast.makeText(activity, "同步已中断", Toast.LENGTH_SHORT).show();
         });
 
@@ -433,36 +428,40 @@ public class SidebarLogic {
         AlertDialog progressDialog = builder.create();
         progressDialog.show();
 
-        new Thread(() -> {
-            int count = 0;
-            for (ProblemRepository.RemoteFile rf : files) {
-                // 关键点：每次循环前检查用户是否点击了取消或返回
-                if (isBatchCancelled) {
-                    break;
-                }
-
-                count++;
-                final int currentCount = count;
-                final String fileName = rf.name;
-
-                new Handler(Looper.getMainLooper()).post(() -> {
-                    tvStatus.setText("正在同步 (" + currentCount + "/" + files.size() + ")\n" + fileName);
-                    progressBar.setProgress(currentCount);
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        // 多个文件并行下载，单个失败会自动重试；点击“停止”立即断开所有连接
+        batchSyncHandle = new ProblemSyncEngine(repository).start(files, new ProblemSyncEngine.SyncListener() {
+            @Override
+            public void onFileDone(ProblemRepository.RemoteFile file, int finished, int total) {
+                mainHandler.post(() -> {
+                    tvStatus.setText("正在同步 (" + finished + "/" + total + ")\n" + file.name);
+                    progressBar.setProgress(finished);
                 });
+            }
 
-                repository.downloadFileSync(rf.path, rf.sha);
+            @Override
+            public void onFileFailed(ProblemRepository.RemoteFile file, String error) {
+                mainHandler.post(() -> tvStatus.setText("下载失败: " + file.name));
             }
 
-            new Handler(Looper.getMainLooper()).post(() -> {
-                progressDialog.dismiss();
-                if (isBatchCancelled) {
-                    Toast.makeText(activity, "已停止同步", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(activity, "✅ 题库同步完成！", Toast.LENGTH_SHORT).show();
-                }
-                if (isExploringLocal) fetchLocalFilesAndShowDialog();
-            });
-        }).start();
+            @Override
+            public void onFinished(int succeeded, int failed, boolean cancelled) {
+                mainHandler.post(() -> {
+                    progressDialog.dismiss();
+                    batchSyncHandle = null;
+                    if (cancelled) {
+                        Toast.makeText(activity, "已停止同步", Toast.LENGTH_SHORT).show();
+                    } else if (failed > 0) {
+                        Toast.makeText(activity, "同步完成，" + failed + " 个文件失败", Toast.LENGTH_SHORT).show();
+                    } else {
+                        Toast.makeText(activity, "✅ 题库同步完成！", Toast.LENGTH_SHORT).show();
+                    }
+                    if (isExploringLocal) fetchLocalFilesAndShowDialog();
+                    // 题库有变化：后台提前重建搜题索引
+                    if (succeeded > 0) repository.prepareSearchIndex();
+                });
+            }
+        });
     }
 
 
@@ -549,6 +548,11 @@ public class SidebarLogic {
                 return true;
             }
 
+            if (id == 3500) {
+                showProblemSearchDialog();
+                return true;
+            }
+
             // 在 setup() 的 setNavigationItemSelectedListener 中
             if (id == 999) {
                 startBatchDownload();
@@ -678,6 +682,7 @@ public class SidebarLogic {
         problemGroup.add(Menu.NONE, 2000, Menu.NONE, "🌐  在线题库");
         problemGroup.add(Menu.NONE, 3000, Menu.NONE, "📂  本地题库");
         problemGroup.add(Menu.NONE, 999, Menu.NONE, "📥  一键同步");
+        problemGroup.add(Menu.NONE, 3500, Menu.NONE, "🔍  按数字搜题");
 
         // --- 第二组：帮助文档 ---
         SubMenu docGroup = menu.addSubMenu(getStyledTitle("使用指南 / GUIDES"));
@@ -732,13 +737,21 @@ public class SidebarLogic {
 
         // --- 1. 渲染总开关 ---
         androidx.appcompat.widget.SwitchCompat swLatex = new androidx.appcompat.widget.SwitchCompat(activity);
-        swLatex.setText("启用 MathJax 高质量渲染");
+        swLatex.setText("启用公式渲染");
         swLatex.setTextSize(16);
         // 增加开关的垂直间距
         swLatex.setPadding(0, 20, 0, 20);
         swLatex.setChecked(prefs.getBoolean("use_latex_mode", false));
         layout.addView(swLatex);
 
+        // 默认原生绘制公式；打开后改用 WebView + MathJax 排版 (首次显示较慢)
+        androidx.appcompat.widget.SwitchCompat swMathJax = new androidx.appcompat.widget.SwitchCompat(activity);
+        swMathJax.setText("使用 MathJax 绘制 (较慢)");
+        swMathJax.setTextSize(15);
+        swMathJax.setPadding(0, 10, 0, 10);
+        swMathJax.setChecked(prefs.getBoolean("latex_use_mathjax", false));
+        layout.addView(swMathJax);
+
         // 分隔线 (带有较大的上下外边距)
         View divider = new View(activity);
         LinearLayout.LayoutParams divLp = new LinearLayout.LayoutParams(-1, (int)(1.5 * density));
@@ -807,6 +820,7 @@ public class SidebarLogic {
         Runnable updateAlpha = () -> {
             boolean enabled = swLatex.isChecked();
             float alpha = enabled ? 1.0f : 0.35f;
+            swMathJax.setEnabled(enabled); swMathJax.setAlpha(alpha);
             tvMul.setAlpha(alpha); spMul.setEnabled(enabled); spMul.setAlpha(alpha);
             tvDiv.setAlpha(alpha); spDiv.setEnabled(enabled); spDiv.setAlpha(alpha);
             tvLP.setAlpha(alpha);  spLP.setEnabled(enabled);  spLP.setAlpha(alpha);
@@ -818,6 +832,13 @@ public class SidebarLogic {
             if (activity instanceof MainActivity) ((MainActivity) activity).updateDisplay("", null, false);
         });
 
+        swMathJax.setOnCheckedChangeListener((v, c) -> {
+            prefs.edit().putBoolean("latex_use_mathjax", c).apply();
+            // 改用 MathJax 时提前在后台加载公式模板
+            if (c) MathWebViewPool.get(activity).warmUp();
+            if (activity instanceof MainActivity) ((MainActivity) activity).updateDisplay("", null, false);
+        });
+
         spMul.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override public void onItemSelected(AdapterView<?> p, View v, int pos, long id) {
                 if (prefs.getInt("latex_mul_mode", -1) != pos) {
@@ -858,14 +879,21 @@ public class SidebarLogic {
     private void fetchRemoteFilesAndShowDialog() {
         Toast.makeText(activity, "正在刷新目录...", Toast.LENGTH_SHORT).show();
         // 核心修复：补全 "data/" 和 ".txt" 两个参数
-        repository.fetchRemoteFileTree("data/", ".txt", new ProblemRepository.MenuDataCallback() {
+        // 先用磁盘缓存的目录立即打开，后台验证到目录有变化时再替换数据
+        final boolean[] shown = {false};
+        repository.fetchRemoteFileTree("data/", ".txt", true, new ProblemRepository.MenuDataCallback() {
             @Override
             public void onSuccess(List<ProblemRepository.RemoteFile> files) {
                 new Handler(Looper.getMainLooper()).post(() -> {
                     cachedRemoteFiles = files;
+                    if (shown[0]) {
+                        // 资源管理器已打开：下次进入文件夹时即显示新目录
+                        Toast.makeText(activity, "目录已更新", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    shown[0] = true;
                     currentExplorerPath = "data/"; // 刷新后重置目录
                     showFileExplorerDialog();
-                    Toast.makeText(activity, "目录已更新", Toast.LENGTH_SHORT).show();
                 });
             }
 
@@ -911,8 +939,17 @@ public class SidebarLogic {
                 TextView tvCount = (TextView) container.getChildAt(1);
                 String itemText = getItem(position);
                 tvName.setText(itemText);
-                // 简单处理计数显示
-                tvCount.setVisibility(itemText.startsWith("📁") ? View.VISIBLE : View.GONE);
+                // 文件夹右侧的汇总：本地取打开列表时在后台算好的结果，远程取目录树索引 (都不在这里读盘或遍历)
+                boolean isFolder = itemText.startsWith("📁");
+                tvCount.setVisibility(isFolder ? View.VISIBLE : View.GONE);
+                if (isFolder) {
+                    String folderPath = currentExplorerPath + itemText.replace("📁 ", "") + "/";
+                    tvCount.setText(isExploringLocal
+                            ? repository.getLocalFolderSummary(folderPath)
+                            : repository.getFolderContentSummary(folderPath, getExplorerIndex()));
+                } else {
+                    tvCount.setText("");
+                }
                 return convertView;
             }
         };
@@ -921,6 +958,37 @@ public class SidebarLogic {
 
         final AlertDialog dialog = builder.create(); // 声明为 final 以供内部调用
 
+        // 本地模式：长按删除文件或文件夹
+        listView.setOnItemLongClickListener((parent, view, position, id) -> {
+            String itemText = adapter.getItem(position);
+            if (!isExploringLocal || itemText == null || itemText.startsWith("🔙") || itemText.equals(MERGE_FOLDER_ITEM)) return false;
+            boolean isFolder = itemText.startsWith("📁 ");
+            String name = itemText.replace(isFolder ? "📁 " : "📄 ", "");
+            String path = currentExplorerPath + name + (isFolder ? "/" : "");
+            new AlertDialog.Builder(activity)
+                    .setTitle("删除")
+                    .setMessage("确定删除 " + name + (isFolder ? " 及其中的所有文件" : "") + " 吗？")
+                    .setPositiveButton("删除", (d, w) -> new Thread(() -> {
+                        deleteLocalEntry(path);
+                        // 重新读取本地列表 (来自目录索引，很快) 并刷新当前视图
+                        repository.fetchLocalFileTree(isExploringDocs ? "files/" : "data/", new ProblemRepository.MenuDataCallback() {
+                            @Override
+                            public void onSuccess(List<ProblemRepository.RemoteFile> files) {
+                                new Handler(Looper.getMainLooper()).post(() -> {
+                                    cachedLocalFiles = files;
+                                    updateExplorerView(tvPath, adapter);
+                                    Toast.makeText(activity, "已删除 " + name, Toast.LENGTH_SHORT).show();
+                                });
+                            }
+                            @Override
+                            public void onFail(String error) { }
+                        });
+                    }).start())
+                    .setNegativeButton("取消", null)
+                    .show();
+            return true;
+        });
+
         listView.setOnItemClickListener((parent, view, position, id) -> {
             String itemText = adapter.getItem(position);
             if (itemText == null) return;
@@ -936,6 +1004,14 @@ public class SidebarLogic {
                 return;
             }
 
+            // 合并加载当前文件夹 (路径以 "/" 结尾即表示文件夹)
+            if (itemText.equals(MERGE_FOLDER_ITEM)) {
+                dialog.dismiss();
+                if (isExploringLocal) loadLocalProblemSet(currentExplorerPath);
+                else openRemoteFolderSet(currentExplorerPath);
+                return;
+            }
+
             // 2. 处理进入文件夹
             if (itemText.startsWith("📁 ")) {
                 currentExplorerPath += itemText.replace("📁 ", "") + "/";
@@ -960,14 +1036,10 @@ public class SidebarLogic {
                             String name = text.replace("📄 ", "");
                             allDocsInFolder.add(name);
 
-                            // 从缓存的远程文件列表中寻找 SHA
-                            if (!isExploringLocal && cachedRemoteFiles != null) {
-                                for (ProblemRepository.RemoteFile rf : cachedRemoteFiles) {
-                                    if (rf.name.equals(name) && rf.path.contains(currentExplorerPath)) {
-                                        nameToShaMap.put(name, rf.sha);
-                                        break;
-                                    }
-                                }
+                            // 从远程目录索引中查找 SHA
+                            if (!isExploringLocal) {
+                                ProblemRepository.RemoteFile rf = getExplorerIndex().getFile(currentExplorerPath + name);
+                                if (rf != null) nameToShaMap.put(name, rf.sha);
                             }
                         }
                     }
@@ -1085,10 +1157,18 @@ public class SidebarLogic {
 
 
 
+    // 删除本地文件或文件夹 (文件夹路径以 "/" 结尾)，同时更新存储与目录索引
+    private void deleteLocalEntry(String path) {
+        deleteRecursive(new java.io.File(activity.getFilesDir(), path));
+        repository.removeLocalPath(path);
+    }
+
     // 辅助递归删除（放在 SidebarLogic 类末尾即可）
     private void deleteRecursive(java.io.File fileOrDirectory) {
+        if (!fileOrDirectory.exists()) return;
         if (fileOrDirectory.isDirectory()) {
-            for (java.io.File child : fileOrDirectory.listFiles()) deleteRecursive(child);
+            java.io.File[] children = fileOrDirectory.listFiles();
+            if (children != null) for (java.io.File child : children) deleteRecursive(child);
         }
         fileOrDirectory.delete();
     }
@@ -1129,12 +1209,31 @@ public class SidebarLogic {
         b.show();
     }
 
+    // 资源管理器当前数据源的目录索引 (数据源列表变化时重建，即每次获取目录后建一次)
+    private PathIndex explorerIndex = null;
+    private List<ProblemRepository.RemoteFile> explorerIndexSource = null;
+
+    private PathIndex getExplorerIndex() {
+        List<ProblemRepository.RemoteFile> dataSource = isExploringLocal ? cachedLocalFiles : cachedRemoteFiles;
+        if (explorerIndex == null || explorerIndexSource != dataSource) {
+            explorerIndex = PathIndex.build(dataSource);
+            explorerIndexSource = dataSource;
+        }
+        return explorerIndex;
+    }
+
+    private static final String MERGE_FOLDER_ITEM = "📚 合并加载本文件夹";
+
+    private static List<String> childFilePaths(PathIndex index, String folderPath) {
+        List<String> paths = new ArrayList<>();
+        for (String f : index.childFiles(folderPath)) paths.add(folderPath + f);
+        return paths;
+    }
+
     private void updateExplorerView(TextView tvPath, ArrayAdapter<String> adapter) {
         tvPath.setText("当前位置: " + (isExploringLocal ? "本地/" : "远程/") + currentExplorerPath);
 
         List<String> items = new ArrayList<>();
-        Set<String> folders = new HashSet<>();
-        List<String> files = new ArrayList<>();
 
         // 根据模式选择数据源
         List<ProblemRepository.RemoteFile> dataSource = isExploringLocal ? cachedLocalFiles : cachedRemoteFiles;
@@ -1147,28 +1246,21 @@ public class SidebarLogic {
             }
         }
 
-        if (dataSource != null) {
-            for (ProblemRepository.RemoteFile f : dataSource) {
-                if (f.path.startsWith(currentExplorerPath)) {
-                    String relativePath = f.path.substring(currentExplorerPath.length());
-                    int slashIndex = relativePath.indexOf('/');
-                    if (slashIndex == -1) files.add(relativePath);
-                    else folders.add(relativePath.substring(0, slashIndex));
-                }
-            }
-        }
-
         if (currentExplorerPath.contains("/") && currentExplorerPath.length() > 6) {
             // 这里的 6 是为了避开 "data/" 或 "files/"
             items.add(0, "🔙 返回上一级");
         }
 
-        List<String> sortedFolders = new ArrayList<>(folders);
-        Collections.sort(sortedFolders);
-        for (String f : sortedFolders) items.add("📁 " + f);
-
-        Collections.sort(files);
-        for (String f : files) items.add("📄 " + f);
+        // 子文件夹与文件直接取自目录索引 (已排序)
+        PathIndex index = getExplorerIndex();
+        // 本地题库文件夹 (含子文件夹) 中有多个题库时，可以合并加载，重复的题只保留一份；
+        // 在线的分片文件夹 (大文件) 也可以直接作为一个题库，分片玩到时才下载
+        if (!isExploringDocs && (isExploringLocal ? index.fileCount(currentExplorerPath) > 1
+                : FolderProblemSet.isSplitSet(childFilePaths(index, currentExplorerPath)))) {
+            items.add(MERGE_FOLDER_ITEM);
+        }
+        for (String f : index.childFolders(currentExplorerPath)) items.add("📁 " + f);
+        for (String f : index.childFiles(currentExplorerPath)) items.add("📄 " + f);
 
         adapter.clear();
         adapter.addAll(items);
@@ -1177,6 +1269,82 @@ public class SidebarLogic {
     // ==========================================
     //  新增：直接从本地加载题库
     // ==========================================
+    // ==========================================
+    //  按数字搜题
+    // ==========================================
+
+    private static final int SEARCH_RESULT_LIMIT = 500;
+
+    private void showProblemSearchDialog() {
+        EditText et = new EditText(activity);
+        et.setHint("例如：7 13 或 1 1 7 mod 73");
+        et.setSingleLine(true);
+        new AlertDialog.Builder(activity)
+                .setTitle("按数字搜题")
+                .setMessage("在所有本地题库中查找同时包含这些数字的题目，可附加 mod p 或 base r")
+                .setView(et)
+                .setPositiveButton("搜索", (d, w) -> searchProblems(et.getText().toString()))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private void searchProblems(String query) {
+        List<Fraction> operands = new ArrayList<>();
+        Integer modulus = null, radix = null;
+        String[] tokens = query.trim().toLowerCase().replace("，", " ").replace(",", " ").split("\\s+");
+        try {
+            for (int i = 0; i < tokens.length; i++) {
+                String t = tokens[i];
+                if (t.isEmpty()) continue;
+                if (t.startsWith("mod") || t.startsWith("base")) {
+                    String keyword = t.startsWith("mod") ? "mod" : "base";
+                    String num = t.length() > keyword.length() ? t.substring(keyword.length())
+                            : (i + 1 < tokens.length ? tokens[++i] : "");
+                    if (keyword.equals("mod")) modulus = Integer.parseInt(num);
+                    else radix = Integer.parseInt(num);
+                } else {
+                    operands.add(Fraction.parse(t));
+                }
+            }
+        } catch (Exception e) {
+            Toast.makeText(activity, "无法识别的输入: " + query, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (operands.isEmpty() && modulus == null && radix == null) return;
+
+        Toast.makeText(activity, "正在搜索 (首次搜索需要建立索引)...", Toast.LENGTH_SHORT).show();
+        String title = "🔍 " + query.trim();
+        repository.searchProblems(operands, modulus, radix, SEARCH_RESULT_LIMIT, new ProblemRepository.SearchCallback() {
+            @Override
+            public void onSuccess(List<ProblemSearchIndex.Hit> hits) {
+                List<Problem> problems = new ArrayList<>();
+                for (ProblemSearchIndex.Hit h : hits) {
+                    if (h.problem != null) problems.add(h.problem);
+                }
+                new Handler(Looper.getMainLooper()).post(() -> {
+                    if (problems.isEmpty()) {
+                        Toast.makeText(activity, "没有找到符合条件的题目", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    // 搜索结果作为一个临时题库加载 (不对应某个文件，设定变化时不重新过滤)
+                    isCurrentModeRandom = false;
+                    currentLoadedFileName = null;
+                    callback.onLoadProblems(problems, title);
+                    drawerLayout.closeDrawer(GravityCompat.START);
+                    Toast.makeText(activity, "找到 " + problems.size() + " 道题"
+                            + (hits.size() >= SEARCH_RESULT_LIMIT ? " (仅显示前 " + SEARCH_RESULT_LIMIT + " 道)" : ""),
+                            Toast.LENGTH_SHORT).show();
+                });
+            }
+
+            @Override
+            public void onFail(String error) {
+                new Handler(Looper.getMainLooper()).post(() ->
+                        Toast.makeText(activity, error, Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
     private void loadLocalProblemSet(String filePath) {
         try {
             List<Problem> problems = repository.loadProblemSet(filePath, gameModeSettings);
@@ -1190,6 +1358,31 @@ public class SidebarLogic {
         }
     }
 
+    // 在线的分片文件夹：已下载的分片直接使用，其余的玩到时再下载 (本地一个都没有时先下载第一个)
+    private void openRemoteFolderSet(String folderPath) {
+        List<ProblemRepository.RemoteFile> remoteFiles = new ArrayList<>();
+        PathIndex index = getExplorerIndex();
+        for (String path : childFilePaths(index, folderPath)) remoteFiles.add(index.getFile(path));
+        Toast.makeText(activity, "正在准备题库...", Toast.LENGTH_SHORT).show();
+
+        new Thread(() -> {
+            try {
+                FolderProblemSet problems = repository.openFolderProblemSet(folderPath, remoteFiles, gameModeSettings);
+                new Handler(Looper.getMainLooper()).post(() -> {
+                    isCurrentModeRandom = false;
+                    currentLoadedFileName = folderPath;
+                    callback.onLoadProblems(problems, folderPath);
+                    drawerLayout.closeDrawer(GravityCompat.START);
+                    Toast.makeText(activity, "加载成功，共 " + problems.getPartCount() + " 个分片", Toast.LENGTH_SHORT).show();
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                new Handler(Looper.getMainLooper()).post(() ->
+                        Toast.makeText(activity, "加载失败: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        }).start();
+    }
+
     // ==========================================
     //  下载与进度条逻辑
     // ==========================================
@@ -1225,7 +1418,11 @@ public class SidebarLogic {
         AlertDialog progressDialog = builder.create();
         progressDialog.show();
 
-        repository.downloadFileContent(path, gameModeSettings, new ProblemRepository.FileDownloadCallback() {
+        // 从远程目录索引中找到该文件的 SHA，下载完成后用于校验
+        ProblemRepository.RemoteFile remoteFile = isExploringLocal ? null : getExplorerIndex().getFile(path);
+        String remoteSha = remoteFile != null ? remoteFile.sha : null;
+
+        repository.downloadFileContent(path, remoteSha, gameModeSettings, new ProblemRepository.FileDownloadCallback() {
             @Override
             public void onProgress(int percent, long currentBytes, long totalBytes) {
                 if (isSingleDownloadCancelled) return;
@@ -1405,11 +1602,14 @@ public class SidebarLogic {
             cachedRemoteFiles = null;
         }
         Toast.makeText(activity, "正在同步目录...", Toast.LENGTH_SHORT).show();
-        repository.fetchRemoteFileTree(rootDir, extension, new ProblemRepository.MenuDataCallback() {
+        final boolean[] shown = {false};
+        repository.fetchRemoteFileTree(rootDir, extension, true, new ProblemRepository.MenuDataCallback() {
             @Override
             public void onSuccess(List<ProblemRepository.RemoteFile> files) {
                 new Handler(Looper.getMainLooper()).post(() -> {
                     cachedRemoteFiles = files;
+                    if (shown[0]) return; // 后台验证得到的新目录，只替换数据
+                    shown[0] = true;
                     currentExplorerPath = rootDir;
                     showFileExplorerDialog();
                 });
@@ -1434,10 +1634,8 @@ public class SidebarLogic {
             fw.write(content);
             fw.close();
 
-            // 存入 SHA 标记，确保版本刷新逻辑生效
-            if (sha != null && !sha.isEmpty()) {
-                repository.saveLocalFileSHA(path, sha);
-            }
+            // 存入 SHA 标记并更新本地目录索引，确保版本刷新逻辑生效
+            repository.recordLocalFile(path, sha);
         } catch (Exception e) { e.printStackTrace(); }
     }
 
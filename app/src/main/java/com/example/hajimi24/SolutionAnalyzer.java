@@ -1,57 +1,238 @@
 // SolutionAnalyzer.java
 package com.example.hajimi24;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+/**
+ * 题目过滤属性的唯一来源：对一行题目的解法做一次扫描 (分词) 和一次求值，
+ * 得到全部特征并压缩成一个 int (特征字)，由 ProblemFilterIndex 按设定过滤。
+ *
+ * 特征字布局：
+ *   低 5 位        各过滤标志 (HAS_DIVISION ... FRACTION_CALC)
+ *   第 8-11 位     除号 " / " 个数
+ *   第 12-15 位    乘号 " * " 个数
+ *   第 16-19 位    加减号 " + "、" - " 个数
+ *   第 20-22 位    最外层运算符 (OP_NONE / OP_ADD / OP_SUB / OP_MUL / OP_DIV)
+ * 计数超过 15 时记为 15。
+ */
 public class SolutionAnalyzer {
 
-    private final String solution;
-    private final int numberCount;
+    // 解法中含有除法 " / "
+    public static final int HAS_DIVISION = 1;
+    // 解法中含有乘法或除法 (即不是纯加减)
+    public static final int HAS_MUL_DIV = 1 << 1;
+    // 除号数量 >= 数字个数 - 2 ("除法风暴")
+    public static final int DIVISION_STORM = 1 << 2;
+    // 最后一步是乘以 1、2、3、4、6、8、12 或 24 (仅在非特殊模式下计算)
+    public static final int TRIVIAL_FINAL_MUL = 1 << 3;
+    // 计算过程中有分数参与加减
+    public static final int FRACTION_CALC = 1 << 4;
+
+    public static final int OP_NONE = 0, OP_ADD = 1, OP_SUB = 2, OP_MUL = 3, OP_DIV = 4;
+
+    private static final int DIV_SHIFT = 8, MUL_SHIFT = 12, ADD_SUB_SHIFT = 16, TOP_OP_SHIFT = 20;
 
-    public SolutionAnalyzer(String solution, int numberCount) {
-        this.solution = solution;
-        this.numberCount = numberCount;
+    private static final String[] TRIVIAL_FACTORS = {"1", "2", "3", "4", "6", "8", "12", "24"};
+
+    public static int getDivisionCount(int features) {
+        return (features >>> DIV_SHIFT) & 15;
     }
 
-    // 规则 (2): 检查是否只包含加减法
-    public boolean hasOnlyAddSub() {
-        return !solution.contains("*") && !solution.contains("/");
+    public static int getMultiplicationCount(int features) {
+        return (features >>> MUL_SHIFT) & 15;
     }
 
-    // 规则 (3): 检查是否不包含除法
-    public boolean hasNoDivision() {
-        return !solution.contains("/");
+    public static int getAddSubCount(int features) {
+        return (features >>> ADD_SUB_SHIFT) & 15;
     }
 
-    // 规则 (4): 检查最后一步是否为平凡乘法
-    public boolean hasTrivialFinalMultiply() {
-        // ... (复杂逻辑，通过分析括号匹配来找到最后一层运算)
-        // 伪代码:
-        // 1. 找到不在任何括号内的最后一个 '*' 运算符。
-        // 2. 如果没找到，返回 false。
-        // 3. 检查该 '*' 左边和右边的表达式，看它们是否都是整数。
-        // 4. 如果都是整数，返回 true。
-        return false; // 占位
+    public static int getTopLevelOperator(int features) {
+        return (features >>> TOP_OP_SHIFT) & 7;
     }
 
-    // 规则 (5): 检查是否包含分数加减
-    public boolean hasFractionCalculation() {
-        // 使用正则表达式寻找 (分数) + (分数) 或 (分数) - (分数)
-        Pattern pattern = Pattern.compile("\\([0-9]+/[0-9]+\\)\\s*[+\\-]\\s*\\([0-9]+/[0-9]+\\)");
-        return pattern.matcher(solution).find();
+    /**
+     * 计算一道题的特征字。
+     * @param numberPart 题目行 "->" 左边的部分 (用于数出数字个数)
+     * @param solution   "->" 右边去掉首尾空白的部分 (含 mod / base 后缀)
+     * @param fileName   所在文件 (进制、取模、复数、分数题库不计算平凡乘法)
+     */
+    public static int analyze(String numberPart, String solution, String fileName) {
+        int n = 1;
+        for (int i = 0; i < numberPart.length(); i++) {
+            if (numberPart.charAt(i) == ',') n++;
+        }
+        return new SolutionAnalyzer(solution).analyze(n, fileName);
     }
 
-    // 规则 (6): 检查是否满足“除法风暴”
-    public boolean hasDivisionStorm() {
-        int divisionCount = 0;
-        for (char c : solution.toCharArray()) {
-            if (c == '/') divisionCount++;
+    // ==========================================
+    //  分词：一次扫描得到运算符个数、括号配对与特殊模式标记
+    // ==========================================
+
+    private final String s;
+    // 配对括号的位置 (左括号 -> 右括号，右括号 -> 左括号)
+    private final int[] match;
+    private boolean balanced = true;
+    private int divisions, multiplications, addSubs;
+    private boolean special;
+
+    private SolutionAnalyzer(String solution) {
+        s = solution;
+        match = new int[s.length()];
+        int[] stack = new int[s.length()];
+        int top = 0;
+        // " / " 等按不重叠的出现次数计数
+        int lastOpEnd = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '(':
+                    stack[top++] = i;
+                    break;
+                case ')':
+                    if (top == 0) {
+                        balanced = false;
+                    } else {
+                        match[i] = stack[--top];
+                        match[match[i]] = i;
+                    }
+                    break;
+                case '/': case '*': case '+': case '-':
+                    if (i > 0 && i - 1 >= lastOpEnd && i + 1 < s.length()
+                            && s.charAt(i - 1) == ' ' && s.charAt(i + 1) == ' ') {
+                        if (c == '/') divisions++;
+                        else if (c == '*') multiplications++;
+                        else addSubs++;
+                        lastOpEnd = i + 2;
+                    }
+                    break;
+                case 'i': case 'I':
+                    // 复数 (以及 "mod"、"base" 中的字母) 都算特殊模式
+                    special = true;
+                    break;
+                case 'm': case 'M':
+                    if (s.regionMatches(true, i, "mod", 0, 3)) special = true;
+                    break;
+                case 'b': case 'B':
+                    if (s.regionMatches(true, i, "base", 0, 4)) special = true;
+                    break;
+            }
         }
+        if (top != 0) balanced = false;
+    }
+
+    private int analyze(int numberCount, String fileName) {
+        int features = 0;
+        if (divisions > 0) features |= HAS_DIVISION;
+        if (divisions > 0 || multiplications > 0) features |= HAS_MUL_DIV;
+        if (divisions >= numberCount - 2) features |= DIVISION_STORM;
+        features |= Math.min(divisions, 15) << DIV_SHIFT;
+        features |= Math.min(multiplications, 15) << MUL_SHIFT;
+        features |= Math.min(addSubs, 15) << ADD_SUB_SHIFT;
 
-        if (numberCount == 3) return divisionCount >= 1;
-        if (numberCount == 4 || numberCount == 5) return divisionCount >= 2;
+        int from = skipSpaces(0), to = trimEnd(from, s.length());
+        int mainOp = balanced ? mainOperator(from, to) : -1;
+        if (mainOp >= 0) features |= operatorCode(s.charAt(mainOp)) << TOP_OP_SHIFT;
+
+        // 分数参与加减：对解法求值 (取模、进制题不计算)
+        if (balanced && !s.contains("mod") && !s.contains("base") && hasFractionalAddSub(from, to)) {
+            features |= FRACTION_CALC;
+        }
+
+        String fileLower = fileName.toLowerCase();
+        boolean isSpecialMode = special
+                || fileLower.contains("base") || fileLower.contains("进制")
+                || fileLower.contains("mod") || fileLower.contains("模")
+                || fileLower.contains("分数") || fileLower.contains("fraction");
+        if (isSpecialMode) return features;
+
+        // 平凡乘法：最外层运算是乘法，且一边就是 1、2、3、4、6、8、12、24 之一
+        if (mainOp >= 0 && s.charAt(mainOp) == '*') {
+            if (isTrivialFactor(from, mainOp) || isTrivialFactor(mainOp + 1, to)) features |= TRIVIAL_FINAL_MUL;
+        }
+        return features;
+    }
+
+    private static int operatorCode(char c) {
+        switch (c) {
+            case '+': return OP_ADD;
+            case '-': return OP_SUB;
+            case '*': return OP_MUL;
+            case '/': return OP_DIV;
+            default: return OP_NONE;
+        }
+    }
+
+    // 最外层运算符的位置：去掉包住整段的括号后，括号外最右边的加减号，没有时为最右边的乘除号
+    private int mainOperator(int from, int to) {
+        while (from < to && s.charAt(from) == '(' && match[from] == to - 1) {
+            from = skipSpaces(from + 1);
+            to = trimEnd(from, to - 1);
+        }
+        int mulDiv = -1;
+        for (int i = to - 1; i >= from; i--) {
+            char c = s.charAt(i);
+            if (c == ')') {
+                i = match[i];
+            } else if (c == '+' || c == '-') {
+                return i;
+            } else if (mulDiv < 0 && (c == '*' || c == '/')) {
+                mulDiv = i;
+            }
+        }
+        return mulDiv;
+    }
+
+    private boolean isTrivialFactor(int from, int to) {
+        from = skipSpaces(from);
+        to = trimEnd(from, to);
+        while (from < to && s.charAt(from) == '(' && match[from] == to - 1) {
+            from = skipSpaces(from + 1);
+            to = trimEnd(from, to - 1);
+        }
+        for (String f : TRIVIAL_FACTORS) {
+            if (to - from == f.length() && s.startsWith(f, from)) return true;
+        }
         return false;
     }
-}
 
+    // ==========================================
+    //  求值：由 CompiledExpression 按 Fraction 计算，左边先算
+    // ==========================================
+
+    // 加减之前检查两边是否都是整数，遇到分数加减时记下 (之后的运算照常进行)
+    private static class FractionalAddSubCheck extends CompiledExpression.FractionArithmetic {
+        boolean found = false;
+
+        FractionalAddSubCheck() {
+            super(10);
+        }
+
+        @Override
+        public Fraction apply(char op, Fraction left, Fraction right) {
+            if ((op == '+' || op == '-') && (left.getDe() != 1 || right.getDe() != 1)) found = true;
+            return super.apply(op, left, right);
+        }
+    }
+
+    private boolean hasFractionalAddSub(int from, int to) {
+        FractionalAddSubCheck check = new FractionalAddSubCheck();
+        try {
+            CompiledExpression.compile(s.substring(from, to)).build(check);
+        } catch (Exception e) {
+            // 无法继续求值 (除以零、算式不合法等)：此前已出现分数加减时仍算作含有
+        }
+        return check.found;
+    }
+
+    // ==========================================
+    //  辅助
+    // ==========================================
+
+    private int skipSpaces(int from) {
+        while (from < s.length() && Character.isWhitespace(s.charAt(from))) from++;
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && Character.isWhitespace(s.charAt(to - 1))) to--;
+        return to;
+    }
+}
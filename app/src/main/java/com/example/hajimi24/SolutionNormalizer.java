@@ -1,191 +1,374 @@
 package com.example.hajimi24;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
+/**
+ * 解法去重：把本质相同的算式 (交换律、结合律、去括号后相同) 归为一类，每类只保留最短的一个。
+ *
+ * 算式由 CompiledExpression 解析后合并成不可变的树：同级的加减 (或乘除) 合并成一个节点，
+ * 正负两组子项按规范顺序排列，每个节点带一个 64 位结构哈希。
+ * 去重表以哈希为键 (开放寻址的 long 数组)，哈希相同再比较结构，不必为每个算式拼接签名字符串。
+ */
 public class SolutionNormalizer {
 
-    private static class PowerNode implements Node {
-        Node base;
-        Node exponent;
-
-        PowerNode(Node base, Node exponent) {
-            this.base = base;
-            this.exponent = exponent;
-        }
-
-        @Override
-        public String getSignature() {
-            // --- 规则 1 标准化：(a^b)^c -> a^(b*c) ---
-            if (base instanceof PowerNode) {
-                PowerNode inner = (PowerNode) base;
-                OpNode newExp = new OpNode("PROD");
-                newExp.addTerm(inner.exponent, true);
-                newExp.addTerm(this.exponent, true);
-                return "POW(" + inner.base.getSignature() + "," + newExp.getSignature() + ")";
-            }
-
-            // --- 规则 2 标准化：(a/b)^n -> (b/a)^(-n) ---
-            // 逻辑：如果底数是纯除法或分式，可以通过统一翻转来去重
-            // 此处简化处理，仅对 base 和 exponent 进行签名拼接
-            return "POW(" + base.getSignature() + "," + exponent.getSignature() + ")";
-        }
-    }
-
     public static List<String> distinct(List<String> solutions) {
         List<String> result = new ArrayList<>();
-        Map<String, String> map = new HashMap<>();
+        Set<String> failed = new HashSet<>();
+        SolutionSet classes = new SolutionSet();
 
         for (String sol : solutions) {
             try {
                 // 1. 预处理：去掉可能的编号前缀如 "[1] "
-                String cleanSol = sol.replaceAll("^\\[\\d+\\]\\s*", "").trim();
-
-                // 2. 增强后缀剥离：匹配 =结果、mod、base 等，支持非数字（如复数）后缀
-                String mathPart = cleanSol;
-                String suffix = "";
-                java.util.regex.Pattern p = java.util.regex.Pattern.compile("\\s*(=|\\b(mod|base)\\b).*$");
-                java.util.regex.Matcher m = p.matcher(cleanSol);
-                if (m.find()) {
-                    suffix = m.group();
-                    mathPart = cleanSol.substring(0, m.start()).trim();
-                }
+                String cleanSol = stripIndexPrefix(sol).trim();
 
-                // 3. 分式原子化保护：
-                // 将形如 "2/3" 或 "9/4" 的数值分式强制加上括号，防止解析器将其关联错误
-                // 解决 a / 2/3 变成 (a/2)/3 的问题，确保其被视为 a / (2/3)
-                mathPart = mathPart.replaceAll("(?<![\\d\\.])(\\d+(\\.\\d+)?/\\d+(\\.\\d+)?)(?![\\d\\.])", "($1)");
+                // 2. 后缀剥离：第一个 "="、"mod" 或 "base" 及其之后的部分 (支持复数等非数字后缀)
+                int suffixStart = findSuffixStart(cleanSol);
+                String mathPart = suffixStart >= 0 ? cleanSol.substring(0, suffixStart).trim() : cleanSol;
+                String suffix = suffixStart >= 0 ? cleanSol.substring(suffixStart).trim() : "";
 
-                // 4. 生成指纹
-                Node root = parse(mathPart);
-                String signature = root.getSignature() + "|" + suffix.trim();
+                // 3. 分式原子化保护：形如 "2/3" 的数值分式加上括号，
+                // 使 a / 2/3 被视为 a / (2/3) 而不是 (a/2)/3
+                mathPart = wrapNumericFractions(mathPart);
 
-                if (map.containsKey(signature)) {
-                    String existing = map.get(signature);
-                    // 保留更短或字典序更小的
-                    if (sol.length() < existing.length() || (sol.length() == existing.length() && sol.compareTo(existing) < 0)) {
-                        map.put(signature, sol);
-                    }
-                } else {
-                    map.put(signature, sol);
-                }
+                // 4. 解析成规范树，按 (树, 后缀) 归类，保留更短或字典序更小的
+                classes.add(parse(mathPart), suffix, sol);
             } catch (Exception e) {
-                if (!result.contains(sol)) result.add(sol);
+                if (failed.add(sol)) result.add(sol);
             }
         }
-        result.addAll(map.values());
+        classes.appendTo(result);
         return result;
     }
 
-    private interface Node {
-        String getSignature();
+    /**
+     * 直接对 ExprFactory 中的算式去重 (求解器枚举的结果)，与对其文本 (加上 suffix) 调用 distinct 的结果相同。
+     * 规范树按编号缓存，共享的子式只规范化一次；只有各类的代表才会生成文本。
+     */
+    public static List<String> distinct(ExprFactory exprs, int[] roots, String suffix) {
+        Node[] canonical = new Node[exprs.size()];
+        for (int id = 0; id < exprs.size(); id++) {
+            // 叶子本身含运算符 (负分数、复数) 时，文本的切分方式与树的结构不一致，按文本处理
+            if (exprs.isLeaf(id) && (canonical[id] = atomicLeaf(exprs.getText(id))) == null) {
+                List<String> solutions = new ArrayList<>(roots.length);
+                for (int root : roots) solutions.add(exprs.toString(root) + suffix);
+                return distinct(solutions);
+            }
+        }
+
+        SolutionSet classes = new SolutionSet();
+        String trimmedSuffix = suffix.trim();
+        for (int root : roots) {
+            classes.add(canonicalOf(exprs, root, canonical), trimmedSuffix, exprs.toString(root) + suffix);
+        }
+        List<String> result = new ArrayList<>();
+        classes.appendTo(result);
+        return result;
     }
 
-    private static class ValueNode implements Node {
-        String val;
-        ValueNode(String v) { this.val = v; }
-        @Override public String getSignature() { return "V(" + val + ")"; }
+    // 叶子的规范树：单个值或数值分式 (如 "1/2")，否则返回 null
+    static Node atomicLeaf(String text) {
+        String wrapped = wrapNumericFractions(text);
+        boolean isFraction = wrapped.equals("(" + text + ")");
+        if (!isFraction && !wrapped.equals(text)) return null;
+        try {
+            Node node = parse(wrapped);
+            return (isFraction || node instanceof ValueNode) ? node : null;
+        } catch (Exception e) {
+            return null;
+        }
     }
 
-    private static class OpNode implements Node {
-        String type;
-        List<Node> positives = new ArrayList<>();
-        List<Node> negatives = new ArrayList<>();
+    private static Node canonicalOf(ExprFactory exprs, int id, Node[] canonical) {
+        Node node = canonical[id];
+        if (node == null) {
+            node = combine(exprs.getOp(id), canonicalOf(exprs, exprs.getLeft(id), canonical),
+                    canonicalOf(exprs, exprs.getRight(id), canonical));
+            canonical[id] = node;
+        }
+        return node;
+    }
 
-        OpNode(String type) { this.type = type; }
+    // "(left op right)" 的规范树
+    static Node combine(char op, Node left, Node right) {
+        TermList terms = new TermList(op == '+' || op == '-' ? SUM : PROD);
+        terms.add(left, true);
+        terms.add(right, op == '+' || op == '*');
+        return terms.build();
+    }
 
-        void addTerm(Node child, boolean isPositive) {
-            // 过滤一元负号产生的空节点 (例如 "-i+1" 会产生一个空左节点)
-            if (child instanceof ValueNode && ((ValueNode) child).val.isEmpty()) return;
+    // ==========================================
+    //  预处理 (逐字符扫描)
+    // ==========================================
 
-            if (child instanceof OpNode && ((OpNode) child).type.equals(this.type)) {
-                OpNode childOp = (OpNode) child;
-                if (isPositive) {
-                    this.positives.addAll(childOp.positives);
-                    this.negatives.addAll(childOp.negatives);
-                } else {
-                    // 处理符号/分母反转： - (a - b) -> -a + b ; / (a / b) -> / a * b
-                    this.positives.addAll(childOp.negatives);
-                    this.negatives.addAll(childOp.positives);
-                }
-            } else {
-                if (isPositive) this.positives.add(child);
-                else this.negatives.add(child);
+    // 去掉开头的 "[数字]" 及其后的空白
+    private static String stripIndexPrefix(String s) {
+        if (!s.startsWith("[")) return s;
+        int i = 1;
+        while (i < s.length() && isDigit(s.charAt(i))) i++;
+        if (i == 1 || i >= s.length() || s.charAt(i) != ']') return s;
+        i++;
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return s.substring(i);
+    }
+
+    // 第一个 "=" 或独立单词 "mod"/"base" 的位置，没有时返回 -1
+    private static int findSuffixStart(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '=') return i;
+            if ((c == 'm' || c == 'b') && (i == 0 || !isWordChar(s.charAt(i - 1)))) {
+                String word = c == 'm' ? "mod" : "base";
+                int end = i + word.length();
+                if (s.startsWith(word, i) && (end == s.length() || !isWordChar(s.charAt(end)))) return i;
+            }
+        }
+        return -1;
+    }
+
+    // 给独立的数值分式 (如 "2/3"、"1.5/2"，前后不紧挨数字或小数点) 加上括号
+    private static String wrapNumericFractions(String s) {
+        StringBuilder sb = null;
+        int copied = 0;
+        int i = 0;
+        while (i < s.length()) {
+            if (!isDigit(s.charAt(i)) || (i > 0 && isDigitOrDot(s.charAt(i - 1)))) {
+                i++;
+                continue;
+            }
+            int slash = scanNumber(s, i);
+            int end = (slash < s.length() && s.charAt(slash) == '/') ? scanNumber(s, slash + 1) : -1;
+            if (end <= slash + 1 || (end < s.length() && isDigitOrDot(s.charAt(end)))) {
+                i++;
+                continue;
             }
+            if (sb == null) sb = new StringBuilder(s.length() + 8);
+            sb.append(s, copied, i).append('(').append(s, i, end).append(')');
+            copied = end;
+            i = end;
+        }
+        if (sb == null) return s;
+        return sb.append(s, copied, s.length()).toString();
+    }
+
+    // 从 from 开始匹配 数字+ (.数字+)?，返回结束位置 (不是数字时返回 from)
+    private static int scanNumber(String s, int from) {
+        int i = from;
+        while (i < s.length() && isDigit(s.charAt(i))) i++;
+        if (i == from) return from;
+        if (i + 1 < s.length() && s.charAt(i) == '.' && isDigit(s.charAt(i + 1))) {
+            i += 2;
+            while (i < s.length() && isDigit(s.charAt(i))) i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigitOrDot(char c) {
+        return isDigit(c) || c == '.';
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    // ==========================================
+    //  规范树
+    // ==========================================
+
+    // 规范树 (DistinctSolver 以它为键归类)
+    abstract static class Node implements Comparable<Node> {
+        final long hash;
+
+        Node(long hash) {
+            this.hash = hash;
         }
 
+        // 结构上的全序：先比哈希，哈希相同再逐层比较 (只在哈希碰撞或结构相同时才会深入)
         @Override
-        public String getSignature() {
-            List<String> posSigs = new ArrayList<>();
-            List<String> negSigs = new ArrayList<>();
-            for (Node n : positives) posSigs.add(n.getSignature());
-            for (Node n : negatives) negSigs.add(n.getSignature());
-            Collections.sort(posSigs);
-            Collections.sort(negSigs);
-            return type + "{P" + posSigs + ",N" + negSigs + "}";
+        public int compareTo(Node o) {
+            if (this == o) return 0;
+            if (hash != o.hash) return Long.compare(hash, o.hash);
+            if (this instanceof ValueNode != o instanceof ValueNode) return this instanceof ValueNode ? -1 : 1;
+            if (this instanceof ValueNode) return ((ValueNode) this).val.compareTo(((ValueNode) o).val);
+            OpNode a = (OpNode) this, b = (OpNode) o;
+            if (a.type != b.type) return Integer.compare(a.type, b.type);
+            int c = compareTerms(a.positives, b.positives);
+            return c != 0 ? c : compareTerms(a.negatives, b.negatives);
+        }
+
+        boolean sameAs(Node o) {
+            return compareTo(o) == 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Node && sameAs((Node) o);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
         }
     }
 
-    private static Node parse(String expr) {
-        expr = stripOuterParens(expr.trim());
-        int splitIdx = findMainOperatorIndex(expr);
-
-        if (splitIdx == -1) return new ValueNode(expr);
-
-        char op = expr.charAt(splitIdx);
-        Node left = parse(expr.substring(0, splitIdx));
-        Node right = parse(expr.substring(splitIdx + 1));
-
-        if (op == '+' || op == '-') {
-            OpNode node = new OpNode("SUM");
-            node.addTerm(left, true);
-            node.addTerm(right, op == '+');
-            return node;
-        } else if (op == '*' || op == '/' || op == '×') {
-            OpNode node = new OpNode("PROD");
-            node.addTerm(left, true);
-            node.addTerm(right, op == '*' || op == '×');
-            return node;
-        }
-        return new ValueNode(expr);
-    }
-
-    private static String stripOuterParens(String s) {
-        while (s.startsWith("(") && s.endsWith(")")) {
-            int balance = 0;
-            boolean strip = true;
-            for (int i = 0; i < s.length() - 1; i++) {
-                if (s.charAt(i) == '(') balance++;
-                else if (s.charAt(i) == ')') balance--;
-                if (balance == 0) { strip = false; break; }
+    private static int compareTerms(Node[] a, Node[] b) {
+        if (a.length != b.length) return Integer.compare(a.length, b.length);
+        for (int i = 0; i < a.length; i++) {
+            int c = a[i].compareTo(b[i]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    private static class ValueNode extends Node {
+        final String val;
+
+        ValueNode(String val) {
+            super(Hashing.mix(fnv(val) ^ 0x56L));
+            this.val = val;
+        }
+    }
+
+    private static final int SUM = 1, PROD = 2;
+
+    // 同级的加减 (SUM) 或乘除 (PROD)：positives 为加/乘的项，negatives 为减/除的项，均已按规范顺序排列
+    private static class OpNode extends Node {
+        final int type;
+        final Node[] positives;
+        final Node[] negatives;
+
+        OpNode(int type, Node[] positives, Node[] negatives) {
+            super(hashOf(type, positives, negatives));
+            this.type = type;
+            this.positives = positives;
+            this.negatives = negatives;
+        }
+
+        private static long hashOf(int type, Node[] positives, Node[] negatives) {
+            long h = Hashing.mix(type);
+            for (Node n : positives) h = Hashing.mix(h * 31 + n.hash);
+            h = Hashing.mix(h ^ 0x2D);
+            for (Node n : negatives) h = Hashing.mix(h * 31 + n.hash);
+            return h;
+        }
+    }
+
+    // 构造同级节点时收集子项：同类型的子节点直接展开 (减去/除以它时正负两组互换)
+    private static class TermList {
+        final int type;
+        final List<Node> positives = new ArrayList<>();
+        final List<Node> negatives = new ArrayList<>();
+
+        TermList(int type) {
+            this.type = type;
+        }
+
+        void add(Node child, boolean isPositive) {
+            if (child instanceof OpNode && ((OpNode) child).type == type) {
+                OpNode op = (OpNode) child;
+                List<Node> same = isPositive ? positives : negatives;
+                List<Node> flipped = isPositive ? negatives : positives;
+                same.addAll(Arrays.asList(op.positives));
+                flipped.addAll(Arrays.asList(op.negatives));
+            } else {
+                (isPositive ? positives : negatives).add(child);
             }
-            if (strip) s = s.substring(1, s.length() - 1).trim();
-            else break;
         }
-        return s;
+
+        OpNode build() {
+            Node[] pos = positives.toArray(new Node[0]);
+            Node[] neg = negatives.toArray(new Node[0]);
+            Arrays.sort(pos);
+            Arrays.sort(neg);
+            return new OpNode(type, pos, neg);
+        }
     }
 
-    private static int findMainOperatorIndex(String s) {
-        int balance = 0; int bestIdx = -1; int minPrec = 999;
-        for (int i = s.length() - 1; i >= 0; i--) {
-            char c = s.charAt(i);
-            if (c == ')') balance++;
-            else if (c == '(') balance--;
-            else if (balance == 0) {
-                int prec = -1;
-                if (c == '+' || c == '-') prec = 1;
-                else if (c == '*' || c == '/' || c == '×') prec = 2;
-                else if (c == '^') prec = 3; // 幂运算优先级最高
-
-                if (prec != -1 && prec <= minPrec) { // 注意：幂运算是右结合，这里用 <=
-                    minPrec = prec;
-                    bestIdx = i;
+    // 由 CompiledExpression 解析算式，按后缀顺序逐步合并成规范树
+    private static final CompiledExpression.Builder<Node> CANONICAL = new CompiledExpression.Builder<Node>() {
+        @Override
+        public Node operand(String token) {
+            return new ValueNode(token);
+        }
+
+        @Override
+        public Node apply(char op, Node left, Node right) {
+            return combine(op, left, right);
+        }
+    };
+
+    private static Node parse(String expr) {
+        return CompiledExpression.compile(expr).build(CANONICAL);
+    }
+
+    // ==========================================
+    //  去重表
+    // ==========================================
+
+    /**
+     * 以 (树, 后缀) 的 64 位哈希为键的开放寻址表；哈希相同时比较结构与后缀，
+     * 真正相同的才归为一类。各类按首次出现的顺序输出。
+     */
+    private static class SolutionSet {
+        private long[] keys = new long[64];
+        private int[] slots = new int[64]; // 类的编号 + 1，0 表示空
+        private final List<Node> trees = new ArrayList<>();
+        private final List<String> suffixes = new ArrayList<>();
+        private final List<String> best = new ArrayList<>();
+
+        void add(Node tree, String suffix, String sol) {
+            long key = Hashing.mix(tree.hash * 31 + fnv(suffix));
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (slots[slot] != 0) {
+                int c = slots[slot] - 1;
+                if (keys[slot] == key && suffixes.get(c).equals(suffix) && trees.get(c).sameAs(tree)) {
+                    String existing = best.get(c);
+                    if (sol.length() < existing.length() || (sol.length() == existing.length() && sol.compareTo(existing) < 0)) {
+                        best.set(c, sol);
+                    }
+                    return;
                 }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            slots[slot] = trees.size() + 1;
+            trees.add(tree);
+            suffixes.add(suffix);
+            best.add(sol);
+            if (trees.size() * 2 > keys.length) grow();
+        }
+
+        void appendTo(List<String> result) {
+            result.addAll(best);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldSlots[i] == 0) continue;
+                int slot = (int) (oldKeys[i] ^ (oldKeys[i] >>> 32)) & mask;
+                while (slots[slot] != 0) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                slots[slot] = oldSlots[i];
             }
         }
-        return bestIdx;
+    }
+
+    private static long fnv(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        return h;
     }
 }
@@ -1,8 +1,10 @@
 package com.example.hajimi24;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class Solver {
@@ -37,42 +39,99 @@ public class Solver {
      * 所有解入口
      */
     public static List<String> solveAll(List<Fraction> nums, Integer modulus, int targetValue) {
-        Set<String> resultSet = new HashSet<>();
+        ExprFactory exprs = new ExprFactory();
+        Map<String, Set<Integer>> roots = enumerateAll(nums, modulus, targetValue, exprs);
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Set<Integer>> e : roots.entrySet()) {
+            for (int node : e.getValue()) result.add(exprs.toString(node) + e.getKey());
+        }
+        return result;
+    }
+
+    /**
+     * 所有本质不同的解 (等价于 SolutionNormalizer.distinct(solveAll(...)))：
+     * 由 DistinctSolver 在搜索中直接按规范形式归类，每类只生成一个代表；
+     * 操作数含负数、复数时退回到枚举全部写法，在共享子式上归类
+     */
+    public static List<String> solveAllDistinct(List<Fraction> nums, Integer modulus, int targetValue) {
+        String[] suffix = new String[1];
+        List<String> canonical = DistinctSolver.solve(nums, modulus, targetValue, suffix);
+        if (canonical != null) {
+            List<String> result = new ArrayList<>(canonical.size());
+            for (String s : canonical) result.add(s + suffix[0]);
+            return result;
+        }
+
+        ExprFactory exprs = new ExprFactory();
+        Map<String, Set<Integer>> roots = enumerateAll(nums, modulus, targetValue, exprs);
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Set<Integer>> e : roots.entrySet()) {
+            int[] ids = new int[e.getValue().size()];
+            int i = 0;
+            for (int node : e.getValue()) ids[i++] = node;
+            result.addAll(SolutionNormalizer.distinct(exprs, ids, e.getKey()));
+        }
+        return result;
+    }
+
+    // 枚举所有解，结果为 后缀 (" base r"、" mod m"，可能为空) -> 算式编号
+    private static Map<String, Set<Integer>> enumerateAll(List<Fraction> nums, Integer modulus, int targetValue, ExprFactory exprs) {
+        Map<String, Set<Integer>> results = new LinkedHashMap<>();
         if (modulus == null) {
             List<Expr> list = new ArrayList<>();
-            for(Fraction f : nums) list.add(new Expr(f, f.toString()));
-            solveExprAll(list, resultSet, targetValue);
+            for(Fraction f : nums) list.add(new Expr(f, exprs.leaf(f.toString())));
+            solveExprAll(list, exprs, results, targetValue);
         } else {
             List<Expr> list = new ArrayList<>();
             for(Fraction f : nums) {
                 long val = ((long)getDoubleValue(f)) % modulus;
                 if (val < 0) val += modulus;
                 String s = Long.toString(val, f.getRadix()).toUpperCase();
-                list.add(new Expr(new Fraction(val, 0, 1, f.getRadix()), s));
+                list.add(new Expr(new Fraction(val, 0, 1, f.getRadix()), exprs.leaf(s)));
             }
-            solveExprAllMod(list, resultSet, modulus, targetValue);
+            solveExprAllMod(list, exprs, results, modulus, targetValue);
         }
-        return new ArrayList<>(resultSet);
+        return results;
     }
 
+    private static void addRoot(Map<String, Set<Integer>> results, String suffix, int node) {
+        Set<Integer> roots = results.get(suffix);
+        if (roots == null) {
+            roots = new LinkedHashSet<>();
+            results.put(suffix, roots);
+        }
+        roots.add(node);
+    }
+
+    // 枚举中的一个中间结果：值，以及由哪两个结果经哪个运算得到
     static class Expr {
         Fraction val;
-        String str;
-        Expr(Fraction v, String s) { val=v; str=s; }
+        private int node;
+        private final char op;
+        private final Expr left, right;
+        Expr(Fraction v, int n) { val=v; node=n; op=0; left=null; right=null; }
+        Expr(Fraction v, char op, Expr a, Expr b) { val=v; node=-1; this.op=op; left=a; right=b; }
+
+        // 算式在 ExprFactory 中的编号：找到解时才登记，绝大多数没有结果的分支不产生任何节点或字符串
+        int node(ExprFactory exprs) {
+            if (node < 0) node = exprs.node(op, left.node(exprs), right.node(exprs));
+            return node;
+        }
     }
 
     private static String solveRecFromFractions(List<Fraction> nums, int targetValue) {
+        ExprFactory exprs = new ExprFactory();
         List<Expr> list = new ArrayList<>();
-        for(Fraction f : nums) list.add(new Expr(f, f.toString()));
-        return solveRec(list, targetValue);
+        for(Fraction f : nums) list.add(new Expr(f, exprs.leaf(f.toString())));
+        return solveRec(list, exprs, targetValue);
     }
 
     // 标准递归 (单解) - 核心修复：手动透传 radix
-    private static String solveRec(List<Expr> list, int targetValue) {
+    private static String solveRec(List<Expr> list, ExprFactory exprs, int targetValue) {
         if (list.size() == 1) {
             Fraction f = list.get(0).val;
             if (f.isValue(targetValue)) {
-                String res = list.get(0).str;
+                String res = exprs.toString(list.get(0).node(exprs));
                 // [修复点] 这里判断 radix 以追加 base 后缀
                 if (f.getRadix() != 10) res += " base " + f.getRadix();
                 return res;
@@ -91,24 +150,24 @@ public class Solver {
 
                 // Add
                 Fraction res = a.val.add(b.val);
-                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" + "+b.str+")"));
-                String sol = solveRec(next, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '+', a, b));
+                String sol = solveRec(next, exprs, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
 
                 // Sub
                 res = a.val.sub(b.val);
-                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" - "+b.str+")"));
-                sol = solveRec(next, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '-', a, b));
+                sol = solveRec(next, exprs, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
 
                 // Mul
                 res = a.val.multiply(b.val);
-                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" * "+b.str+")"));
-                sol = solveRec(next, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '*', a, b));
+                sol = solveRec(next, exprs, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
 
                 // Div
                 if (!b.val.isValue(0)) {
                     res = a.val.divide(b.val);
-                    next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" / "+b.str+")"));
-                    sol = solveRec(next, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                    next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '/', a, b));
+                    sol = solveRec(next, exprs, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
                 }
             }
         }
@@ -116,13 +175,11 @@ public class Solver {
     }
 
     // 标准递归 (所有解) - 核心修复：手动透传 radix
-    private static void solveExprAll(List<Expr> list, Set<String> results, int targetValue) {
+    private static void solveExprAll(List<Expr> list, ExprFactory exprs, Map<String, Set<Integer>> results, int targetValue) {
         if (list.size() == 1) {
             Fraction f = list.get(0).val;
             if (f.isValue(targetValue)) {
-                String res = list.get(0).str;
-                if (f.getRadix() != 10) res += " base " + f.getRadix();
-                results.add(res);
+                addRoot(results, f.getRadix() != 10 ? " base " + f.getRadix() : "", list.get(0).node(exprs));
             }
             return;
         }
@@ -137,22 +194,22 @@ public class Solver {
                 int r = a.val.getRadix();
 
                 Fraction res = a.val.add(b.val);
-                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" + "+b.str+")"));
-                solveExprAll(next, results, targetValue); next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '+', a, b));
+                solveExprAll(next, exprs, results, targetValue); next.remove(next.size()-1);
 
                 res = a.val.sub(b.val);
-                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" - "+b.str+")"));
-                solveExprAll(next, results, targetValue); next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '-', a, b));
+                solveExprAll(next, exprs, results, targetValue); next.remove(next.size()-1);
 
                 res = a.val.multiply(b.val);
-                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" * "+b.str+")"));
-                solveExprAll(next, results, targetValue); next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '*', a, b));
+                solveExprAll(next, exprs, results, targetValue); next.remove(next.size()-1);
 
                 if (!b.val.isValue(0)) {
                     try {
                         res = a.val.divide(b.val);
-                        next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), "("+a.str+" / "+b.str+")"));
-                        solveExprAll(next, results, targetValue); next.remove(next.size()-1);
+                        next.add(new Expr(new Fraction(res.getRe(), res.getIm(), res.getDe(), r), '/', a, b));
+                        solveExprAll(next, exprs, results, targetValue); next.remove(next.size()-1);
                     } catch (Exception e) {}
                 }
             }
@@ -160,17 +217,18 @@ public class Solver {
     }
 
     private static String solveRecMod(List<Fraction> nums, int mod, int targetValue) {
+        ExprFactory exprs = new ExprFactory();
         List<Expr> list = new ArrayList<>();
         for(Fraction f : nums) {
             long val = ((long)getDoubleValue(f)) % mod;
             if (val < 0) val += mod;
             String s = Long.toString(val, f.getRadix()).toUpperCase();
-            list.add(new Expr(new Fraction(val, 0, 1, f.getRadix()), s));
+            list.add(new Expr(new Fraction(val, 0, 1, f.getRadix()), exprs.leaf(s)));
         }
-        return solveExprMod(list, mod, targetValue);
+        return solveExprMod(list, exprs, mod, targetValue);
     }
 
-    private static String solveExprMod(List<Expr> list, int mod, int targetValue) {
+    private static String solveExprMod(List<Expr> list, ExprFactory exprs, int mod, int targetValue) {
         if (list.size() == 1) {
             Fraction f = list.get(0).val;
             long val = ((long)getDoubleValue(f)) % mod;
@@ -178,7 +236,7 @@ public class Solver {
             if (val == targetValue) {
                 String suffix = " mod " + mod;
                 if (f.getRadix() != 10) suffix = " base " + f.getRadix() + suffix;
-                return list.get(0).str + suffix;
+                return exprs.toString(list.get(0).node(exprs)) + suffix;
             }
             return null;
         }
@@ -194,23 +252,23 @@ public class Solver {
                 int r = a.val.getRadix();
 
                 long res = (va + vb) % mod;
-                next.add(new Expr(new Fraction(res, 0, 1, r), "("+a.str+" + "+b.str+")"));
-                String sol = solveExprMod(next, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res, 0, 1, r), '+', a, b));
+                String sol = solveExprMod(next, exprs, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
 
                 res = (va - vb) % mod; if(res < 0) res += mod;
-                next.add(new Expr(new Fraction(res, 0, 1, r), "("+a.str+" - "+b.str+")"));
-                sol = solveExprMod(next, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res, 0, 1, r), '-', a, b));
+                sol = solveExprMod(next, exprs, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
 
                 res = (va * vb) % mod;
-                next.add(new Expr(new Fraction(res, 0, 1, r), "("+a.str+" * "+b.str+")"));
-                sol = solveExprMod(next, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(res, 0, 1, r), '*', a, b));
+                sol = solveExprMod(next, exprs, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
 
                 if (vb != 0) {
                     long invB = modInverse(vb, mod);
                     if (invB != -1) {
                         res = (va * invB) % mod;
-                        next.add(new Expr(new Fraction(res, 0, 1, r), "("+a.str+" / "+b.str+")"));
-                        sol = solveExprMod(next, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
+                        next.add(new Expr(new Fraction(res, 0, 1, r), '/', a, b));
+                        sol = solveExprMod(next, exprs, mod, targetValue); if(sol!=null) return sol; next.remove(next.size()-1);
                     }
                 }
             }
@@ -218,7 +276,7 @@ public class Solver {
         return null;
     }
 
-    private static void solveExprAllMod(List<Expr> list, Set<String> results, int mod, int targetValue) {
+    private static void solveExprAllMod(List<Expr> list, ExprFactory exprs, Map<String, Set<Integer>> results, int mod, int targetValue) {
         if (list.size() == 1) {
             Fraction f = list.get(0).val;
             long val = ((long)getDoubleValue(f)) % mod;
@@ -226,7 +284,7 @@ public class Solver {
             if (val == targetValue) {
                 String suffix = " mod " + mod;
                 if (f.getRadix() != 10) suffix = " base " + f.getRadix() + suffix;
-                results.add(list.get(0).str + suffix);
+                addRoot(results, suffix, list.get(0).node(exprs));
             }
             return;
         }
@@ -242,30 +300,30 @@ public class Solver {
                 int r = a.val.getRadix();
 
                 long resAdd = (va + vb) % mod;
-                next.add(new Expr(new Fraction(resAdd, 0, 1, r), "("+a.str+" + "+b.str+")"));
-                solveExprAllMod(next, results, mod, targetValue); next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(resAdd, 0, 1, r), '+', a, b));
+                solveExprAllMod(next, exprs, results, mod, targetValue); next.remove(next.size()-1);
 
                 long resSub = (va - vb) % mod; if (resSub < 0) resSub += mod;
-                next.add(new Expr(new Fraction(resSub, 0, 1, r), "("+a.str+" - "+b.str+")"));
-                solveExprAllMod(next, results, mod, targetValue); next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(resSub, 0, 1, r), '-', a, b));
+                solveExprAllMod(next, exprs, results, mod, targetValue); next.remove(next.size()-1);
 
                 long resMul = (va * vb) % mod;
-                next.add(new Expr(new Fraction(resMul, 0, 1, r), "("+a.str+" * "+b.str+")"));
-                solveExprAllMod(next, results, mod, targetValue); next.remove(next.size()-1);
+                next.add(new Expr(new Fraction(resMul, 0, 1, r), '*', a, b));
+                solveExprAllMod(next, exprs, results, mod, targetValue); next.remove(next.size()-1);
 
                 if (vb != 0) {
                     long invB = modInverse(vb, mod);
                     if (invB != -1) {
                         long resDiv = (va * invB) % mod;
-                        next.add(new Expr(new Fraction(resDiv, 0, 1, r), "("+a.str+" / "+b.str+")"));
-                        solveExprAllMod(next, results, mod, targetValue); next.remove(next.size()-1);
+                        next.add(new Expr(new Fraction(resDiv, 0, 1, r), '/', a, b));
+                        solveExprAllMod(next, exprs, results, mod, targetValue); next.remove(next.size()-1);
                     }
                 }
             }
         }
     }
 
-    private static double getDoubleValue(Fraction f) {
+    static double getDoubleValue(Fraction f) {
         String s = f.toString(10);
         try {
             if (s.contains("/")) {
@@ -276,7 +334,7 @@ public class Solver {
         } catch (Exception e) { return 0; }
     }
 
-    private static long modInverse(long a, long m) {
+    static long modInverse(long a, long m) {
         a = a % m; if (a < 0) a += m;
         long m0 = m, y = 0, x = 1;
         if (m == 1) return 0;
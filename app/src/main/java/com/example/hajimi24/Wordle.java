@@ -26,7 +26,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Stack;
 
 public class Wordle {
     private static final String ALPHABET = "0123456789+-*/()";
@@ -502,43 +501,9 @@ public class Wordle {
         return false;
     }
 
+    // 玩家输入的算式不带正负号 (isInvalid 已检查过字符与括号)
     public double evaluate(String s) {
-        Stack<Double> nums = new Stack<>();
-        Stack<Character> ops = new Stack<>();
-        for (int i = 0; i < s.length(); i++) {
-            char c = s.charAt(i);
-            if (Character.isDigit(c)) {
-                StringBuilder sb = new StringBuilder();
-                while (i < s.length() && Character.isDigit(s.charAt(i))) sb.append(s.charAt(i++));
-                nums.push(Double.parseDouble(sb.toString()));
-                i--;
-            } else if (c == '(') ops.push(c);
-            else if (c == ')') {
-                while (ops.peek() != '(') nums.push(applyOp(ops.pop(), nums.pop(), nums.pop()));
-                ops.pop();
-            } else if ("+-*/".indexOf(c) != -1) {
-                while (!ops.isEmpty() && hasPrecedence(c, ops.peek()))
-                    nums.push(applyOp(ops.pop(), nums.pop(), nums.pop()));
-                ops.push(c);
-            }
-        }
-        while (!ops.isEmpty()) nums.push(applyOp(ops.pop(), nums.pop(), nums.pop()));
-        return nums.pop();
-    }
-
-    private boolean hasPrecedence(char op1, char op2) {
-        if (op2 == '(' || op2 == ')') return false;
-        return !((op1 == '*' || op1 == '/') && (op2 == '+' || op2 == '-'));
-    }
-
-    private double applyOp(char op, double b, double a) {
-        switch (op) {
-            case '+': return a + b;
-            case '-': return a - b;
-            case '*': return a * b;
-            case '/': return a / b;
-        }
-        return 0;
+        return CompiledExpression.compile(s, false).evaluateDouble();
     }
 
     private void onBoxClicked(int r, int c) {
@@ -0,0 +1,137 @@
+package com.example.hajimi24;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class BlobStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File write(BlobStore store, String path, String text) throws IOException {
+        File part = store.partFileFor(path);
+        part.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(part)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return part;
+    }
+
+    // 模拟下载完成：写入 .part 文件、计算 SHA 后存入
+    private String commit(BlobStore store, String path, String text) throws IOException {
+        File part = write(store, path, text);
+        String sha = ResumableDownloader.gitBlobSha1(part);
+        store.commit(path, sha, part);
+        return sha;
+    }
+
+    private static String read(BlobStore store, String path) throws IOException {
+        try (InputStream in = store.openStream(path)) {
+            assertNotNull(path, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String lines(int count, String prefix) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) sb.append(prefix).append(i).append(" -> ").append(i * 7).append('\n');
+        return sb.toString();
+    }
+
+    @Test
+    public void shaMatchesGitHashObject() throws IOException {
+        BlobStore store = new BlobStore(tmp.newFolder("blobs"));
+        // git hash-object 的结果
+        assertEquals("ce013625030ba8dba906f756967f9e9ca394464a", ResumableDownloader.gitBlobSha1(write(store, "a.txt", "hello\n")));
+        assertEquals("e69de29bb2d1d6434b8b29ae775ad8c2e48c5391", ResumableDownloader.gitBlobSha1(write(store, "b.txt", "")));
+    }
+
+    @Test
+    public void committedFileReadsBackAndSurvivesReload() throws IOException {
+        File root = tmp.newFolder("blobs");
+        BlobStore store = new BlobStore(root);
+        String text = lines(20000, "['1', '2'] #");
+        String sha = commit(store, "data/a.txt", text);
+
+        assertFalse(store.partFileFor("data/a.txt").exists());
+        assertTrue(store.contains("data/a.txt", sha.toUpperCase()));
+        assertEquals(text.length(), store.get("data/a.txt").size);
+        assertTrue(BlockCompressedFile.isBlockCompressed(store.getFile("data/a.txt")));
+        assertEquals(text, read(store, "data/a.txt"));
+
+        BlobStore reloaded = new BlobStore(root);
+        assertEquals(sha, reloaded.get("data/a.txt").sha);
+        assertEquals(text, read(reloaded, "data/a.txt"));
+    }
+
+    @Test
+    public void identicalContentIsStoredOnce() throws IOException {
+        BlobStore store = new BlobStore(tmp.newFolder("blobs"));
+        String sha = commit(store, "data/a.txt", "1 2 3\n");
+        assertEquals(sha, commit(store, "data/copy/a.txt", "1 2 3\n"));
+        File blob = store.getFile("data/a.txt");
+        assertEquals(blob, store.getFile("data/copy/a.txt"));
+
+        store.remove("data/a.txt");
+        assertTrue("仍被另一个路径引用", blob.exists());
+        assertEquals("1 2 3\n", read(store, "data/copy/a.txt"));
+        store.remove("data/copy/a.txt");
+        assertFalse(blob.exists());
+        assertNull(store.openStream("data/copy/a.txt"));
+    }
+
+    @Test
+    public void replacingContentReleasesOldBlob() throws IOException {
+        BlobStore store = new BlobStore(tmp.newFolder("blobs"));
+        commit(store, "data/a.txt", "old\n");
+        File oldBlob = store.getFile("data/a.txt");
+        commit(store, "data/a.txt", "new\n");
+        assertFalse(oldBlob.exists());
+        assertEquals("new\n", read(store, "data/a.txt"));
+        assertEquals(1, store.listPaths("data/").size());
+    }
+
+    @Test
+    public void concurrentCommitsAreAllRecorded() throws Exception {
+        File root = tmp.newFolder("blobs");
+        BlobStore store = new BlobStore(root);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            // 一半的文件内容相同，同时压缩同一个 blob
+            String path = "data/part" + i + ".txt";
+            String text = lines(3000, i % 2 == 0 ? "same " : "file" + i + " ");
+            futures.add(pool.submit(() -> commit(store, path, text)));
+        }
+        for (Future<String> f : futures) f.get();
+        pool.shutdown();
+
+        BlobStore reloaded = new BlobStore(root);
+        assertEquals(16, reloaded.listPaths("data/").size());
+        for (int i = 0; i < 16; i++) {
+            assertEquals(lines(3000, i % 2 == 0 ? "same " : "file" + i + " "), read(reloaded, "data/part" + i + ".txt"));
+        }
+        // 临时文件都已清理
+        File[] left = new File(root, "tmp").listFiles();
+        assertEquals(0, left == null ? 0 : left.length);
+    }
+}
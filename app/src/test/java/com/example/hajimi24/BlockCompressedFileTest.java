@@ -0,0 +1,146 @@
+package com.example.hajimi24;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BlockCompressedFileTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private int files = 0;
+
+    private File compress(String text) throws IOException {
+        File src = tmp.newFile("src" + (files++) + ".txt");
+        try (FileOutputStream out = new FileOutputStream(src)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        File dst = new File(tmp.getRoot(), src.getName() + ".hjbz");
+        BlockCompressedFile.compress(src, dst);
+        assertFalse(new File(dst.getPath() + ".tmp").exists());
+        return dst;
+    }
+
+    private static List<String> readerLines(String text) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = reader.readLine()) != null) lines.add(line);
+        return lines;
+    }
+
+    // 顺序流、逐块解压和随机读行三种方式都应还原出原文
+    private static void assertRoundTrip(String text, File file) throws IOException {
+        assertTrue(BlockCompressedFile.isBlockCompressed(file));
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        try (BlockCompressedFile bcf = BlockCompressedFile.open(file)) {
+            assertEquals(raw.length, bcf.getRawLength());
+
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            try (InputStream in = bcf.openStream(false)) {
+                byte[] buffer = new byte[1000];
+                int n;
+                while ((n = in.read(buffer)) != -1) streamed.write(buffer, 0, n);
+            }
+            assertEquals(text, new String(streamed.toByteArray(), StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+            for (int b = 0; b < bcf.getBlockCount(); b++) {
+                byte[] data = bcf.readBlock(b);
+                if (b < bcf.getBlockCount() - 1) assertEquals('\n', data[data.length - 1]);
+                blocks.write(data);
+            }
+            assertArrayEquals(raw, blocks.toByteArray());
+
+            List<String> expected = readerLines(text);
+            assertEquals(expected.size(), bcf.getLineCount());
+            for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i), bcf.readLine(i));
+            // 倒序读取：不依赖块缓存的顺序
+            for (int i = expected.size() - 1; i >= 0; i -= 97) assertEquals(expected.get(i), bcf.readLine(i));
+            assertNull(bcf.readLine(-1));
+            assertNull(bcf.readLine(expected.size()));
+        }
+    }
+
+    private static String problemLines(int count) {
+        Random random = new Random(5);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append("['").append(random.nextInt(13) + 1).append("', '").append(random.nextInt(13) + 1)
+                    .append("', '").append(random.nextInt(13) + 1).append("', '").append(random.nextInt(13) + 1)
+                    .append("'] -> 解法 ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void manyBlocksRoundTrip() throws IOException {
+        String text = problemLines(30000);
+        File file = compress(text);
+        assertRoundTrip(text, file);
+        try (BlockCompressedFile bcf = BlockCompressedFile.open(file)) {
+            assertTrue(bcf.getBlockCount() > 1);
+            assertTrue(file.length() < text.length());
+            assertEquals(0, bcf.getFirstLine(0));
+        }
+    }
+
+    @Test
+    public void missingTrailingNewlineAndCrlf() throws IOException {
+        assertRoundTrip("a\r\nb\r\n\r\nlast", compress("a\r\nb\r\n\r\nlast"));
+        String text = problemLines(5000) + "无换行的最后一行";
+        assertRoundTrip(text, compress(text));
+    }
+
+    @Test
+    public void emptyAndTinyFiles() throws IOException {
+        File empty = compress("");
+        assertRoundTrip("", empty);
+        try (BlockCompressedFile bcf = BlockCompressedFile.open(empty)) {
+            assertEquals(0, bcf.getBlockCount());
+            assertEquals(0, bcf.getLineCount());
+        }
+        assertRoundTrip("\n", compress("\n"));
+        assertRoundTrip("x", compress("x"));
+    }
+
+    @Test
+    public void linesLongerThanABlock() throws IOException {
+        StringBuilder sb = new StringBuilder("short\n");
+        for (int i = 0; i < BlockCompressedFile.BLOCK_BYTES * 3; i++) sb.append((char) ('a' + i % 26));
+        sb.append("\nafter\n");
+        for (int i = 0; i < BlockCompressedFile.BLOCK_BYTES + 10; i++) sb.append('z');
+        String text = sb.toString();
+        assertRoundTrip(text, compress(text));
+    }
+
+    @Test
+    public void plainFilesAreNotBlockCompressed() throws IOException {
+        File plain = tmp.newFile("plain.txt");
+        try (FileOutputStream out = new FileOutputStream(plain)) {
+            out.write(problemLines(10).getBytes(StandardCharsets.UTF_8));
+        }
+        assertFalse(BlockCompressedFile.isBlockCompressed(plain));
+        assertFalse(BlockCompressedFile.isBlockCompressed(new File(tmp.getRoot(), "missing")));
+        try {
+            BlockCompressedFile.open(plain).close();
+            fail("未压缩的文件应无法打开");
+        } catch (IOException expected) {
+        }
+    }
+}
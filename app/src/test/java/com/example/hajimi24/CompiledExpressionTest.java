@@ -0,0 +1,115 @@
+package com.example.hajimi24;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledExpressionTest {
+
+    // 重建成全括号形式，用来检查优先级、结合性和操作数的切分
+    private static final CompiledExpression.Builder<String> PAREN = new CompiledExpression.Builder<String>() {
+        @Override
+        public String operand(String token) {
+            return "[" + token + "]";
+        }
+
+        @Override
+        public String apply(char op, String left, String right) {
+            return "(" + left + op + right + ")";
+        }
+    };
+
+    private static String tree(String expr) {
+        return CompiledExpression.compile(expr).build(PAREN);
+    }
+
+    @Test
+    public void precedenceAndAssociativity() {
+        assertEquals("([1]+([2]*[3]))", tree("1 + 2 * 3"));
+        assertEquals("(([1]+[2])*[3])", tree("(1 + 2) * 3"));
+        assertEquals("(([8]-[3])-[2])", tree("8 - 3 - 2"));
+        assertEquals("(([8]/[4])/[2])", tree("8 / 4 / 2"));
+        assertEquals("([8]-([3]-[2]))", tree("8 - (3 - 2)"));
+        assertEquals("(([1]*[2])+([3]/[4]))", tree("1*2+3/4"));
+        assertEquals("[7]", tree(" ((7)) "));
+        assertEquals("(([1]*[2])/[3])", tree("1 × 2 ÷ 3"));
+    }
+
+    @Test
+    public void signedOperands() {
+        assertEquals("([-3]*[+4])", tree("-3 * +4"));
+        assertEquals("([2]-[-1])", tree("2 - -1"));
+        assertEquals("([-2]*([-1]+[3]))", tree("-2 * (-1 + 3)"));
+        try {
+            CompiledExpression.compile("-3 * 4", false);
+            fail("不允许带符号的操作数时 - 是运算符");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void complexAndRadixLiterals() {
+        assertEquals("([2+3i]*[4-i])", tree("2+3i * 4-i"));
+        assertEquals("(([2+3i]+[1])-[i])", tree("2+3i + 1 - i"));
+        // 运算符两侧有空白时仍是普通的加法
+        assertEquals("([2]+[3i])", tree("2 + 3i"));
+        assertEquals("([A]*[1F])", tree("A * 1F"));
+        assertEquals("[2+3i]", tree("2+3i"));
+    }
+
+    @Test
+    public void malformedExpressionsAreRejected() {
+        String[] bad = {"", "   ", "1 +", "* 2", "(1 + 2", "1 + 2)", "()", "1 2", "(1) (2)", "1 + * 2", "3 (4)", "+"};
+        for (String expr : bad) {
+            try {
+                CompiledExpression.compile(expr);
+                fail("应拒绝: \"" + expr + "\"");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void evaluateDouble() {
+        assertEquals(24.0, CompiledExpression.compile("(1 + 2 + 3) * 4").evaluateDouble(), 1e-12);
+        assertEquals(24.0, CompiledExpression.compile("8 / (3 - 8 / 3)").evaluateDouble(), 1e-9);
+        assertEquals(-1.5, CompiledExpression.compile("-3 / 2").evaluateDouble(), 1e-12);
+        assertTrue(Double.isInfinite(CompiledExpression.compile("1 / 0").evaluateDouble()));
+        // 同一个实例可以反复求值
+        CompiledExpression e = CompiledExpression.compile("2.5 * 4");
+        assertEquals(10.0, e.evaluateDouble(), 1e-12);
+        assertEquals(10.0, e.evaluateDouble(), 1e-12);
+    }
+
+    @Test
+    public void evaluateMod() {
+        CompiledExpression e = CompiledExpression.compile("3 * 5 - 1");
+        assertEquals(0, e.evaluateMod(7, 10));
+        assertEquals(4, e.evaluateMod(10, 10));
+        // 改变模数或进制后重新解析常量
+        assertEquals(3, CompiledExpression.compile("A + 1").evaluateMod(8, 16));
+        assertEquals(5, CompiledExpression.compile("1 / 3").evaluateMod(7, 10));
+        assertEquals(6, CompiledExpression.compile("1 - 2").evaluateMod(7, 10));
+        try {
+            CompiledExpression.compile("1 / 7").evaluateMod(7, 10);
+            fail("7 在模 7 下没有逆元");
+        } catch (ArithmeticException expected) {
+        }
+    }
+
+    @Test
+    public void evaluateFraction() {
+        assertEquals("24", CompiledExpression.compile("8 / (3 - 8 / 3)").evaluateFraction(10).toString());
+        assertEquals("1/3", CompiledExpression.compile("1 / 3").evaluateFraction(10).toString());
+        Fraction z = CompiledExpression.compile("2+3i * 2-3i").evaluateFraction(10);
+        assertEquals(13, z.getRe());
+        assertEquals(0, z.getIm());
+        assertEquals(1, z.getDe());
+        assertEquals("1E", CompiledExpression.compile("A * 3").evaluateFraction(16).toString());
+        try {
+            CompiledExpression.compile("1 / (2 - 2)").evaluateFraction(10);
+            fail("除以零");
+        } catch (ArithmeticException expected) {
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.hajimi24;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GameManagerTest {
+
+    private static final int PART_LINES = 10000;
+    private static final List<String> PARTS = Arrays.asList("f/p1.txt", "f/p2.txt", "f/p3.txt");
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final ExecutorService caller = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        caller.shutdownNow();
+    }
+
+    // 每个分片 PART_LINES 道题；openPart 之外的分片在 gate 打开前读不出来
+    private FolderProblemSet.PartSource source(String openPart) {
+        return new FolderProblemSet.PartSource() {
+            @Override
+            public int localLineCount(String path) {
+                return PART_LINES;
+            }
+
+            @Override
+            public int fetch(String path) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Problem[] load(String path, GameModeSettings settings) throws Exception {
+                if (!path.equals(openPart)) gate.await();
+                Problem[] lines = new Problem[PART_LINES];
+                for (int i = 0; i < PART_LINES; i++) {
+                    List<Fraction> numbers = new ArrayList<>(Collections.nCopies(4, new Fraction(6, 1)));
+                    lines[i] = new Problem(numbers, "6 + 6 + 6 + 6", path + ":" + i);
+                }
+                return lines;
+            }
+        };
+    }
+
+    private FolderProblemSet folder(String openPart) {
+        return new FolderProblemSet("f/", PARTS, new ArrayList<>(), source(openPart), new GameModeSettings());
+    }
+
+    private Problem next(GameManager gm) throws Exception {
+        Future<Problem> f = caller.submit(() -> {
+            gm.startNewGame(false);
+            return gm.getCurrentProblem();
+        });
+        return f.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void folderSetWaitsAtUnloadedPartWithoutSkipping() throws Exception {
+        FolderProblemSet set = folder("f/p2.txt");
+        set.preload(1); // 3 个分片中的第 1 个 (p2)
+        assertEquals(PART_LINES, set.getReadySize());
+
+        GameManager gm = new GameManager();
+        gm.setProblemSet(set, 7);
+        // 从 p2 中第一个完整的区间 [12288, 16384) 开始，整个区间都不必等待
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 4096; i++) {
+            Problem p = next(gm);
+            assertNotNull(p);
+            assertFalse(gm.isWaitingForProblems());
+            int line = Integer.parseInt(p.line.substring("f/p2.txt:".length()));
+            assertTrue(p.line, p.line.startsWith("f/p2.txt:") && line >= 2288 && line < 6384);
+            assertTrue(p.line, seen.add(p.line));
+        }
+
+        // 下一个区间 [16384, 20480) 跨到 p3：在第一道落在 p3 中的题停下，既不改出随机题也不跳过
+        List<String> before = new ArrayList<>();
+        Problem p;
+        while ((p = next(gm)) != null) before.add(p.line);
+        assertTrue(gm.isWaitingForProblems());
+        assertNull(gm.getCurrentProblem());
+        for (Fraction f : gm.cardValues) assertNull(f);
+        assertNull(next(gm));
+        assertNull(next(gm));
+
+        Runnable load = gm.getPendingLoad();
+        assertNotNull(load);
+        gate.countDown();
+        caller.submit(load).get(5, TimeUnit.SECONDS);
+
+        // 读完后从停下的地方继续：这个区间的每道题恰好出现一次
+        Set<String> window = new HashSet<>(before);
+        for (int i = before.size(); i < 4096; i++) {
+            p = next(gm);
+            assertNotNull(p);
+            assertTrue(p.line, window.add(p.line));
+        }
+        for (int k = 16384; k < 20480; k++) {
+            String line = k < 2 * PART_LINES ? "f/p2.txt:" + (k - PART_LINES) : "f/p3.txt:" + (k - 2 * PART_LINES);
+            assertTrue(line, window.contains(line));
+        }
+        assertFalse(gm.isWaitingForProblems());
+        assertNull(gm.getPendingLoad());
+    }
+
+    @Test
+    public void nothingLoadedWaitsWithoutBlocking() throws Exception {
+        GameManager gm = new GameManager();
+        gm.setProblemSet(folder("none"), 3);
+        // 没有已解析的分片：不等待也不改出随机题，显示加载状态
+        assertNull(next(gm));
+        assertTrue(gm.isWaitingForProblems());
+        for (Fraction f : gm.cardValues) assertNull(f);
+
+        gate.countDown();
+        caller.submit(gm.getPendingLoad()).get(5, TimeUnit.SECONDS);
+        assertNotNull(next(gm));
+        assertFalse(gm.isWaitingForProblems());
+
+        // 随机模式不受影响
+        gm.setProblemSet(folder("none"), 3);
+        gm.startNewGame(true);
+        assertFalse(gm.isWaitingForProblems());
+        assertNotNull(gm.cardValues[0]);
+    }
+
+    @Test
+    public void loadedFolderIsPlayedOncePerRound() throws Exception {
+        gate.countDown();
+        FolderProblemSet set = folder("none");
+        for (int k = 0; k < PARTS.size(); k++) set.get(k * PART_LINES);
+
+        GameManager a = new GameManager(), b = new GameManager();
+        a.setProblemSet(set, 42);
+        b.setProblemSet(set, 42);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < PARTS.size() * PART_LINES; i++) {
+            Problem p = next(a);
+            assertEquals(p.line, next(b).line);
+            assertTrue(p.line, seen.add(p.line));
+        }
+    }
+}
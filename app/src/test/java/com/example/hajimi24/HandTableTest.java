@@ -0,0 +1,69 @@
+package com.example.hajimi24;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class HandTableTest {
+
+    private static Problem problem(String line) {
+        return new Problem(new ArrayList<>(), line.split("->")[1].trim(), line);
+    }
+
+    @Test
+    public void keyIsTheHandMultiset() {
+        long key = HandTable.handKey("[1] ['1', '2', '3', '4'] -> (1 + 2 + 3) * 4");
+        // 题号、数字顺序与解法都不影响
+        assertEquals(key, HandTable.handKey("[57] ['4', '3', '2', '1'] -> 1 * 2 * 3 * 4"));
+        assertEquals(key, HandTable.handKey("['2', '1', '4', '3'] -> 4 * (3 + 2 + 1)"));
+        // 多重集合：重复次数不同是不同的手牌
+        assertNotEquals(key, HandTable.handKey("['1', '1', '3', '4'] -> 1 * 1 * 3 * 4"));
+        assertNotEquals(HandTable.handKey("['1', '1', '2'] -> x"), HandTable.handKey("['1', '2', '2'] -> x"));
+        // 模数、进制不同是不同的题
+        long mod29 = HandTable.handKey("[1] ['1', '1', '1', '3'] -> 1 - ((1 + 1) * 3) mod 29");
+        assertEquals(mod29, HandTable.handKey("[9] ['3', '1', '1', '1'] -> 3 * 1 - 1 - 1 mod 29"));
+        assertNotEquals(mod29, HandTable.handKey("['1', '1', '1', '3'] -> 1 - ((1 + 1) * 3) mod 31"));
+        assertNotEquals(mod29, HandTable.handKey("['1', '1', '1', '3'] -> (1 + 1 + 1) * 3"));
+        assertNotEquals(HandTable.handKey("['1', '11'] -> x base 11"), HandTable.handKey("['1', '11'] -> x base 12"));
+        // 复数是否带括号不影响
+        assertEquals(HandTable.handKey("['i', '(1+6i)'] -> x"), HandTable.handKey("['1+6i', 'i'] -> y"));
+        assertEquals(0, HandTable.handKey("没有箭头"));
+    }
+
+    @Test
+    public void recordsFilesPerHand() {
+        HandTable hands = new HandTable();
+        long a = HandTable.handKey("['1', '2', '3', '4'] -> x");
+        long b = HandTable.handKey("['6', '6', '6', '6'] -> y");
+        assertFalse(hands.addIfPresent(a, "f/小于十三.txt"));
+        assertEquals(0, hands.size());
+        assertTrue(hands.add(a, "f/小于十三.txt"));
+        assertFalse(hands.add(a, "f/小于十三.txt"));
+        assertTrue(hands.addIfPresent(a, "f/小于二十.txt"));
+        assertTrue(hands.add(b, "f/小于二十.txt"));
+        assertEquals(2, hands.size());
+
+        assertEquals(Arrays.asList("f/小于十三.txt", "f/小于二十.txt"),
+                hands.getFilesContaining(problem("['4', '3', '2', '1'] -> (1 + 2 + 3) * 4")));
+        assertEquals(Collections.singletonList("f/小于二十.txt"), hands.getFilesContaining(problem("['6', '6', '6', '6'] -> 6 * 4")));
+        assertTrue(hands.getFilesContaining(problem("['5', '5', '5', '1'] -> (5 - 1 / 5) * 5")).isEmpty());
+        assertTrue(hands.getFilesContaining(null).isEmpty());
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        HandTable hands = new HandTable();
+        for (int i = 0; i < 50000; i++) {
+            assertTrue(hands.add(HandTable.handKey("['" + i + "', '" + (i % 7) + "'] -> x"), "f" + (i % 3)));
+        }
+        assertEquals(50000, hands.size());
+        for (int i = 0; i < 50000; i += 997) {
+            assertEquals(Collections.singletonList("f" + (i % 3)),
+                    hands.getFilesContaining(problem("['" + (i % 7) + "', '" + i + "'] -> y")));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.hajimi24;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IndexPermutationTest {
+
+    private static final long[] SEEDS = {0, 1, 42, -7, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    @Test
+    public void isBijectionForAllSizes() {
+        int[] sizes = {0, 1, 2, 3, 4, 5, 7, 8, 15, 16, 17, 100, 1000, 4097, 65536, 100003};
+        for (int n : sizes) {
+            for (long seed : SEEDS) {
+                IndexPermutation p = new IndexPermutation(n, seed);
+                assertEquals(n, p.size());
+                assertEquals(seed, p.getSeed());
+                boolean[] hit = new boolean[n];
+                for (int i = 0; i < n; i++) {
+                    int j = p.apply(i);
+                    assertTrue("n=" + n + " seed=" + seed + " 越界: " + j, j >= 0 && j < n);
+                    assertFalse("n=" + n + " seed=" + seed + " 重复: " + j, hit[j]);
+                    hit[j] = true;
+                    assertEquals(i, p.invert(j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameSeedGivesSameOrder() {
+        IndexPermutation a = new IndexPermutation(5000, 123), b = new IndexPermutation(5000, 123);
+        IndexPermutation c = new IndexPermutation(5000, 124);
+        boolean differs = false;
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(a.apply(i), b.apply(i));
+            if (a.apply(i) != c.apply(i)) differs = true;
+        }
+        assertTrue("不同的种子应得到不同的顺序", differs);
+    }
+
+    @Test
+    public void largeSizesStayInRange() {
+        IndexPermutation p = new IndexPermutation(Integer.MAX_VALUE, 9);
+        for (int i : new int[]{0, 1, 12345, Integer.MAX_VALUE - 1}) {
+            int j = p.apply(i);
+            assertTrue(j >= 0);
+            assertEquals(i, p.invert(j));
+        }
+    }
+
+    @Test
+    public void rejectsBadArguments() {
+        try {
+            new IndexPermutation(-1, 0);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        IndexPermutation p = new IndexPermutation(10, 0);
+        for (int i : new int[]{-1, 10}) {
+            try {
+                p.apply(i);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                p.invert(i);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+}
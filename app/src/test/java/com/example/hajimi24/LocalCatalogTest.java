@@ -0,0 +1,58 @@
+package com.example.hajimi24;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LocalCatalogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private LocalCatalog catalog() {
+        LocalCatalog catalog = new LocalCatalog(new File(tmp.getRoot(), "catalog"));
+        catalog.replaceAll(Arrays.asList(
+                new LocalCatalog.Entry("data/a.txt", "s1", 100, 10),
+                new LocalCatalog.Entry("data/x/b.txt", "s2", 200, 20),
+                new LocalCatalog.Entry("data/x/y/c.txt", "s3", 300, 30),
+                new LocalCatalog.Entry("data/z/d.txt", "s4", 400, 40),
+                new LocalCatalog.Entry("files/e.md", "s5", 500, 50)));
+        return catalog;
+    }
+
+    @Test
+    public void summarizesEveryFolderInOnePass() {
+        Map<String, LocalCatalog.Summary> folders = catalog().summarizeFolders("data/");
+        // prefix 本身不在结果中，只有其下的各级子文件夹
+        assertEquals(3, folders.size());
+
+        LocalCatalog.Summary x = folders.get("data/x/");
+        assertEquals(2, x.files);
+        assertEquals(50, x.lines);
+        assertEquals(500, x.bytes);
+
+        LocalCatalog.Summary y = folders.get("data/x/y/");
+        assertEquals(1, y.files);
+        assertEquals(30, y.lines);
+
+        assertEquals(40, folders.get("data/z/").lines);
+        assertNull(folders.get("files/"));
+    }
+
+    @Test
+    public void summariesSurviveReload() {
+        catalog();
+        LocalCatalog reloaded = new LocalCatalog(new File(tmp.getRoot(), "catalog"));
+        // 未加载时没有汇总
+        assertTrue(reloaded.summarizeFolders("data/").isEmpty());
+        assertTrue(reloaded.load());
+        assertEquals(2, reloaded.summarizeFolders("data/").get("data/x/").files);
+        assertEquals(1, reloaded.summarizeFolders("").get("files/").files);
+    }
+}
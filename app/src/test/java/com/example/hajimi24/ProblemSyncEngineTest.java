@@ -0,0 +1,241 @@
+package com.example.hajimi24;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用本机的 HTTP 服务器模拟 raw.githubusercontent.com：
+ * /ok/ 正常返回，/flaky/ 第一次返回 500，/missing/ 返回 404，/slow/ 发出一部分后停住，release 之后直接断开。
+ */
+public class ProblemSyncEngineTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String baseUrl;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger slowInFlight = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private static byte[] content(String path) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) sb.append(path).append(" line ").append(i).append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String gitSha(byte[] data) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(("blob " + data.length + "\0").getBytes(StandardCharsets.US_ASCII));
+        return ResumableDownloader.toHex(digest.digest(data));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int count = requests.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            if (path.startsWith("/missing/")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (path.startsWith("/flaky/") && count == 1) {
+                exchange.sendResponseHeaders(500, -1);
+            } else if (path.startsWith("/slow/")) {
+                byte[] data = content(path);
+                exchange.sendResponseHeaders(200, data.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(data, 0, 100);
+                out.flush();
+                slowInFlight.incrementAndGet();
+                release.await(10, TimeUnit.SECONDS);
+            } else {
+                byte[] data = content(path);
+                exchange.sendResponseHeaders(200, data.length);
+                exchange.getResponseBody().write(data);
+            }
+        } catch (InterruptedException | IOException ignored) {
+            // 客户端已断开
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // 下载到临时目录；退出前模拟一段清理工作 (例如压缩存入)，用来检查 onFinished 是否等到了它
+    private class TestSource implements ProblemSyncEngine.FileSource {
+        final AtomicInteger active = new AtomicInteger();
+
+        @Override
+        public boolean needsUpdate(String path, String sha) {
+            return !new File(tmp.getRoot(), path).exists();
+        }
+
+        @Override
+        public void download(String path, String sha, ProblemRepository.ConnectionListener listener) throws IOException {
+            active.incrementAndGet();
+            File target = new File(tmp.getRoot(), path);
+            File part = new File(target.getPath() + ".part");
+            try {
+                ResumableDownloader.download(baseUrl + path, part, sha, null, listener);
+                target.getParentFile().mkdirs();
+                if (!part.renameTo(target)) throw new IOException("rename failed");
+            } finally {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < end) {
+                    // 忙等：被中断也不会提前结束
+                }
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    private static class Recorder implements ProblemSyncEngine.SyncListener {
+        final TestSource source;
+        final List<String> done = Collections.synchronizedList(new ArrayList<>());
+        final List<String> failedFiles = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch finishedLatch = new CountDownLatch(1);
+        volatile boolean finished;
+        volatile boolean lateCallback;
+        volatile int succeeded = -1, failed = -1, activeAtFinish = -1;
+        volatile boolean cancelled;
+
+        Recorder(TestSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public void onFileDone(ProblemRepository.RemoteFile file, int finishedCount, int total) {
+            if (finished) lateCallback = true;
+            done.add(file.path);
+        }
+
+        @Override
+        public void onFileFailed(ProblemRepository.RemoteFile file, String error) {
+            if (finished) lateCallback = true;
+            failedFiles.add(file.path);
+        }
+
+        @Override
+        public void onFinished(int succeeded, int failed, boolean cancelled) {
+            this.activeAtFinish = source.active.get();
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.cancelled = cancelled;
+            finished = true;
+            finishedLatch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("onFinished 没有回调", finishedLatch.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private List<ProblemRepository.RemoteFile> files(String folder, int count) throws Exception {
+        List<ProblemRepository.RemoteFile> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String path = "/" + folder + "/f" + i + ".txt";
+            files.add(new ProblemRepository.RemoteFile(path, "f" + i + ".txt", gitSha(content(path))));
+        }
+        return files;
+    }
+
+    @Test
+    public void downloadsOnlyChangedFiles() throws Exception {
+        TestSource source = new TestSource();
+        ProblemSyncEngine engine = new ProblemSyncEngine(source, 3, 2, 10);
+        List<ProblemRepository.RemoteFile> all = files("ok", 5);
+        assertEquals(5, engine.diff(all).size());
+
+        Recorder recorder = new Recorder(source);
+        engine.start(all, recorder);
+        recorder.await();
+        assertEquals(5, recorder.succeeded);
+        assertEquals(0, recorder.failed);
+        assertFalse(recorder.cancelled);
+        assertEquals(0, engine.diff(all).size());
+    }
+
+    @Test
+    public void retriesServerErrorsButNotMissingFiles() throws Exception {
+        TestSource source = new TestSource();
+        ProblemSyncEngine engine = new ProblemSyncEngine(source, 2, 2, 10);
+        List<ProblemRepository.RemoteFile> list = new ArrayList<>(files("flaky", 2));
+        list.addAll(files("missing", 1));
+
+        Recorder recorder = new Recorder(source);
+        engine.start(list, recorder);
+        recorder.await();
+        assertEquals(2, recorder.succeeded);
+        assertEquals(1, recorder.failed);
+        assertEquals(Collections.singletonList("/missing/f0.txt"), recorder.failedFiles);
+        assertEquals(2, requests.get("/flaky/f0.txt").get());
+        assertEquals(1, requests.get("/missing/f0.txt").get());
+    }
+
+    @Test
+    public void cancelReportsFinishedOnlyAfterWorkersExit() throws Exception {
+        TestSource source = new TestSource();
+        ProblemSyncEngine engine = new ProblemSyncEngine(source, 2, 3, 10);
+        Recorder recorder = new Recorder(source);
+        ProblemSyncEngine.SyncHandle handle = engine.start(files("slow", 4), recorder);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slowInFlight.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(2, slowInFlight.get());
+
+        handle.cancel();
+        assertTrue(handle.isCancelled());
+        // 桌面 JDK 的 disconnect 打断不了阻塞中的读取 (Android 上可以)，由服务器断开
+        release.countDown();
+        recorder.await();
+        assertTrue(recorder.cancelled);
+        assertEquals("onFinished 时仍有工作线程在运行", 0, recorder.activeAtFinish);
+        assertEquals(0, recorder.succeeded);
+        assertEquals(0, recorder.failed);
+
+        // 排队中的文件不再请求，取消后也不会再有回调
+        Thread.sleep(300);
+        assertFalse(recorder.lateCallback);
+        assertEquals(2, requests.size());
+    }
+}
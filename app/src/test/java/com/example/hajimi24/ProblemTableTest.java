@@ -0,0 +1,77 @@
+package com.example.hajimi24;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProblemTableTest {
+
+    private static Problem problem(String line, String solution, Integer modulus, Integer radix, Fraction... numbers) {
+        return new Problem(new ArrayList<>(Arrays.asList(numbers)), solution, line, modulus, radix);
+    }
+
+    private static List<Problem> samples() {
+        return Arrays.asList(
+                problem("['1', '2', '3', '4'] -> (1 + 2 + 3) * 4", "(1 + 2 + 3) * 4", null, null,
+                        new Fraction(1, 1), new Fraction(2, 1), new Fraction(3, 1), new Fraction(4, 1)),
+                problem("[8] ['2+3i', '1/2', '7', '10'] -> 解法 base 8", "解法 base 8", null, 8,
+                        new Fraction(2, 3, 1, 8), new Fraction(1, 0, 2, 8), new Fraction(7, 0, 1, 8), new Fraction(8, 0, 1, 8)),
+                problem("['3', '5'] -> 3 * 5 mod 7", "3 * 5 mod 7", 7, null,
+                        new Fraction(3, 1), new Fraction(5, 1)),
+                // 解法不在原文中、没有原文
+                problem("手工构造", "1 + 1", null, null, new Fraction(1, 1)),
+                problem(null, "2 * 2", null, null, new Fraction(2, 1)));
+    }
+
+    private static void assertSameProblem(Problem expected, Problem actual) {
+        assertEquals(expected.line, actual.line);
+        assertEquals(expected.solution, actual.solution);
+        assertEquals(expected.modulus, actual.modulus);
+        assertEquals(expected.radix, actual.radix);
+        assertEquals(expected.numbers.size(), actual.numbers.size());
+        for (int k = 0; k < expected.numbers.size(); k++) {
+            Fraction e = expected.numbers.get(k), a = actual.numbers.get(k);
+            assertEquals(e.toString(), a.toString());
+            assertEquals(e.getRadix(), a.getRadix());
+        }
+    }
+
+    @Test
+    public void rowsRoundTrip() {
+        ProblemTable table = new ProblemTable();
+        for (Problem p : samples()) table.add(p);
+        table.trimToSize();
+        List<Problem> samples = samples();
+        assertEquals(samples.size(), table.size());
+        for (int i = 0; i < samples.size(); i++) {
+            assertSameProblem(samples.get(i), table.get(i));
+            assertEquals(samples.get(i).line, table.getLine(i));
+            assertEquals(samples.get(i).solution, table.getSolution(i));
+        }
+    }
+
+    @Test
+    public void addRowCopiesSingleRows() {
+        ProblemTable source = new ProblemTable();
+        for (Problem p : samples()) source.add(p);
+        ProblemTable copy = new ProblemTable();
+        int[] order = {4, 1, 3, 0, 2, 1};
+        for (int i : order) copy.addRow(source, i);
+        assertEquals(order.length, copy.size());
+        for (int k = 0; k < order.length; k++) assertSameProblem(source.get(order[k]), copy.get(k));
+    }
+
+    @Test
+    public void appendAllKeepsOrder() {
+        ProblemTable a = new ProblemTable(), b = new ProblemTable();
+        List<Problem> samples = samples();
+        for (int i = 0; i < samples.size(); i++) (i < 2 ? a : b).add(samples.get(i));
+        a.appendAll(b);
+        assertEquals(samples.size(), a.size());
+        for (int i = 0; i < samples.size(); i++) assertSameProblem(samples.get(i), a.get(i));
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.hajimi24;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** 用本机的 HTTP 服务器模拟 trees API：按 If-None-Match 返回 200 / 304，也可以返回错误或中途断开 */
+public class RemoteTreeCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private String url;
+    private File dir;
+
+    // 服务器当前的目录树与 ETag (为 null 时不发 ETag)；error 不为 0 时直接返回该状态码
+    private volatile String body = "{\"tree\":[]}";
+    private volatile String etag = "\"v1\"";
+    private volatile int error = 0;
+    private volatile boolean truncate = false;
+    private final List<String> ifNoneMatch = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/repos/x/git/trees/main";
+        dir = tmp.newFolder("remote_tree");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String sent = exchange.getRequestHeaders().getFirst("If-None-Match");
+        ifNoneMatch.add(sent);
+        try {
+            if (error != 0) {
+                exchange.sendResponseHeaders(error, -1);
+                return;
+            }
+            if (etag != null && etag.equals(sent)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] data = body.getBytes(StandardCharsets.UTF_8);
+            if (etag != null) exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(200, data.length);
+            // truncate 时只发出一半就断开
+            exchange.getResponseBody().write(data, 0, truncate ? data.length / 2 : data.length);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void firstFetchStoresBodyAndEtag() throws IOException {
+        RemoteTreeCache cache = new RemoteTreeCache(dir, url);
+        assertNull(cache.getCachedFile());
+        File file = cache.fetch();
+        assertEquals(body, read(file));
+        assertEquals(Collections.singletonList((String) null), ifNoneMatch);
+    }
+
+    @Test
+    public void unchangedTreeIsRevalidatedWith304() throws IOException {
+        RemoteTreeCache cache = new RemoteTreeCache(dir, url);
+        cache.fetch();
+        long modified = cache.getCachedFile().lastModified();
+
+        // 新的实例 (例如重启应用) 同样从磁盘读到 ETag
+        RemoteTreeCache reopened = new RemoteTreeCache(dir, url);
+        assertFalse(reopened.revalidate());
+        assertEquals("\"v1\"", ifNoneMatch.get(1));
+        assertEquals(body, read(reopened.fetch()));
+        assertEquals(modified, reopened.getCachedFile().lastModified());
+    }
+
+    @Test
+    public void changedTreeReplacesCache() throws IOException {
+        RemoteTreeCache cache = new RemoteTreeCache(dir, url);
+        cache.fetch();
+        body = "{\"tree\":[{\"path\":\"data/a.txt\"}]}";
+        etag = "\"v2\"";
+        assertTrue(cache.revalidate());
+        assertEquals(body, read(cache.getCachedFile()));
+        assertFalse(cache.revalidate());
+        assertEquals("\"v2\"", ifNoneMatch.get(2));
+    }
+
+    @Test
+    public void responseWithoutEtagIsNotRevalidated() throws IOException {
+        etag = null;
+        RemoteTreeCache cache = new RemoteTreeCache(dir, url);
+        cache.fetch();
+        assertTrue(cache.revalidate());
+        assertNull(ifNoneMatch.get(1));
+    }
+
+    @Test
+    public void failuresKeepTheStaleCopy() throws IOException {
+        RemoteTreeCache cache = new RemoteTreeCache(dir, url);
+        String stale = read(cache.fetch());
+
+        error = 500;
+        try {
+            cache.revalidate();
+            fail("HTTP 500 应抛出异常");
+        } catch (IOException expected) {
+        }
+        assertEquals(stale, read(cache.getCachedFile()));
+
+        error = 0;
+        body = "{\"tree\":[{\"path\":\"data/b.txt\"}]}";
+        etag = "\"v3\"";
+        truncate = true;
+        try {
+            cache.revalidate();
+            fail("连接中途断开应抛出异常");
+        } catch (IOException expected) {
+        }
+        assertEquals(stale, read(cache.getCachedFile()));
+        // 没有留下临时文件，仍用旧的 ETag 验证
+        String[] names = dir.list();
+        assertEquals(2, names == null ? 0 : names.length);
+        truncate = false;
+        assertTrue(cache.revalidate());
+        assertEquals("\"v1\"", ifNoneMatch.get(ifNoneMatch.size() - 1));
+        assertEquals(body, read(cache.getCachedFile()));
+    }
+
+    @Test
+    public void serverDownWithoutCacheFails() throws IOException {
+        server.stop(0);
+        RemoteTreeCache cache = new RemoteTreeCache(dir, url);
+        try {
+            cache.fetch();
+            fail("没有缓存且连不上时应抛出异常");
+        } catch (IOException expected) {
+        }
+        assertNull(cache.getCachedFile());
+    }
+
+    @Test
+    public void cacheFilesAreKeyedByUrl() throws IOException {
+        new RemoteTreeCache(dir, url).fetch();
+        assertNull(new RemoteTreeCache(dir, url + "?mirror=1").getCachedFile());
+    }
+}
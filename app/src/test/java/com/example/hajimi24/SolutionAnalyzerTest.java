@@ -0,0 +1,294 @@
+package com.example.hajimi24;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * SolutionAnalyzer 的特征字与改写前逐行过滤 (LegacyFilter，按原实现移植) 的对照：
+ * 对每道题、每种过滤设定，ProblemFilterIndex.matches 的结果都应与旧的 isProblemValid 相同；
+ * FRACTION_CALC 与旧的 expressionContainsFractions 相同 (旧解析器不认识复数字面量，对照时先给 "a+bi" 加上括号)。
+ */
+public class SolutionAnalyzerTest {
+
+    private static final String[] FILE_NAMES = {
+            "data/四个数/整数/四个数-整数.txt",
+            "data/四个数/分数/四个数-一个分数.txt",
+            "data/四个数/模/四个数-mod7.txt",
+            "data/四个数/进制/四个数-8进制.txt",
+            "data/custom/Fraction_Mix.txt",
+            "data/custom/BASE16.txt"};
+
+    private static Fraction integer(long v) {
+        return new Fraction(v, 1);
+    }
+
+    private static String numberPart(List<Fraction> hand) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < hand.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append('\'').append(hand.get(i)).append('\'');
+        }
+        return sb.append("] ").toString();
+    }
+
+    // 随机题目的全部解法，最多取 limit 种写法
+    private static void addSolutions(List<String> lines, List<Fraction> hand, Integer modulus, int limit) {
+        List<String> all = Solver.solveAll(hand, modulus, 24);
+        for (int i = 0; i < all.size() && i < limit; i++) lines.add(numberPart(hand) + "-> " + all.get(i));
+    }
+
+    private static List<String> corpus() {
+        Random random = new Random(24);
+        List<String> lines = new ArrayList<>();
+        for (int t = 0; t < 60; t++) {
+            int count = 3 + random.nextInt(3);
+            List<Fraction> hand = new ArrayList<>();
+            for (int i = 0; i < count; i++) hand.add(integer(random.nextInt(13) + 1));
+            addSolutions(lines, hand, null, 40);
+        }
+        for (int t = 0; t < 100; t++) {
+            List<Fraction> hand = new ArrayList<>();
+            hand.add(new Fraction(random.nextInt(5) + 1, random.nextInt(4) + 2));
+            for (int i = 0; i < 3; i++) hand.add(integer(random.nextInt(13) + 1));
+            addSolutions(lines, hand, null, 40);
+        }
+        for (int t = 0; t < 40; t++) {
+            List<Fraction> hand = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                hand.add(random.nextBoolean() ? integer(random.nextInt(9) + 1)
+                        : new Fraction(random.nextInt(5) + 1, random.nextInt(4) + 1, 1, 10));
+            }
+            addSolutions(lines, hand, null, 20);
+        }
+        for (int t = 0; t < 20; t++) {
+            List<Fraction> hand = new ArrayList<>();
+            for (int i = 0; i < 4; i++) hand.add(integer(random.nextInt(13) + 1));
+            addSolutions(lines, hand, 7 + 2 * random.nextInt(3), 20);
+        }
+        // 求解器不会给单个数字加括号；旧实现会把 "(3 + 5) * (3)" 的外层括号错当成一对剥掉，不在对照范围内
+        lines.addAll(Arrays.asList(
+                "['1', '2', '3', '4'] -> 1 * 2 * 3 * 4",
+                "['1', '2', '3', '4'] -> (1 + 2 + 3) * 4",
+                "['8', '3', '8', '3'] -> 8 / (3 - 8 / 3)",
+                "['1', '5', '5', '5'] -> (5 - 1 / 5) * 5",
+                "['6', '6', '6', '6'] -> 6 + 6 + 6 + 6",
+                "['4', '6'] -> (4 * 6)",
+                "['12', '2'] -> 12 * 2",
+                "['1', '2', '3', '5'] -> (1 + 2) * (3 + 5)",
+                "['10', '2', '3'] -> (10 - 2) * 3",
+                "['1', '2', '3', '4'] -> 24",
+                "[16] ['A', 'E'] -> A + E base 16",
+                "['3', '5', '2', '6'] -> 3 * 5 + 2 + 6 mod 11",
+                "['1/2', '1/3', '7', '9'] -> (1/2 + 1/3) * 7 * 9 / 7",
+                "['2', '3i', '4', '1'] -> (2 + 3i) * 4 - 1",
+                "['1', '2'] -> (1 + 2",
+                "['1', '2'] -> 1 + 2)"));
+        return lines;
+    }
+
+    @Test
+    public void filterMasksMatchLegacyIsProblemValid() {
+        List<String> lines = corpus();
+        assertTrue("题目太少: " + lines.size(), lines.size() > 2000);
+        LegacyFilter legacy = new LegacyFilter();
+        for (String line : lines) {
+            String[] parts = line.split("->");
+            String solution = parts[1].trim();
+            for (String fileName : FILE_NAMES) {
+                int mask = SolutionAnalyzer.analyze(parts[0], solution, fileName);
+                for (int flags = 0; flags < 16; flags++) {
+                    GameModeSettings settings = new GameModeSettings();
+                    settings.mustHaveDivision = (flags & 1) != 0;
+                    settings.avoidPureAddSub = (flags & 2) != 0;
+                    settings.requireDivisionStorm = (flags & 4) != 0;
+                    settings.avoidTrivialFinalMultiply = (flags & 8) != 0;
+                    assertEquals(line + " @ " + fileName + " flags=" + flags,
+                            legacy.isProblemValid(line, fileName, settings), ProblemFilterIndex.matches(mask, settings));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void fractionCalcMatchesLegacyEvaluation() {
+        LegacyFilter legacy = new LegacyFilter();
+        int fractional = 0;
+        for (String line : corpus()) {
+            String[] parts = line.split("->");
+            String solution = parts[1].trim();
+            boolean expected = legacy.expressionContainsFractions(
+                    solution.replaceAll("(-?[0-9A-Z]+[+-][0-9A-Z]*i)", "($1)"));
+            int mask = SolutionAnalyzer.analyze(parts[0], solution, FILE_NAMES[0]);
+            assertEquals(line, expected, (mask & SolutionAnalyzer.FRACTION_CALC) != 0);
+            if (expected) fractional++;
+            GameModeSettings settings = new GameModeSettings();
+            settings.requireFractionCalc = true;
+            assertEquals(line, expected, ProblemFilterIndex.matches(mask, settings));
+        }
+        assertTrue("含分数加减的解法太少: " + fractional, fractional > 100);
+    }
+
+    @Test
+    public void complexLiteralsAreNotSplit() {
+        // 旧实现把 "3+2i / 3+2i" 读作 3 + 2i/3 + 2i，误判为分数加减
+        int mask = SolutionAnalyzer.analyze("['4i', '(1+6i)', '(3+2i)', '(3+2i)'] ", "((3+2i / 3+2i) - 1+6i) * 4i", FILE_NAMES[0]);
+        assertEquals(0, mask & SolutionAnalyzer.FRACTION_CALC);
+        assertEquals(SolutionAnalyzer.OP_MUL, SolutionAnalyzer.getTopLevelOperator(mask));
+        assertEquals(1, SolutionAnalyzer.getDivisionCount(mask));
+        assertEquals(1, SolutionAnalyzer.getMultiplicationCount(mask));
+        assertEquals(1, SolutionAnalyzer.getAddSubCount(mask));
+    }
+
+    @Test
+    public void operatorCountsAndTopLevelOperator() {
+        int mask = SolutionAnalyzer.analyze("['8', '3', '8', '3'] ", "8 / (3 - 8 / 3)", FILE_NAMES[0]);
+        assertEquals(2, SolutionAnalyzer.getDivisionCount(mask));
+        assertEquals(0, SolutionAnalyzer.getMultiplicationCount(mask));
+        assertEquals(1, SolutionAnalyzer.getAddSubCount(mask));
+        assertEquals(SolutionAnalyzer.OP_DIV, SolutionAnalyzer.getTopLevelOperator(mask));
+        assertEquals(SolutionAnalyzer.OP_SUB,
+                SolutionAnalyzer.getTopLevelOperator(SolutionAnalyzer.analyze("['1', '2'] ", "((2 * 3) - 1)", FILE_NAMES[0])));
+        assertEquals(SolutionAnalyzer.OP_NONE,
+                SolutionAnalyzer.getTopLevelOperator(SolutionAnalyzer.analyze("['24'] ", "(24)", FILE_NAMES[0])));
+    }
+
+    /** 改写前 ProblemRepository 的逐行过滤与分数加减判定 (0422c72) */
+    static class LegacyFilter {
+
+        boolean isProblemValid(String line, String fileName, GameModeSettings settings) {
+            String[] parts = line.split("->");
+            if (parts.length < 2) return false;
+            String solution = parts[1].trim();
+            String solLower = solution.toLowerCase();
+            String fileLower = fileName.toLowerCase();
+
+            if (settings.mustHaveDivision && !solution.contains(" / ")) return false;
+            if (settings.avoidPureAddSub && !solution.contains(" * ") && !solution.contains(" / ")) return false;
+            if (settings.requireDivisionStorm) {
+                String numbersListString = parts[0];
+                int n = 1;
+                for (int i = 0; i < numbersListString.length(); i++) {
+                    if (numbersListString.charAt(i) == ',') n++;
+                }
+                int divisionCount = 0;
+                int lastIndex = 0;
+                String op = " / ";
+                while ((lastIndex = solution.indexOf(op, lastIndex)) != -1) {
+                    divisionCount++;
+                    lastIndex += op.length();
+                }
+                if (divisionCount < n - 2) return false;
+            }
+
+            boolean isSpecialMode = solLower.contains("mod") || solLower.contains("base") || solLower.contains("i")
+                    || fileLower.contains("base") || fileLower.contains("进制")
+                    || fileLower.contains("mod") || fileLower.contains("模")
+                    || fileLower.contains("分数") || fileLower.contains("fraction");
+            if (isSpecialMode) return true;
+
+            if (settings.avoidTrivialFinalMultiply) {
+                int mainOpIdx = findMainOperatorIndex(solution);
+                if (mainOpIdx != -1 && solution.charAt(mainOpIdx) == '*') {
+                    String left = solution.substring(0, mainOpIdx).trim();
+                    String right = solution.substring(mainOpIdx + 1).trim();
+                    while (left.startsWith("(") && left.endsWith(")")) left = left.substring(1, left.length() - 1).trim();
+                    while (right.startsWith("(") && right.endsWith(")")) right = right.substring(1, right.length() - 1).trim();
+
+                    String[] trivialNumbers = {"1", "2", "3", "4", "6", "8", "12", "24"};
+                    for (String num : trivialNumbers) {
+                        if (left.equals(num) || right.equals(num)) return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        // 旧实现在第一次分数加减时抛出异常结束求值；这里记下标志后继续，之前出错仍算作不含
+        private boolean found;
+
+        boolean expressionContainsFractions(String expression) {
+            if (expression.contains("mod")) return false;
+            if (expression.contains("base")) return false;
+            found = false;
+            try {
+                evaluateAndCheck(expression);
+            } catch (Exception e) {
+                return found;
+            }
+            return found;
+        }
+
+        private Fraction evaluateAndCheck(String subExpression) {
+            subExpression = subExpression.trim();
+            if (subExpression.matches(".*mod\\s*\\d+$")) subExpression = subExpression.replaceAll("mod\\s*\\d+$", "").trim();
+
+            if (subExpression.startsWith("(") && subExpression.endsWith(")")) {
+                int balance = 0;
+                boolean isPaired = true;
+                for (int i = 0; i < subExpression.length() - 1; i++) {
+                    if (subExpression.charAt(i) == '(') balance++;
+                    else if (subExpression.charAt(i) == ')') balance--;
+                    if (balance == 0) {
+                        isPaired = false;
+                        break;
+                    }
+                }
+                if (isPaired) return evaluateAndCheck(subExpression.substring(1, subExpression.length() - 1));
+            }
+
+            int balance = 0;
+            for (int i = subExpression.length() - 1; i >= 0; i--) {
+                char c = subExpression.charAt(i);
+                if (c == ')') balance++;
+                else if (c == '(') balance--;
+                if (balance == 0 && (c == '+' || c == '-') && i > 0) {
+                    String leftStr = subExpression.substring(0, i).trim();
+                    if (leftStr.isEmpty() || "+-*/(".indexOf(leftStr.charAt(leftStr.length() - 1)) != -1) continue;
+                    Fraction l = evaluateAndCheck(leftStr);
+                    Fraction r = evaluateAndCheck(subExpression.substring(i + 1).trim());
+                    if (l.toString().contains("/") || r.toString().contains("/")) found = true;
+                    return c == '+' ? l.add(r) : l.sub(r);
+                }
+            }
+            balance = 0;
+            for (int i = subExpression.length() - 1; i >= 0; i--) {
+                char c = subExpression.charAt(i);
+                if (c == ')') balance++;
+                else if (c == '(') balance--;
+                if (balance == 0 && (c == '*' || c == '/') && i > 0) {
+                    Fraction l = evaluateAndCheck(subExpression.substring(0, i).trim());
+                    Fraction r = evaluateAndCheck(subExpression.substring(i + 1).trim());
+                    if (c == '*') return l.multiply(r);
+                    if (r.toString().equals("0")) throw new ArithmeticException("Div 0");
+                    return l.divide(r);
+                }
+            }
+            return ProblemRepository.parseTokenToFraction(subExpression, 10);
+        }
+
+        private int findMainOperatorIndex(String expression) {
+            int balance = 0;
+            String expr = expression.trim();
+            while (expr.length() > 2 && expr.startsWith("(") && expr.endsWith(")")) expr = expr.substring(1, expr.length() - 1).trim();
+            for (int i = expr.length() - 1; i >= 0; i--) {
+                char c = expr.charAt(i);
+                if (c == ')') balance++;
+                else if (c == '(') balance--;
+                else if ((c == '+' || c == '-') && balance == 0) return expression.lastIndexOf(expr) + i;
+            }
+            for (int i = expr.length() - 1; i >= 0; i--) {
+                char c = expr.charAt(i);
+                if (c == ')') balance++;
+                else if (c == '(') balance--;
+                else if ((c == '*' || c == '/') && balance == 0) return expression.lastIndexOf(expr) + i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.hajimi24;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * SolutionNormalizer 与改写前的签名字符串去重 (LegacySignature，按原实现移植) 的对照。
+ * 旧解析器按文本切分，不认识复数字面量，对照时先给 "a+bi" 加上括号。
+ */
+public class SolutionNormalizerTest {
+
+    private static Fraction complex(long re, long im) {
+        return new Fraction(re, im, 1, 10);
+    }
+
+    private static List<Fraction> integers(int... values) {
+        List<Fraction> list = new ArrayList<>();
+        for (int v : values) list.add(new Fraction(v, 1));
+        return list;
+    }
+
+    @Test
+    public void commutedAndRegroupedSolutionsAreMerged() {
+        List<String> distinct = SolutionNormalizer.distinct(Arrays.asList(
+                "((1 + 2) + 3) * 4", "4 * (3 + (2 + 1))", "(1 + (2 + 3)) * 4", "((1 + 2) * 3) * 4"));
+        assertEquals(2, distinct.size());
+    }
+
+    @Test
+    public void suffixKeepsClassesApart() {
+        List<String> distinct = SolutionNormalizer.distinct(Arrays.asList("(1 + 2) mod 5", "(2 + 1) mod 7"));
+        assertEquals(2, distinct.size());
+    }
+
+    @Test
+    public void complexLiteralsStayAtomic() {
+        // 旧实现 (0422c72) 给出 2 种；复数字面量被拆开时会变成 3 种
+        assertEquals(2, Solver.solveAllDistinct(Arrays.asList(complex(4, 0), complex(2, 3), complex(0, 3), complex(8, 0)), null, 24).size());
+        // 旧实现把 "3+3i * x" 误读为 3 + 3i*x，得到 2 种；按复数整体计算，交换乘数后只有 1 种
+        assertEquals(1, Solver.solveAllDistinct(Arrays.asList(complex(8, 0), complex(3, 3), complex(3, 1), complex(1, 3)), null, 24).size());
+    }
+
+    @Test
+    public void complexHandsMatchLegacySignatures() {
+        Random random = new Random(5);
+        int checked = 0;
+        for (int t = 0; t < 400; t++) {
+            List<Fraction> hand = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int kind = random.nextInt(3);
+                if (kind == 0) hand.add(complex(random.nextInt(9) + 1, 0));
+                else if (kind == 1) hand.add(complex(0, random.nextInt(4) + 1));
+                else hand.add(complex(random.nextInt(5) + 1, (random.nextBoolean() ? 1 : -1) * (random.nextInt(4) + 1)));
+            }
+            if (assertMatchesLegacy(hand)) checked++;
+        }
+        assertTrue("有解的复数题太少: " + checked, checked > 20);
+    }
+
+    @Test
+    public void integerHandsMatchLegacySignatures() {
+        Random random = new Random(11);
+        for (int t = 0; t < 200; t++) {
+            assertMatchesLegacy(integers(random.nextInt(13) + 1, random.nextInt(13) + 1, random.nextInt(13) + 1, random.nextInt(13) + 1));
+        }
+    }
+
+    // 新旧两种去重的类数相同，且新结果的各代表在旧签名下互不相同；无解时返回 false
+    private static boolean assertMatchesLegacy(List<Fraction> hand) {
+        List<String> all = Solver.solveAll(hand, null, 24);
+        if (all.isEmpty()) return false;
+        Set<String> legacyClasses = new HashSet<>();
+        for (String s : all) legacyClasses.add(LegacySignature.of(s));
+
+        for (List<String> distinct : Arrays.asList(SolutionNormalizer.distinct(all), Solver.solveAllDistinct(hand, null, 24))) {
+            Set<String> representatives = new HashSet<>();
+            for (String s : distinct) representatives.add(LegacySignature.of(s));
+            assertEquals(hand + " " + distinct, legacyClasses.size(), distinct.size());
+            assertEquals(hand + " " + distinct, legacyClasses, representatives);
+        }
+        return true;
+    }
+
+    /** 改写前 SolutionNormalizer 的签名：按优先级从右向左切分文本，同级加减 (乘除) 展平后排序拼接 */
+    static class LegacySignature {
+
+        static String of(String sol) {
+            String cleanSol = sol.replaceAll("^\\[\\d+\\]\\s*", "").trim();
+            String mathPart = cleanSol;
+            String suffix = "";
+            java.util.regex.Matcher m = java.util.regex.Pattern.compile("\\s*(=|\\b(mod|base)\\b).*$").matcher(cleanSol);
+            if (m.find()) {
+                suffix = m.group();
+                mathPart = cleanSol.substring(0, m.start()).trim();
+            }
+            mathPart = mathPart.replaceAll("(?<![\\d\\.])(\\d+(\\.\\d+)?/\\d+(\\.\\d+)?)(?![\\d\\.])", "($1)");
+            // 旧解析器不认识复数字面量，加括号使其作为一个整体参与运算
+            mathPart = mathPart.replaceAll("(-?[0-9A-Z]+[+-][0-9A-Z]*i)", "($1)");
+            return parse(mathPart).signature() + "|" + suffix.trim();
+        }
+
+        private interface Node {
+            String signature();
+        }
+
+        private static class ValueNode implements Node {
+            final String val;
+
+            ValueNode(String val) {
+                this.val = val;
+            }
+
+            @Override
+            public String signature() {
+                return "V(" + val + ")";
+            }
+        }
+
+        private static class OpNode implements Node {
+            final String type;
+            final List<Node> positives = new ArrayList<>();
+            final List<Node> negatives = new ArrayList<>();
+
+            OpNode(String type) {
+                this.type = type;
+            }
+
+            void addTerm(Node child, boolean isPositive) {
+                // 一元负号产生的空节点
+                if (child instanceof ValueNode && ((ValueNode) child).val.isEmpty()) return;
+                if (child instanceof OpNode && ((OpNode) child).type.equals(type)) {
+                    OpNode op = (OpNode) child;
+                    (isPositive ? positives : negatives).addAll(op.positives);
+                    (isPositive ? negatives : positives).addAll(op.negatives);
+                } else {
+                    (isPositive ? positives : negatives).add(child);
+                }
+            }
+
+            @Override
+            public String signature() {
+                List<String> pos = new ArrayList<>();
+                List<String> neg = new ArrayList<>();
+                for (Node n : positives) pos.add(n.signature());
+                for (Node n : negatives) neg.add(n.signature());
+                Collections.sort(pos);
+                Collections.sort(neg);
+                return type + "{P" + pos + ",N" + neg + "}";
+            }
+        }
+
+        private static Node parse(String expr) {
+            expr = stripOuterParens(expr.trim());
+            int splitIdx = findMainOperatorIndex(expr);
+            if (splitIdx == -1) return new ValueNode(expr);
+
+            char op = expr.charAt(splitIdx);
+            OpNode node = new OpNode(op == '+' || op == '-' ? "SUM" : "PROD");
+            node.addTerm(parse(expr.substring(0, splitIdx)), true);
+            node.addTerm(parse(expr.substring(splitIdx + 1)), op == '+' || op == '*' || op == '×');
+            return node;
+        }
+
+        private static String stripOuterParens(String s) {
+            while (s.startsWith("(") && s.endsWith(")")) {
+                int balance = 0;
+                boolean strip = true;
+                for (int i = 0; i < s.length() - 1; i++) {
+                    if (s.charAt(i) == '(') balance++;
+                    else if (s.charAt(i) == ')') balance--;
+                    if (balance == 0) { strip = false; break; }
+                }
+                if (strip) s = s.substring(1, s.length() - 1).trim();
+                else break;
+            }
+            return s;
+        }
+
+        private static int findMainOperatorIndex(String s) {
+            int balance = 0; int bestIdx = -1; int minPrec = 999;
+            for (int i = s.length() - 1; i >= 0; i--) {
+                char c = s.charAt(i);
+                if (c == ')') balance++;
+                else if (c == '(') balance--;
+                else if (balance == 0) {
+                    int prec = -1;
+                    if (c == '+' || c == '-') prec = 1;
+                    else if (c == '*' || c == '/' || c == '×') prec = 2;
+                    if (prec != -1 && prec <= minPrec) {
+                        minPrec = prec;
+                        bestIdx = i;
+                    }
+                }
+            }
+            return bestIdx;
+        }
+    }
+}